@@ -0,0 +1,100 @@
+package nz.co.troyshaw.minesweeper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nz.co.troyshaw.minesweeper.game.Board;
+import nz.co.troyshaw.minesweeper.game.Square;
+
+/**
+ * Benchmarks populating a board, and the neighbourhood queries the game and solver make on every square.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BoardBenchmark {
+
+	/**
+	 * The width and height of the (square) board.
+	 */
+	@Param({"16", "128", "1024"})
+	public int size;
+
+	/**
+	 * The fraction of squares that are mines.
+	 */
+	@Param({"0.05", "0.15", "0.2"})
+	public double density;
+
+	/**
+	 * A populated board with its left half solved (revealed or flagged) and its right half hidden,
+	 * so the queries see every kind of square and a frontier down the middle.
+	 */
+	private Board played;
+
+	private int numMines;
+
+	@Setup
+	public void setup() {
+		numMines = mines(size, density);
+
+		played = new Board(size, size, numMines);
+		played.populateBoard(size / 2, size / 2);
+
+		for (int i = 0; i < size / 2; i++) {
+			for (int j = 0; j < size; j++) {
+				Square s = played.getSquare(i, j);
+
+				if (s.isMine()) s.setFlagged();
+				else s.setClicked();
+			}
+		}
+	}
+
+	@Benchmark
+	public Board populateBoard() {
+		Board board = new Board(size, size, numMines);
+		board.populateBoard(size / 2, size / 2);
+		return board;
+	}
+
+	@Benchmark
+	public void isSatisfied(Blackhole bh) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				bh.consume(played.isSatisfied(i, j));
+			}
+		}
+	}
+
+	@Benchmark
+	public void hasClickableSurround(Blackhole bh) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				bh.consume(played.hasClickableSurround(i, j));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of mines for the given board size and density, always leaving room for the safe square.
+	 */
+	static int mines(int size, double density) {
+		return Math.max(1, Math.min(size * size - 1, (int) (size * size * density)));
+	}
+}
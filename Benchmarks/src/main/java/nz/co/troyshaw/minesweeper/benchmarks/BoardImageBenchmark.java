@@ -0,0 +1,66 @@
+package nz.co.troyshaw.minesweeper.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+import nz.co.troyshaw.minesweeper.gui.gameImages.BoardImage;
+import nz.co.troyshaw.minesweeper.images.ImageData;
+
+/**
+ * Benchmarks redrawing the whole board image, as happens on every repaint of the board.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class BoardImageBenchmark {
+
+	@Param({"16", "64", "256"})
+	public int size;
+
+	@Param({"0.05", "0.15"})
+	public double density;
+
+	private BoardImage image;
+
+	@Setup
+	public void setup() {
+		ImageData.loadDefaultImages();
+
+		image = new BoardImage(null, size, size);
+
+		//draw a played game so the board isn't just blank squares
+		Minesweeper game = new Minesweeper(size, size, BoardBenchmark.mines(size, density), new MinesweeperAdapter());
+		game.revealSquare(size / 2, size / 2);
+		game.getSolver().solve();
+		game.stopTimer();
+
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				image.drawPiece(i, j, game.getSquare(i, j).getPiece());
+			}
+		}
+	}
+
+	@Benchmark
+	public BufferedImage redraw() {
+		image.redraw();
+		return image.getImage();
+	}
+}
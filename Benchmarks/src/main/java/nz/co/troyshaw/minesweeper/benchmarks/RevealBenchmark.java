@@ -0,0 +1,56 @@
+package nz.co.troyshaw.minesweeper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+
+/**
+ * Benchmarks the first click of a game on boards sparse enough that it opens a large area. <p>
+ *
+ * The first click also populates the board, so the cost of the reveal alone is roughly this less
+ * {@link BoardBenchmark#populateBoard()} at the same size and density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RevealBenchmark {
+
+	@Param({"64", "256", "1024"})
+	public int size;
+
+	@Param({"0.01", "0.05", "0.1"})
+	public double density;
+
+	private int numMines;
+
+	private MinesweeperAdapter listener = new MinesweeperAdapter();
+
+	@Setup
+	public void setup() {
+		numMines = BoardBenchmark.mines(size, density);
+	}
+
+	@Benchmark
+	public Minesweeper firstReveal() {
+		Minesweeper game = new Minesweeper(size, size, numMines, listener);
+		game.revealSquare(size / 2, size / 2);
+		game.stopTimer();
+		return game;
+	}
+}
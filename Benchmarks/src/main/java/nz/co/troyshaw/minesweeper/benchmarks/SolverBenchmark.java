@@ -0,0 +1,65 @@
+package nz.co.troyshaw.minesweeper.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nz.co.troyshaw.minesweeper.game.GameConstants;
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+
+/**
+ * Benchmarks whole games played by the solver at the standard difficulties: 
+ * creating the game, the first click, then solving until the solver is stuck or the game is over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SolverBenchmark {
+
+	@Param({"easy", "medium", "hard"})
+	public String difficulty;
+
+	private int width, height, numMines;
+
+	private MinesweeperAdapter listener = new MinesweeperAdapter();
+
+	@Setup
+	public void setup() {
+		if (difficulty.equals("easy")) {
+			width = GameConstants.EASY_WIDTH;
+			height = GameConstants.EASY_HEIGHT;
+			numMines = GameConstants.EASY_MINES;
+		} else if (difficulty.equals("medium")) {
+			width = GameConstants.MEDIUM_WIDTH;
+			height = GameConstants.MEDIUM_HEIGHT;
+			numMines = GameConstants.MEDIUM_MINES;
+		} else {
+			width = GameConstants.HARD_WIDTH;
+			height = GameConstants.HARD_HEIGHT;
+			numMines = GameConstants.HARD_MINES;
+		}
+	}
+
+	@Benchmark
+	public Minesweeper solve() {
+		Minesweeper game = new Minesweeper(width, height, numMines, listener);
+		game.revealSquare(width / 2, height / 2);
+		game.getSolver().solve();
+		game.stopTimer();
+		return game;
+	}
+}
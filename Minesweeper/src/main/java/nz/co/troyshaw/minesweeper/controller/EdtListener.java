@@ -0,0 +1,204 @@
+package nz.co.troyshaw.minesweeper.controller;
+
+import javax.swing.SwingUtilities;
+
+import nz.co.troyshaw.minesweeper.game.MinesweeperListener;
+
+/**
+ * A listener that passes events on to another listener on the Swing event dispatch thread. <p>
+ *
+ * Events can be fired from any thread (the game thread and the timer thread). They are recorded in order into a
+ * buffer, and each time a move, tick or game finishes the buffered events are handed to the EDT as a single batch
+ * with {@link SwingUtilities#invokeLater(Runnable)}. Since batches are queued in the order they are flushed, the
+ * target sees events in exactly the order the game fired them. <p>
+ *
+ * Once detached, any batches still waiting on the EDT are dropped. This stops events from an old game being
+ * drawn onto a new one.
+ */
+public class EdtListener implements MinesweeperListener {
+
+	//event codes, stored in the first slot of each event
+	private static final int ALREADY_CLICKED = 0;
+	private static final int REVEALED = 1;
+	private static final int FLAGGED = 2;
+	private static final int MINE_REVEALED = 3;
+	private static final int QUESTIONED = 4;
+	private static final int UNMARKED = 5;
+	private static final int BOMB = 6;
+	private static final int INCORRECT_FLAG = 7;
+	private static final int WON = 8;
+	private static final int LOST = 9;
+	private static final int TICK = 10;
+	private static final int MOVE_FINISHED = 11;
+	private static final int FLAGS_CHANGED = 12;
+	private static final int RESUMED = 13;
+
+	/**
+	 * The number of ints used to store a single event: code, x, y and value.
+	 */
+	private static final int EVENT_SIZE = 4;
+
+	private final MinesweeperListener target;
+
+	/**
+	 * Events waiting to be flushed, and the number of ints of the buffer in use.
+	 */
+	private int[] events = new int[64 * EVENT_SIZE];
+	private int size;
+
+	/**
+	 * Only ever read and written on the EDT.
+	 */
+	private boolean detached;
+
+	/**
+	 * Creates a new listener passing events to the given target on the EDT.
+	 *
+	 * @param target the listener to notify
+	 */
+	public EdtListener(MinesweeperListener target) {
+		this.target = target;
+	}
+
+	/**
+	 * Stops passing events to the target, including any that have been flushed but not yet delivered.
+	 * Must be called on the EDT.
+	 */
+	public void detach() {
+		detached = true;
+	}
+
+	@Override
+	public void alreadyClickedEvent() {
+		add(ALREADY_CLICKED, 0, 0, 0);
+	}
+
+	@Override
+	public void squareRevealed(int x, int y, int numMines) {
+		add(REVEALED, x, y, numMines);
+	}
+
+	@Override
+	public void squareFlagged(int x, int y) {
+		add(FLAGGED, x, y, 0);
+	}
+
+	@Override
+	public void mineRevealed(int x, int y) {
+		add(MINE_REVEALED, x, y, 0);
+	}
+
+	@Override
+	public void squareQuestioned(int x, int y) {
+		add(QUESTIONED, x, y, 0);
+	}
+
+	@Override
+	public void squareUnmarked(int x, int y) {
+		add(UNMARKED, x, y, 0);
+	}
+
+	@Override
+	public void squareBomb(int x, int y) {
+		add(BOMB, x, y, 0);
+	}
+
+	@Override
+	public void incorrectFlag(int x, int y) {
+		add(INCORRECT_FLAG, x, y, 0);
+	}
+
+	@Override
+	public void gameWon() {
+		add(WON, 0, 0, 0);
+		flush();
+	}
+
+	@Override
+	public void gameLost() {
+		add(LOST, 0, 0, 0);
+		flush();
+	}
+
+	@Override
+	public void gameResumed() {
+		add(RESUMED, 0, 0, 0);
+	}
+
+	@Override
+	public void tick() {
+		add(TICK, 0, 0, 0);
+		flush();
+	}
+
+	@Override
+	public void moveFinished() {
+		add(MOVE_FINISHED, 0, 0, 0);
+		flush();
+	}
+
+	@Override
+	public void totalFlagsChanged(int numFlags) {
+		add(FLAGS_CHANGED, 0, 0, numFlags);
+		flush();
+	}
+
+	private synchronized void add(int code, int x, int y, int value) {
+		if (size == events.length) {
+			int[] bigger = new int[events.length * 2];
+			System.arraycopy(events, 0, bigger, 0, size);
+			events = bigger;
+		}
+
+		events[size++] = code;
+		events[size++] = x;
+		events[size++] = y;
+		events[size++] = value;
+	}
+
+	/**
+	 * Hands all buffered events to the EDT as one batch.
+	 */
+	private synchronized void flush() {
+		if (size == 0) return;
+
+		final int[] batch = events;
+		final int batchSize = size;
+
+		events = new int[Math.max(64 * EVENT_SIZE, batchSize)];
+		size = 0;
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				if (!detached) deliver(batch, batchSize);
+			}
+		});
+	}
+
+	private void deliver(int[] batch, int batchSize) {
+		for (int i = 0; i < batchSize; i += EVENT_SIZE) {
+			int x = batch[i + 1];
+			int y = batch[i + 2];
+			int value = batch[i + 3];
+
+			switch (batch[i]) {
+			case ALREADY_CLICKED: target.alreadyClickedEvent(); break;
+			case REVEALED: target.squareRevealed(x, y, value); break;
+			case FLAGGED: target.squareFlagged(x, y); break;
+			case MINE_REVEALED: target.mineRevealed(x, y); break;
+			case QUESTIONED: target.squareQuestioned(x, y); break;
+			case UNMARKED: target.squareUnmarked(x, y); break;
+			case BOMB: target.squareBomb(x, y); break;
+			case INCORRECT_FLAG: target.incorrectFlag(x, y); break;
+			case WON: target.gameWon(); break;
+			case LOST: target.gameLost(); break;
+			case RESUMED: target.gameResumed(); break;
+			case TICK: target.tick(); break;
+			case MOVE_FINISHED: target.moveFinished(); break;
+			case FLAGS_CHANGED: target.totalFlagsChanged(value); break;
+			default: break;
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package nz.co.troyshaw.minesweeper.controller;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single thread that all game logic of a session runs on. <p>
+ *
+ * Commands are queued and run one at a time in the order they were given, so the game and solver never
+ * touch the board at the same time, and the EDT never waits on a move.
+ */
+public class GameThread {
+
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * Creates and starts a new game thread.
+	 *
+	 * @param name the name of the underlying thread
+	 */
+	public GameThread(final String name) {
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, name);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Queues the command to be run after all previously queued commands.
+	 *
+	 * @param command the command to run
+	 */
+	public void execute(Runnable command) {
+		executor.execute(new Guarded(command));
+	}
+
+	/**
+	 * Queues the command to be run once the given delay has passed.
+	 *
+	 * @param command the command to run
+	 * @param delay the delay in milliseconds
+	 */
+	public void schedule(Runnable command, long delay) {
+		executor.schedule(new Guarded(command), delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops the thread. Commands that have not yet run are discarded.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Prints, rather than swallows, anything thrown by a command so the thread keeps running.
+	 */
+	private static class Guarded implements Runnable {
+		private final Runnable command;
+
+		public Guarded(Runnable command) {
+			this.command = command;
+		}
+
+		@Override
+		public void run() {
+			try {
+				command.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -1,34 +1,71 @@
 package nz.co.troyshaw.minesweeper.controller;
 
 import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
+import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 import nz.co.troyshaw.minesweeper.game.Minesweeper;
 import nz.co.troyshaw.minesweeper.game.MinesweeperListener;
 import nz.co.troyshaw.minesweeper.game.Piece;
-import nz.co.troyshaw.minesweeper.game.Square;
+import nz.co.troyshaw.minesweeper.game.SavedGame;
+import nz.co.troyshaw.minesweeper.gui.HighscoreWindow;
 import nz.co.troyshaw.minesweeper.gui.Initiable;
+import nz.co.troyshaw.minesweeper.gui.MinimapPanel;
+import nz.co.troyshaw.minesweeper.gui.StatisticsWindow;
 import nz.co.troyshaw.minesweeper.gui.gameImages.BoardImage;
 import nz.co.troyshaw.minesweeper.gui.gameImages.ButtonImage;
 import nz.co.troyshaw.minesweeper.gui.gameImages.MainImage;
 import nz.co.troyshaw.minesweeper.images.ImageData;
 import nz.co.troyshaw.minesweeper.images.InvalidDimensionException;
 import nz.co.troyshaw.minesweeper.images.NotImageException;
+import nz.co.troyshaw.minesweeper.images.SkinWatcher;
+import nz.co.troyshaw.minesweeper.misc.Highscores;
+import nz.co.troyshaw.minesweeper.misc.Statistics;
 import nz.co.troyshaw.minesweeper.solver.Solver;
 
 /**
- * A Gui controller for the Minesweeper game.
+ * A Gui controller for the Minesweeper game. <p>
+ * 
+ * Game logic never runs on the EDT. Clicks and solver moves are queued to a single game thread, 
+ * and the events the game fires are passed back to this controller on the EDT, in order, by an {@link EdtListener}.
+ * All state of this class is only touched on the EDT.
+ * 
  * @author Troy Shaw
  *
  */
 public class GuiController implements MinesweeperListener, Initiable {
 	
 	private Minesweeper game;
+	
+	/**
+	 * The thread all moves of this session's games are made on.
+	 */
+	private GameThread gameThread = new GameThread("game-logic");
+	
+	/**
+	 * Passes the current games events back to us on the EDT.
+	 */
+	private EdtListener listener;
+	
+	/**
+	 * The pieces currently drawn on the board.
+	 * The EDT reads these rather than the game, which is being changed on the game thread.
+	 */
+	private Piece[][] pieces;
+	
+	private boolean won, lost;
 
 	//default values
 	private int width = 8, height = 8, numMines = 10;
@@ -40,7 +77,34 @@ public class GuiController implements MinesweeperListener, Initiable {
 	private JFrame frame;
 	private JPanel panel;
 	
-	private Solver solver;
+	private JDialog minimapWindow;
+	private MinimapPanel minimap;
+	
+	/**
+	 * Watches the loaded skin file so changes to it are shown straight away. Null when using the default skin.
+	 */
+	private SkinWatcher skinWatcher;
+	
+	/**
+	 * Incremented every time a skin is asked for, so a slow load can't replace a skin asked for after it.
+	 */
+	private int skinRequest;
+	
+	//read on the game thread to know when a running solve has been replaced by a new game
+	private volatile Solver solver;
+	private volatile boolean solving;
+	
+	/**
+	 * The clicks made on the current game, and the number of times the solver was used on it. 
+	 * Games the solver was used on can't make the highscores.
+	 */
+	private int clicks, assists;
+	
+	/**
+	 * True once the current game has been added to the statistics, 
+	 * so a lost game carried on by an undo isn't added a second time when it finishes again.
+	 */
+	private boolean recorded;
 
 	public GuiController(JFrame frame, JPanel panel) {
 		this.frame = frame;
@@ -51,21 +115,52 @@ public class GuiController implements MinesweeperListener, Initiable {
 	 * Starts a new game with the same parameters as the last game.
 	 */
 	public void newGame() {
-		if (game != null) game.stopTimer();
+		if (game != null) {
+			game.stopTimer();
+			listener.detach();
+		}
 		
-		//first create game and solver
-		game = new Minesweeper(width, height, numMines, this);
-		solver = game.getSolver();
+		//the game itself isn't created until the first move
+		game = null;
+		solver = null;
+		solving = false;
+		clicks = 0;
+		assists = 0;
+		recorded = false;
+		
+		pieces = new Piece[width][height];
+		for (Piece[] column : pieces) Arrays.fill(column, Piece.blank);
+		
+		won = false;
+		lost = false;
 		
 		//then tell our visual components to reset themselves
 		mainImage.resetBoard(width, height, numMines);
 		mainImage.setPositions();
 		mainImage.redraw();
 		
+		if (minimap != null) minimap.resetBoard(width, height);
+		
 		//then we repaint our main panel
 		panel.repaint();
 	}
 
+	/**
+	 * Returns the current game, creating it if no move has been made since it was reset. <p>
+	 * Creating the game is left until it's needed so new boards, however big, are shown straight away.
+	 * 
+	 * @return the current game
+	 */
+	private Minesweeper getGame() {
+		if (game == null) {
+			listener = new EdtListener(this);
+			game = new Minesweeper(width, height, numMines, listener);
+			solver = game.getSolver();
+		}
+		
+		return game;
+	}
+
 	/**
 	 * Starts a new game with the given parameters.
 	 *
@@ -91,13 +186,204 @@ public class GuiController implements MinesweeperListener, Initiable {
 		
 		//board has likely changed size, so we need to pack the frame
 		frame.pack();
+		
+		if (minimapWindow != null) minimapWindow.pack();
 	}
 
 	/**
-	 * Solves the game until no more mines can be logically deduced.
+	 * Saves the current game to the given file. The game is saved on the game thread, between moves.
+	 * 
+	 * @param file the file to save to
+	 */
+	public void saveGame(final File file) {
+		if (game == null) {
+			JOptionPane.showMessageDialog(frame, "There is nothing to save until the first move", "Save Game", JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+		
+		final Minesweeper saving = game;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					SavedGame.save(saving, file);
+				} catch (IOException e) {
+					showError("Could not save the game: " + e.getMessage(), "Error saving");
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Replaces the current game with the one saved in the given file. 
+	 * The file is read on the game thread, then the loaded game is shown on the EDT.
+	 * 
+	 * @param file the saved game
+	 */
+	public void loadGame(final File file) {
+		final EdtListener loadListener = new EdtListener(this);
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Minesweeper loaded;
+				
+				try {
+					loaded = SavedGame.load(file, loadListener);
+				} catch (IOException e) {
+					showError("Could not load the game: " + e.getMessage(), "Error loading");
+					return;
+				}
+				
+				//held until the game is on screen, so the timer shown can't run ahead of it
+				loaded.pauseTimer();
+				
+				//the snapshot published when the game was restored shows it as it was drawn when saved
+				final Piece[][] loadedPieces = loaded.getSnapshot().getPieces();
+				
+				final int minesLeft = loaded.getMinesUnflagged();
+				final int seconds = (int) (loaded.timeSinceStart() / 1000000000L);
+				
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						showLoadedGame(loaded, loadListener, loadedPieces, minesLeft, seconds);
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Swaps in a loaded game and draws it. Must be called on the EDT.
+	 */
+	private void showLoadedGame(final Minesweeper loaded, EdtListener loadListener, Piece[][] loadedPieces, int minesLeft, int seconds) {
+		//resizes everything and detaches the old game
+		newGame(loaded.getWidth(), loaded.getHeight(), loaded.getNumMines());
+		
+		game = loaded;
+		listener = loadListener;
+		solver = loaded.getSolver();
+		
+		for (int i = 0; i < loadedPieces.length; i++) {
+			for (int j = 0; j < loadedPieces[i].length; j++) {
+				if (loadedPieces[i][j] != Piece.blank) drawPiece(i, j, loadedPieces[i][j]);
+			}
+		}
+		
+		mainImage.setMinesLeft(minesLeft);
+		mainImage.setTimer(seconds);
+		
+		won = loaded.hasWon();
+		lost = loaded.hasDied();
+		
+		if (won) buttonImage.setWon();
+		if (lost) buttonImage.setDead();
+		if (won || lost) boardImage.disableBoard();
+		
+		boardImage.redraw();
+		mainImage.redraw();
+		panel.repaint();
+		
+		if (minimap != null) minimap.flush();
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				loaded.resumeTimer();
+			}
+		});
+	}
+	
+	/**
+	 * Shows an error message on the EDT. Can be called from any thread.
+	 */
+	private void showError(final String message, final String title) {
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				JOptionPane.showMessageDialog(frame, message, title, JOptionPane.ERROR_MESSAGE);
+			}
+		});
+	}
+
+	/**
+	 * Solves the game until no more mines can be logically deduced. <p>
+	 * Each move is made on the game thread, with a short pause between moves so the user can follow along.
 	 */
 	public void solve() {
-		solver.solve();
+		if (solving || game == null) return;
+		
+		solving = true;
+		assists++;
+		
+		final Solver solver = this.solver;
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				solveStep(solver);
+			}
+		});
+	}
+	
+	/**
+	 * Makes a single solver move, then schedules the next. Always runs on the game thread.
+	 * 
+	 * @param solver the solver that was current when the solve was started
+	 */
+	private void solveStep(final Solver solver) {
+		//a new game has been started since
+		if (solver != this.solver) return;
+		
+		if (solver.step()) {
+			gameThread.schedule(new Runnable() {
+				@Override
+				public void run() {
+					solveStep(solver);
+				}
+			}, Solver.sleep);
+		} else {
+			solving = false;
+		}
+	}
+	
+	/**
+	 * Undoes the last move on the game thread. A game with a move undone can't make the highscores.
+	 */
+	public void undo() {
+		final Minesweeper game = this.game;
+		if (game == null || won) return;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!game.undo()) return;
+				
+				//the undo's events are already queued for the EDT, so this is counted before any later move's
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (game == GuiController.this.game) assists++;
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Makes the last undone move again, on the game thread.
+	 */
+	public void redo() {
+		final Minesweeper game = this.game;
+		if (game == null) return;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				game.redo();
+			}
+		});
 	}
 	
 	public void registerButtonImage(ButtonImage buttonImage) {
@@ -112,24 +398,212 @@ public class GuiController implements MinesweeperListener, Initiable {
 		this.boardImage = boardImage;
 	}
 
-	public void leftClick(int x, int y) {
-		game.revealSquare(x, y);
+	public void leftClick(final int x, final int y) {
+		final Minesweeper game = getGame();
+		if (!won && !lost) clicks++;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				game.revealSquare(x, y);
+			}
+		});
 	}
 
-	public void rightClick(int x, int y) {
-		game.toggleSquare(x, y);
+	public void rightClick(final int x, final int y) {
+		final Minesweeper game = getGame();
+		if (!won && !lost) clicks++;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				game.toggleSquare(x, y);
+			}
+		});
 	}
 
-	public void bothClick(int x, int y) {
-		game.revealSurrounding(x, y);
+	public void bothClick(final int x, final int y) {
+		final Minesweeper game = getGame();
+		if (!won && !lost) clicks++;
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				game.revealSurrounding(x, y);
+			}
+		});
+	}
+
+	/**
+	 * Pauses the game timer, such as while the window is minimised.
+	 */
+	public void pause() {
+		if (game != null) game.pauseTimer();
+	}
+	
+	/**
+	 * Resumes the game timer after a pause.
+	 */
+	public void resume() {
+		if (game != null) game.resumeTimer();
 	}
 
 	public void quit() {
 		System.exit(0);
 	}
 
-	public void displayStats() {
+	/**
+	 * Shows the minimap window, creating it the first time it is shown.
+	 */
+	public void displayMinimap() {
+		if (minimapWindow == null) {
+			minimap = new MinimapPanel(width, height);
+			minimap.registerController(this);
+			if (game != null) minimap.redraw(game.getSnapshot());
+			
+			minimapWindow = new JDialog(frame, "Minimap", false);
+			minimapWindow.getContentPane().add(minimap);
+			minimapWindow.setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+			minimapWindow.pack();
+			minimapWindow.setLocation(frame.getX() + frame.getWidth(), frame.getY());
+		}
+		
+		minimapWindow.setVisible(true);
+	}
+	
+	/**
+	 * Scrolls the board so the given square is in the centre of the visible area.
+	 *
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 */
+	public void jumpTo(int x, int y) {
+		Rectangle visible = panel.getVisibleRect();
+		
+		int centreX = boardImage.getX() + x * ImageData.squareSize + ImageData.squareSize / 2;
+		int centreY = boardImage.getY() + y * ImageData.squareSize + ImageData.squareSize / 2;
+		
+		panel.scrollRectToVisible(new Rectangle(centreX - visible.width / 2, centreY - visible.height / 2, visible.width, visible.height));
+	}
 
+	/**
+	 * Shows the statistics of every game played. The statistics are worked out in the background, then shown on the EDT.
+	 */
+	public void displayStats() {
+		new SwingWorker<Void, Void>() {
+			private List<Statistics.ConfigStats> boards;
+			private List<Statistics.MonthStats> months;
+			
+			@Override
+			protected Void doInBackground() throws Exception {
+				Statistics statistics = Statistics.getDefault();
+				
+				boards = statistics.getConfigStats();
+				months = statistics.getMonthStats();
+				return null;
+			}
+			
+			@Override
+			protected void done() {
+				try {
+					get();
+				} catch (InterruptedException e) {
+					return;
+				} catch (ExecutionException e) {
+					JOptionPane.showMessageDialog(frame, "Could not read the statistics: " + e.getCause().getMessage(), "Statistics", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				
+				new StatisticsWindow(frame, boards, months).setVisible(true);
+			}
+		}.execute();
+	}
+	
+	/**
+	 * Adds the current game, which has just finished, to the statistics. 
+	 * Its 3BV is worked out and it is written on the game thread.
+	 */
+	private void recordStatistics(final boolean won) {
+		if (recorded) return;
+		recorded = true;
+		
+		final Minesweeper finished = game;
+		final int clicks = this.clicks, assists = this.assists;
+		final long date = System.currentTimeMillis();
+		
+		gameThread.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Statistics statistics = Statistics.getDefault();
+					
+					statistics.add(date, finished.getWidth(), finished.getHeight(), finished.getNumMines(), finished.getSeed(), 
+							won, finished.timeSinceStart(), clicks, finished.get3BV(), assists);
+					statistics.flush();
+				} catch (IOException e) {
+					showError("Could not save the statistics: " + e.getMessage(), "Statistics");
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Shows the high score tables.
+	 */
+	public void displayHighscores() {
+		Highscores highscores = getHighscores();
+		
+		if (highscores != null) new HighscoreWindow(frame, highscores).setVisible(true);
+	}
+	
+	/**
+	 * Returns the high score store, or null after telling the user if it can't be opened.
+	 * Failures writing it in the background are shown the same way.
+	 */
+	private Highscores getHighscores() {
+		try {
+			Highscores highscores = Highscores.getDefault();
+			
+			highscores.setErrorListener(new Highscores.ErrorListener() {
+				@Override
+				public void highscoresFailed(String message, IOException e) {
+					showError(message + ": " + e.getMessage(), "Highscores");
+				}
+			});
+			
+			return highscores;
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(frame, "Could not open the highscores: " + e.getMessage(), "Highscores", JOptionPane.ERROR_MESSAGE);
+			return null;
+		}
+	}
+	
+	/**
+	 * Asks for the player's name and records the time if the won game made its high score table.
+	 */
+	private void recordHighscore(Minesweeper winner) {
+		Highscores highscores = getHighscores();
+		if (highscores == null) return;
+		
+		Highscores.Config config = new Highscores.Config(winner.getWidth(), winner.getHeight(), winner.getNumMines());
+		long millis = winner.timeSinceStart() / 1000000;
+		
+		if (!highscores.isHighscore(config, millis)) return;
+		
+		String name = JOptionPane.showInputDialog(frame, String.format("You won in %.3f seconds, a new highscore! Enter your name:", millis / 1000.0), 
+				"Highscore", JOptionPane.PLAIN_MESSAGE);
+		
+		if (name == null || name.trim().isEmpty()) return;
+		
+		try {
+			//only updates the tables, the highscores thread writes it to disk
+			highscores.add(config, name.trim(), millis);
+		} catch (IOException e) {
+			JOptionPane.showMessageDialog(frame, "Could not save the highscore: " + e.getMessage(), "Highscores", JOptionPane.ERROR_MESSAGE);
+			return;
+		}
+		
+		displayHighscores();
 	}
 
 	public void displayHelp() {
@@ -148,12 +622,12 @@ public class GuiController implements MinesweeperListener, Initiable {
 
 	@Override
 	public void squareRevealed(int x, int y, int numMines) {
-		boardImage.drawPiece(x, y, Piece.getPiece(numMines));
+		drawPiece(x, y, Piece.getPiece(numMines));
 	}
 
 	@Override
 	public void squareFlagged(int x, int y) {
-		boardImage.drawPiece(x, y, Piece.flag);
+		drawPiece(x, y, Piece.flag);
 		mainImage.redraw();
 		panel.repaint();
 	}
@@ -161,19 +635,19 @@ public class GuiController implements MinesweeperListener, Initiable {
 	@Override
 	public void mineRevealed(int x, int y) {
 		boardImage.disableBoard();
-		boardImage.drawPiece(x, y, Piece.redMine);
+		drawPiece(x, y, Piece.redMine);
 	}
 
 	@Override
 	public void squareQuestioned(int x, int y) {
-		boardImage.drawPiece(x, y, Piece.question);
+		drawPiece(x, y, Piece.question);
 		mainImage.redraw();
 		panel.repaint();
 	}
 
 	@Override
 	public void squareUnmarked(int x, int y) {
-		boardImage.drawPiece(x, y, Piece.blank);
+		drawPiece(x, y, Piece.blank);
 		mainImage.redraw();
 		panel.repaint();
 	}
@@ -181,12 +655,12 @@ public class GuiController implements MinesweeperListener, Initiable {
 
 	@Override
 	public void squareBomb(int x, int y) {
-		boardImage.drawPiece(x, y, Piece.mine);
+		drawPiece(x, y, Piece.mine);
 	}
 
 	@Override
 	public void incorrectFlag(int x, int y) {
-		boardImage.drawPiece(x, y, Piece.incorrectFlag);
+		drawPiece(x, y, Piece.incorrectFlag);
 	}
 	
 	@Override
@@ -194,23 +668,45 @@ public class GuiController implements MinesweeperListener, Initiable {
 		mainImage.setMinesLeft(numFlags);
 		mainImage.redraw();
 		panel.repaint();
+		
+		if (minimap != null) minimap.flush();
 	}
 	
 	@Override
 	public void gameLost() {
+		lost = true;
 		buttonImage.setDead();
 		boardImage.disableBoard();
 		mainImage.redraw();
 		panel.repaint();
+		
+		if (minimap != null) minimap.flush();
+		
+		recordStatistics(false);
+	}
+	
+	@Override
+	public void gameResumed() {
+		lost = false;
+		buttonImage.setDefault();
+		boardImage.enableBoard();
 	}
 	
 
 	@Override
 	public void gameWon() {
+		won = true;
 		buttonImage.setWon();
 		boardImage.disableBoard();
 		mainImage.redraw();
 		panel.repaint();
+		
+		if (minimap != null) minimap.flush();
+		
+		recordStatistics(true);
+		
+		//games the solver helped with don't count
+		if (assists == 0) recordHighscore(game);
 	}
 
 	@Override
@@ -224,28 +720,60 @@ public class GuiController implements MinesweeperListener, Initiable {
 		boardImage.redraw();
 		mainImage.redraw();
 		panel.repaint();
+		
+		if (minimap != null) minimap.flush();
+	}
+	
+	/**
+	 * Draws the given piece to the board, and to the minimap if it is being shown.
+	 */
+	private void drawPiece(int x, int y, Piece piece) {
+		pieces[x][y] = piece;
+		boardImage.drawPiece(x, y, piece);
+		
+		if (minimap != null) minimap.setPiece(x, y, piece);
 	}
 	
 	public boolean hasDied() {
-		return game.hasDied();
+		return lost;
 	}
 	
 	public boolean hasWon() {
-		return game.hasWon();
+		return won;
 	}
 
+	/**
+	 * Returns the piece drawn at the given square, or null if the square is not on the board.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the piece at that square, or null
+	 */
 	public Piece getPiece(int x, int y) {
-		Square s = game.getSquare(x, y);
-		return s == null ? null : s.getPiece();
+		if (x < 0 || y < 0 || x >= width || y >= height) return null;
+		
+		return pieces[x][y];
 	}
 
-	public Square[][] getPieces() {
-		return game.getSquares();
+	/**
+	 * Returns the pieces currently drawn on the board, indexed [x][y].
+	 * 
+	 * @return the board's pieces
+	 */
+	public Piece[][] getPieces() {
+		return pieces;
 	}
 	
-	public Piece[][] getSurroundingPieces(int x, int y) {
-		Piece[][] p = new Piece[3][3];
-
+	/**
+	 * Fills the given 3x3 array with the pieces surrounding (and including) the given square.
+	 * Squares off the board are set to null.
+	 *
+	 * @param x the x coordinate of the centre square
+	 * @param y the y coordinate of the centre square
+	 * @param p the array to fill, indexed [x][y]
+	 * @return the given array
+	 */
+	public Piece[][] getSurroundingPieces(int x, int y, Piece[][] p) {
 		for (int i = 0; i < 3; i++) {
 			for (int j = 0; j < 3; j++) {
 				p[i][j] = getPiece(x + i - 1, y + j - 1);
@@ -255,28 +783,116 @@ public class GuiController implements MinesweeperListener, Initiable {
 		return p;
 	}
 
+	/**
+	 * Switches back to the default skin. The skin is read in the background, then swapped in on the EDT.
+	 */
 	public void setDefaultSkin() {
-		ImageData.loadDefaultImages();
+		stopWatchingSkin();
 		
-		mainImage.reskin();
-		frame.repaint();
+		final int request = ++skinRequest;
+		
+		new SwingWorker<BufferedImage, Void>() {
+			@Override
+			protected BufferedImage doInBackground() {
+				return ImageData.readDefaultSpriteSheet();
+			}
+			
+			@Override
+			protected void done() {
+				if (request != skinRequest) return;
+				
+				try {
+					applySkin(get());
+				} catch (InterruptedException e) {
+					//leave the current skin
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				}
+			}
+		}.execute();
 	}
 	
-	public void loadSkin(File file) {
+	/**
+	 * Switches to the skin in the given file, and reloads it whenever the file changes. <p>
+	 * The skin is read in the background, then swapped in on the EDT.
+	 * 
+	 * @param file the skin image
+	 */
+	public void loadSkin(final File file) {
 		if (file == null) throw new NullPointerException("File cannot be null");
 		
+		final int request = ++skinRequest;
+		
+		new SwingWorker<BufferedImage, Void>() {
+			@Override
+			protected BufferedImage doInBackground() throws Exception {
+				return ImageData.readSpriteSheet(file);
+			}
+			
+			@Override
+			protected void done() {
+				if (request != skinRequest) return;
+				
+				BufferedImage spriteSheet;
+				
+				try {
+					spriteSheet = get();
+				} catch (InterruptedException e) {
+					return;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					
+					if (cause instanceof InvalidDimensionException) {
+						JOptionPane.showMessageDialog(null, "Image must be 144 x 122 pixels", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
+					} else if (cause instanceof NotImageException) {
+						JOptionPane.showMessageDialog(null, "File wasn't an image", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
+					} else {
+						JOptionPane.showMessageDialog(null, "There was an error reading file", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
+					}
+					return;
+				}
+				
+				applySkin(spriteSheet);
+				watchSkin(file, request);
+			}
+		}.execute();
+	}
+	
+	/**
+	 * Starts reloading the given skin whenever it changes on disk, for as long as no other skin has been asked for.
+	 */
+	private void watchSkin(File file, final int request) {
+		stopWatchingSkin();
+		
 		try {
-			ImageData.loadImages(file);
-		} catch (InvalidDimensionException e) {
-			JOptionPane.showMessageDialog(null, "Image must be 144 x 122 pixels", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
-			return;
-		} catch (NotImageException e) {
-			JOptionPane.showMessageDialog(null, "File wasn't an image", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
-			return;
+			skinWatcher = new SkinWatcher(file, new SkinWatcher.Listener() {
+				@Override
+				public void skinChanged(final BufferedImage spriteSheet) {
+					SwingUtilities.invokeLater(new Runnable() {
+						@Override
+						public void run() {
+							if (request == skinRequest) applySkin(spriteSheet);
+						}
+					});
+				}
+			});
 		} catch (IOException e) {
-			JOptionPane.showMessageDialog(null, "There was an error reading file", "Error reskinning", JOptionPane.ERROR_MESSAGE); 
-			return;
+			//the skin still works, it just won't reload itself
 		}
+	}
+	
+	private void stopWatchingSkin() {
+		if (skinWatcher != null) {
+			skinWatcher.stop();
+			skinWatcher = null;
+		}
+	}
+	
+	/**
+	 * Swaps in the given spritesheet and redraws everything with it. Must be called on the EDT.
+	 */
+	private void applySkin(BufferedImage spriteSheet) {
+		ImageData.setSpriteSheet(spriteSheet);
 		
 		mainImage.reskin();
 		frame.repaint();
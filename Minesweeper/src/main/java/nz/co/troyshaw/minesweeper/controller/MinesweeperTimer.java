@@ -1,54 +1,183 @@
 package nz.co.troyshaw.minesweeper.controller;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.awt.GraphicsEnvironment;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import nz.co.troyshaw.minesweeper.game.MinesweeperListener;
 
-public class MinesweeperTimer extends Timer {
-	
-	private ClockTimerTask timer;
-	
-	private long startTime, endTime;
-	
-	public MinesweeperTimer(MinesweeperListener listener) {
-		timer = new ClockTimerTask(listener);
-		
-	}
-	
-	@Override
-	public void cancel() {
-		endTime = System.currentTimeMillis();
-		
-		timer.stop();
-		
-		super.cancel();
-	}
-	
-	public void startTimer() {
-		startTime = System.currentTimeMillis();
-		this.scheduleAtFixedRate(timer, 1000, 1000);
-	}
-	
-	public long getGameTime() {
-		return endTime - startTime;
-	}
-	
-	private class ClockTimerTask extends TimerTask {
-		private boolean running = true;
-		private MinesweeperListener listener;
-		
-		public ClockTimerTask(MinesweeperListener listener) {
-			this.listener = listener;
-		}
-		
+/**
+ * Times a single game, and tells the listener each time another second of the game has passed. <p>
+ *
+ * Time is measured with {@link System#nanoTime()}, so it is unaffected by changes to the system clock.
+ * The ticks of every game are run by a single shared thread, so any number of games can be timed at once.
+ * When running headless no ticks are scheduled at all, though the game is still timed.
+ */
+public class MinesweeperTimer {
+
+	private static final long TICK = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * Runs the ticks of every game. A tick does very little, so one thread is plenty.
+	 */
+	private static final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
 		@Override
-		public void run() {
-			if (running) listener.tick();
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "minesweeper-timer");
+			t.setDaemon(true);
+			return t;
 		}
-		
-		public void stop() {
-			running = false;
+	});
+
+	static {
+		//finished games shouldn't leave their ticks sitting in the queue
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	private final MinesweeperListener listener;
+	private boolean ticking;
+
+	private ScheduledFuture<?> ticks;
+
+	/**
+	 * The time the timer was last started or resumed, and the time counted before then.
+	 */
+	private long startTime, elapsed;
+
+	private boolean started, running, cancelled;
+
+	/**
+	 * Creates a timer that ticks unless running headless.
+	 *
+	 * @param listener the listener to tick
+	 */
+	public MinesweeperTimer(MinesweeperListener listener) {
+		this(listener, !GraphicsEnvironment.isHeadless());
+	}
+
+	/**
+	 * Creates a timer.
+	 *
+	 * @param listener the listener to tick
+	 * @param ticking true if the listener should be ticked every second, false to only measure time
+	 */
+	public MinesweeperTimer(MinesweeperListener listener, boolean ticking) {
+		this.listener = listener;
+		this.ticking = ticking;
+	}
+
+	/**
+	 * Starts timing. Does nothing if the timer has already been started.
+	 */
+	public synchronized void startTimer() {
+		if (started) return;
+
+		started = true;
+		resumeTimer();
+	}
+
+	/**
+	 * Stops timing until the timer is resumed.
+	 */
+	public synchronized void pauseTimer() {
+		if (!running) return;
+
+		elapsed += System.nanoTime() - startTime;
+		running = false;
+
+		stopTicks();
+	}
+
+	/**
+	 * Carries on timing from where the timer was paused. Does nothing if the timer was never started.
+	 */
+	public synchronized void resumeTimer() {
+		if (!started || running || cancelled) return;
+
+		startTime = System.nanoTime();
+		running = true;
+
+		if (ticking) startTicks();
+	}
+
+	/**
+	 * Turns the listener's ticks on or off, such as for games nothing is showing the time of. 
+	 * The game is timed either way.
+	 *
+	 * @param ticking true if the listener should be ticked every second
+	 */
+	public synchronized void setTicking(boolean ticking) {
+		if (this.ticking == ticking) return;
+
+		this.ticking = ticking;
+
+		if (!running) return;
+
+		if (ticking) startTicks();
+		else stopTicks();
+	}
+
+	public synchronized boolean isTicking() {
+		return ticking;
+	}
+
+	/**
+	 * Sets how long the game has already been timed for, such as when carrying on a saved game. 
+	 * Does nothing once the timer has started.
+	 *
+	 * @param elapsed the game time in nanoseconds
+	 */
+	public synchronized void setElapsedNanos(long elapsed) {
+		if (started) return;
+
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * Stops the timer for good. The game time is frozen at the time this was called.
+	 */
+	public synchronized void cancel() {
+		pauseTimer();
+		cancelled = true;
+	}
+
+	/**
+	 * Returns how long the game has been timed for, not counting time paused.
+	 *
+	 * @return the game time in nanoseconds
+	 */
+	public synchronized long getElapsedNanos() {
+		return running ? elapsed + System.nanoTime() - startTime : elapsed;
+	}
+
+	/**
+	 * Returns how long the game has been timed for, not counting time paused.
+	 *
+	 * @return the game time in milliseconds
+	 */
+	public long getGameTime() {
+		return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+	}
+
+	private void startTicks() {
+		Runnable tick = new Runnable() {
+			@Override
+			public void run() {
+				listener.tick();
+			}
+		};
+
+		//line the ticks up with whole seconds of game time
+		long timed = elapsed + System.nanoTime() - startTime;
+		ticks = scheduler.scheduleAtFixedRate(tick, TICK - timed % TICK, TICK, TimeUnit.NANOSECONDS);
+	}
+
+	private void stopTicks() {
+		if (ticks != null) {
+			ticks.cancel(false);
+			ticks = null;
 		}
 	}
 }
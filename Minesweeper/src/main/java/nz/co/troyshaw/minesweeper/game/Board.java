@@ -1,18 +1,66 @@
 package nz.co.troyshaw.minesweeper.game;
 
-import java.awt.Point;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 public class Board {
 
+	//how the frontier last saw each square
+	private static final byte HIDDEN = 0, FLAGGED = 1, REVEALED = 2, QUESTIONED = 3;
+
+	//the parts the squares are split into, the unknown squares being the two in the middle
+	private static final int FRONTIER_NUMBER = 0, FRONTIER_UNKNOWN = 1, INTERIOR = 2, SETTLED = 3;
+
 	private int width, height, numMines;
 
 	private Square[][] board;
 
 	private boolean populated;
 
+	/**
+	 * How each square was when the board was last told it changed, indexed by {@link #indexOf(int, int)}.
+	 */
+	private byte[] status;
+
+	/**
+	 * For each square, how many of its neighbours are neither revealed nor flagged, 
+	 * and how many are revealed numbers.
+	 */
+	private byte[] unknownAround, numbersAround;
+
+	/**
+	 * Splits the squares into the revealed numbers with unknown squares around them, the unknown squares 
+	 * around revealed numbers, the other unknown squares, and the rest.
+	 */
+	private SquarePartition parts;
+
+	/**
+	 * The squares neither revealed nor flagged, and the two halves of the frontier, as parts of the partition.
+	 */
+	private IndexedIntSet unknowns, frontierNumbers, frontierUnknowns;
+
+	/**
+	 * The opening each square with no adjacent mines is part of, or -1 for every other square. 
+	 * Set when the board is populated, and used for the union-find while the openings are being worked out.
+	 */
+	private int[] openingOf;
+
+	/**
+	 * The squares of every opening, each opening's zeros and then its border, end to end. 
+	 * Opening i's squares run from openingStart[i] up to openingStart[i + 1]. 
+	 * A number bordering more than one opening is in each of them.
+	 */
+	private int[] openingStart = new int[1], openingSquares = new int[0];
+
+	/**
+	 * For each opening, how many of its zeros are marked, and how many are revealed.
+	 */
+	private int[] openingMarked = new int[0], openingRevealed = new int[0];
+
+	private int openings, bbbv;
+
 	/**
 	 * Creates a new unpopulated minesweeper board. 
 	 * 
@@ -32,6 +80,20 @@ public class Board {
 				board[i][j] = new Square(i, j);
 			}
 		}
+
+		int n = width * height;
+		status = new byte[n];
+		unknownAround = new byte[n];
+		numbersAround = new byte[n];
+		parts = new SquarePartition(n, SETTLED + 1, INTERIOR);
+		unknowns = new IndexedIntSet(parts, FRONTIER_UNKNOWN, SETTLED);
+		frontierNumbers = new IndexedIntSet(parts, FRONTIER_NUMBER, FRONTIER_UNKNOWN);
+		frontierUnknowns = new IndexedIntSet(parts, FRONTIER_UNKNOWN, INTERIOR);
+
+		openingOf = new int[n];
+		Arrays.fill(openingOf, -1);
+
+		resetFrontier();
 	}
 
 	/**
@@ -40,37 +102,68 @@ public class Board {
 	 * @param ySafe the y coordinate that should not contain a mine
 	 */
 	public void populateBoard(int xSafe, int ySafe) {
+		populateBoard(xSafe, ySafe, new Random());
+	}
+
+	/**
+	 * Populates the board with the given square guaranteed to be a non-mine, 
+	 * placing the mines using the given random. The same seed gives the same board.
+	 * 
+	 * @param xSafe the x coordinate that should not contain a mine
+	 * @param ySafe the y coordinate that should not contain a mine
+	 * @param random the random used to place mines
+	 */
+	public void populateBoard(int xSafe, int ySafe, Random random) {
 		if (populated) return;
 
-		Point safeSquare = new Point(xSafe, ySafe);
+		int safe = indexOf(xSafe, ySafe);
 
-		List<Point> points = new ArrayList<Point>();
+		int[] cells = new int[width * height - 1];
 		boolean[][] squares = new boolean[width][height];
 
-		//all the points that might be mines
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				points.add(new Point(i, j));
-			}
+		//the index of every square that might be a mine, which is all but our safe square
+		for (int i = 0, n = 0; i < width * height; i++) {
+			if (i != safe) cells[n++] = i;
 		}
 
-		//remove our safe square then shuffle so we are random
-		points.remove(safeSquare);
-		Collections.shuffle(points);
+		//shuffle just the first numMines cells into place (Fisher-Yates), and set them as our mines
+		for (int i = 0; i < numMines && i < cells.length; i++) {
+			int j = i + random.nextInt(cells.length - i);
+			int cell = cells[j];
 
-		//get the first 0-numMines points (that are random) and set them as our mine
-		for (int i = 0; i < numMines; i++) {
-			Point p = points.get(i);
+			cells[j] = cells[i];
+			cells[i] = cell;
 
-			squares[p.x][p.y] = true;
+			squares[cell % width][cell / width] = true;
 		}
 
+		placeMines(squares);
+	}
+
+	/**
+	 * Populates the board with mines in exactly the given squares, for restoring a saved game.
+	 *
+	 * @param mines the mines, indexed [x][y]
+	 */
+	void restore(boolean[][] mines) {
+		reset();
+		placeMines(mines);
+	}
+
+	/**
+	 * Sets each square as a mine or a non-mine with its count of adjacent mines, then marks the board populated.
+	 */
+	private void placeMines(boolean[][] squares) {
+		//the adjacent mines of each square, or -1 for a mine, so the openings can be found without going through the squares
+		int[] adjacent = new int[width * height];
+
 		//now iterate over the array of mine/ non mine and set our board appropriately
 		for (int i = 0; i < width; i++) {
 			for (int j = 0; j < height; j++) {
 				if (squares[i][j]) {
 					//the square was a mine
 					board[i][j].setMine();
+					adjacent[indexOf(i, j)] = -1;
 				} else {
 					//the square wasn't a mine, so count adjacent squares and set as non-mine
 					int numMines = 0;
@@ -83,13 +176,359 @@ public class Board {
 						}
 					}
 					board[i][j].setNonMine(numMines);
+					adjacent[indexOf(i, j)] = numMines;
 				}
 			}
 		}
 
+		findOpenings(adjacent);
 		populated = true;
 	}
 
+	/**
+	 * Works out the openings of the freshly populated board, and from them its 3BV. 
+	 * The zeros are joined to the zeros next to them with a union-find, then the squares of each opening 
+	 * are laid out together so an opening can be revealed without searching for it.
+	 */
+	private void findOpenings(int[] adjacent) {
+		int[] parent = openingOf;
+
+		//join each zero to the zeros before it: to its left, and the three above it
+		for (int j = 0; j < height; j++) {
+			for (int i = 0; i < width; i++) {
+				int index = indexOf(i, j);
+
+				if (adjacent[index] != 0) {
+					parent[index] = -1;
+					continue;
+				}
+
+				parent[index] = index;
+
+				if (i > 0 && adjacent[index - 1] == 0) union(parent, index, index - 1);
+				if (j > 0) {
+					for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+						if (adjacent[indexOf(x, j - 1)] == 0) union(parent, index, indexOf(x, j - 1));
+					}
+				}
+			}
+		}
+
+		for (int index = 0; index < parent.length; index++) {
+			if (parent[index] >= 0) parent[index] = find(parent, index);
+		}
+
+		//number the openings in the order their first square comes, replacing the roots with the numbers.
+		//roots always come before the rest of their opening, so each square's root is numbered before it is reached
+		openings = 0;
+
+		for (int index = 0; index < parent.length; index++) {
+			int root = parent[index];
+			if (root < 0) continue;
+
+			parent[index] = root == index ? -2 - openings++ : parent[root];
+		}
+
+		for (int index = 0; index < parent.length; index++) {
+			if (parent[index] < -1) parent[index] = -2 - parent[index];
+		}
+
+		if (openingStart.length < openings + 1) {
+			openingStart = new int[openings + 1];
+			openingMarked = new int[openings];
+			openingRevealed = new int[openings];
+		}
+
+		Arrays.fill(openingStart, 0, openings + 1, 0);
+		Arrays.fill(openingMarked, 0, openings, 0);
+		Arrays.fill(openingRevealed, 0, openings, 0);
+
+		//count the squares of each opening, and every number on the border of none, which is the 3BV
+		bbbv = openings;
+		int[] around = new int[8];
+
+		for (int index = 0; index < parent.length; index++) {
+			int i = index % width, j = index / width;
+
+			if (parent[index] >= 0) {
+				openingStart[parent[index] + 1]++;
+
+				if (status[index] == FLAGGED || status[index] == QUESTIONED) openingMarked[parent[index]]++;
+			} else if (adjacent[index] > 0) {
+				int count = bordering(i, j, around);
+
+				for (int k = 0; k < count; k++) openingStart[around[k] + 1]++;
+				if (count == 0) bbbv++;
+			}
+		}
+
+		for (int o = 0; o < openings; o++) openingStart[o + 1] += openingStart[o];
+
+		if (openingSquares.length < openingStart[openings]) openingSquares = new int[openingStart[openings]];
+
+		//then lay them out, using each opening's start as where its next square goes
+		for (int index = 0; index < parent.length; index++) {
+			if (parent[index] >= 0) openingSquares[openingStart[parent[index]]++] = index;
+		}
+
+		for (int index = 0; index < parent.length; index++) {
+			if (adjacent[index] <= 0) continue;
+
+			int count = bordering(index % width, index / width, around);
+			for (int k = 0; k < count; k++) openingSquares[openingStart[around[k]]++] = index;
+		}
+
+		//which leaves each start at the next opening's start
+		for (int o = openings; o > 0; o--) openingStart[o] = openingStart[o - 1];
+		openingStart[0] = 0;
+	}
+
+	/**
+	 * Puts the different openings the given number borders in around, and returns how many there are.
+	 */
+	private int bordering(int x, int y, int[] around) {
+		int count = 0;
+
+		for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				if (!positionExists(i, j)) continue;
+
+				int o = openingOf[indexOf(i, j)];
+				if (o < 0) continue;
+
+				boolean seen = false;
+				for (int k = 0; k < count && !seen; k++) seen = around[k] == o;
+
+				if (!seen) around[count++] = o;
+			}
+		}
+
+		return count;
+	}
+
+	private static int find(int[] parent, int index) {
+		while (parent[index] != index) {
+			//path halving
+			parent[index] = parent[parent[index]];
+			index = parent[index];
+		}
+
+		return index;
+	}
+
+	/**
+	 * Joins the sets of two squares, keeping the lower root so each root is the first square of its set.
+	 */
+	private static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+
+		if (a < b) parent[b] = a;
+		else if (b < a) parent[a] = b;
+	}
+
+	/**
+	 * Clears the board back to unpopulated, so it can be used for another game of the same size.
+	 */
+	public void reset() {
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				board[i][j].reset();
+			}
+		}
+
+		resetFrontier();
+		Arrays.fill(openingOf, -1);
+		openings = 0;
+		bbbv = 0;
+		populated = false;
+	}
+
+	/**
+	 * Sets every square back to unknown, with no frontier.
+	 */
+	private void resetFrontier() {
+		Arrays.fill(status, HIDDEN);
+		Arrays.fill(numbersAround, (byte) 0);
+
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				int around = (Math.min(i + 1, width - 1) - Math.max(i - 1, 0) + 1) * (Math.min(j + 1, height - 1) - Math.max(j - 1, 0) + 1);
+				unknownAround[indexOf(i, j)] = (byte) (around - 1);
+			}
+		}
+
+		parts.reset(INTERIOR);
+
+		Arrays.fill(openingMarked, 0);
+		Arrays.fill(openingRevealed, 0);
+	}
+
+	/**
+	 * Works the frontier out again from every square, for when the squares have been set directly, 
+	 * as when restoring a saved game.
+	 */
+	void recountFrontier() {
+		resetFrontier();
+
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				squareChanged(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Updates the frontier after the given square was revealed, flagged, or put back by an undo. 
+	 * Must be called every time a square's state changes, and takes constant time.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	void squareChanged(int x, int y) {
+		Square s = board[x][y];
+		int index = indexOf(x, y);
+
+		byte now = s.isRevealed() ? REVEALED : s.isFlagged() ? FLAGGED : s.isQuestioned() ? QUESTIONED : HIDDEN;
+		byte was = status[index];
+		if (now == was) return;
+
+		status[index] = now;
+
+		int o = openingOf[index];
+		if (o >= 0) {
+			openingMarked[o] += (isMarked(now) ? 1 : 0) - (isMarked(was) ? 1 : 0);
+			openingRevealed[o] += (now == REVEALED ? 1 : 0) - (was == REVEALED ? 1 : 0);
+		}
+
+		int unknownChange = (isUnknown(now) ? 1 : 0) - (isUnknown(was) ? 1 : 0);
+		int numberChange = isNumber(s) ? (now == REVEALED ? 1 : 0) - (was == REVEALED ? 1 : 0) : 0;
+
+		//questioning a square changes nothing around it
+		if (unknownChange == 0 && numberChange == 0) return;
+
+		for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				if (!positionExists(i, j)) continue;
+
+				if (i != x || j != y) {
+					int k = indexOf(i, j);
+					unknownAround[k] += unknownChange;
+					numbersAround[k] += numberChange;
+				}
+
+				updateFrontier(i, j);
+			}
+		}
+	}
+
+	private void updateFrontier(int x, int y) {
+		int index = indexOf(x, y);
+		int part;
+
+		if (isUnknown(status[index])) part = numbersAround[index] > 0 ? FRONTIER_UNKNOWN : INTERIOR;
+		else if (status[index] == REVEALED && unknownAround[index] > 0 && isNumber(board[x][y])) part = FRONTIER_NUMBER;
+		else part = SETTLED;
+
+		parts.move(index, part);
+	}
+
+	private static boolean isNumber(Square s) {
+		return !s.isMine() && s.numMines() > 0;
+	}
+
+	private static boolean isUnknown(byte status) {
+		return status == HIDDEN || status == QUESTIONED;
+	}
+
+	private static boolean isMarked(byte status) {
+		return status == FLAGGED || status == QUESTIONED;
+	}
+
+	/**
+	 * Returns the opening the given square is a zero of, or -1 if it isn't a zero or the board isn't populated.
+	 */
+	int getOpening(int index) {
+		return openingOf[index];
+	}
+
+	/**
+	 * Returns true if none of the opening's zeros are marked or revealed, so revealing any of them 
+	 * reveals the whole opening, and every square of its border that isn't marked.
+	 */
+	boolean isOpeningUntouched(int opening) {
+		return openingMarked[opening] == 0 && openingRevealed[opening] == 0;
+	}
+
+	/**
+	 * Returns the first of the opening's squares, for {@link #getOpeningSquare(int)}. 
+	 * Its squares run up to the start of the next opening.
+	 */
+	int getOpeningStart(int opening) {
+		return openingStart[opening];
+	}
+
+	int getOpeningEnd(int opening) {
+		return openingStart[opening + 1];
+	}
+
+	int getOpeningSquare(int i) {
+		return openingSquares[i];
+	}
+
+	/**
+	 * Returns the squares that are neither revealed nor flagged. 
+	 * The set is kept up to date as the game is played, so must only be read on the game's thread.
+	 *
+	 * @return the indices of the unknown squares
+	 */
+	public IndexedIntSet getUnknowns() {
+		return unknowns;
+	}
+
+	/**
+	 * Returns the revealed numbers that have squares around them that are neither revealed nor flagged, 
+	 * which are the only numbers a move can be worked out from. 
+	 * The set is kept up to date as the game is played, so must only be read on the game's thread.
+	 *
+	 * @return the indices of the numbers on the frontier
+	 */
+	public IndexedIntSet getFrontierNumbers() {
+		return frontierNumbers;
+	}
+
+	/**
+	 * Returns the squares that are neither revealed nor flagged and are next to a revealed number. 
+	 * The set is kept up to date as the game is played, so must only be read on the game's thread.
+	 *
+	 * @return the indices of the unknown squares on the frontier
+	 */
+	public IndexedIntSet getFrontierUnknowns() {
+		return frontierUnknowns;
+	}
+
+	/**
+	 * Returns the 3BV of the board, the fewest clicks that clear it without flagging: 
+	 * one for each opening (a connected area of squares with no adjacent mines, along with its border), 
+	 * plus one for each numbered square not on the border of an opening. 
+	 * Worked out when the board is populated, so must only be called once it is.
+	 *
+	 * @return the 3BV of the board
+	 */
+	public int get3BV() {
+		return bbbv;
+	}
+
+	/**
+	 * Returns the number of openings on the board: connected areas of squares with no adjacent mines. 
+	 * Must only be called once the board is populated.
+	 *
+	 * @return the number of openings
+	 */
+	public int getOpenings() {
+		return openings;
+	}
+
 	/**
 	 * Returns if this board has been populated.
 	 *
@@ -99,6 +538,30 @@ public class Board {
 		return populated;
 	}
 
+	/**
+	 * Returns the index of a square, counting along each row from the top left. 
+	 * This is how squares are numbered in move logs and when mines are placed.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the index of the square
+	 */
+	public int indexOf(int x, int y) {
+		return y * width + x;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getNumMines() {
+		return numMines;
+	}
+
 	public Square getSquare(int x, int y) {
 		return board[x][y];
 	}
@@ -0,0 +1,126 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * An unchanging copy of how a game's board looked at the end of a move, for reading from any thread. <p>
+ *
+ * Snapshots share the parts of the board that didn't change between them, so taking one costs little more than
+ * the squares changed by the move. Later snapshots have higher versions.
+ *
+ * @see Minesweeper#getSnapshot()
+ */
+public final class BoardSnapshot {
+
+	private static final Piece[] PIECES = Piece.values();
+
+	private final int width, height, numMines, minesUnflagged;
+	private final boolean won, lost;
+	private final long version;
+
+	/**
+	 * The piece ordinal of each square, indexed y * width + x, in chunks of {@link VersionedBoard#CHUNK} squares.
+	 * Never changed once the snapshot is made.
+	 */
+	private final byte[][] chunks;
+
+	BoardSnapshot(int width, int height, int numMines, int minesUnflagged, boolean won, boolean lost, long version, byte[][] chunks) {
+		this.width = width;
+		this.height = height;
+		this.numMines = numMines;
+		this.minesUnflagged = minesUnflagged;
+		this.won = won;
+		this.lost = lost;
+		this.version = version;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * Returns the piece shown at the given square, including the mines and wrong flags shown once a game is lost.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the piece
+	 * @throws IndexOutOfBoundsException if the square isn't on the board
+	 */
+	public Piece getPiece(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) throw new IndexOutOfBoundsException("(" + x + ", " + y + ")");
+
+		int index = y * width + x;
+		return PIECES[chunks[index >>> VersionedBoard.CHUNK_BITS][index & (VersionedBoard.CHUNK - 1)]];
+	}
+
+	/**
+	 * Returns every piece on the board in a new array.
+	 *
+	 * @return the pieces, indexed [x][y]
+	 */
+	public Piece[][] getPieces() {
+		Piece[][] pieces = new Piece[width][height];
+
+		for (int j = 0; j < height; j++) {
+			for (int i = 0; i < width; i++) pieces[i][j] = getPiece(i, j);
+		}
+
+		return pieces;
+	}
+
+	/**
+	 * Looks up every square's piece in the given table and writes the results out in index order, along each row 
+	 * from the top left. This reads the packed squares a chunk at a time, so is much faster than getting each piece.
+	 *
+	 * @param table a value for each piece, indexed by the piece's ordinal
+	 * @param into the array to write to, at least width * height long
+	 */
+	public void lookup(int[] table, int[] into) {
+		int n = width * height;
+
+		for (int c = 0; c < chunks.length; c++) {
+			byte[] chunk = chunks[c];
+			int base = c << VersionedBoard.CHUNK_BITS;
+			int length = Math.min(VersionedBoard.CHUNK, n - base);
+
+			for (int i = 0; i < length; i++) into[base + i] = table[chunk[i]];
+		}
+	}
+
+	/**
+	 * Returns the version of the board, which goes up by one for every snapshot of the game.
+	 *
+	 * @return the version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getNumMines() {
+		return numMines;
+	}
+
+	/**
+	 * Returns the number of mines not yet flagged, which can be negative.
+	 *
+	 * @return the mines not yet flagged
+	 */
+	public int getMinesUnflagged() {
+		return minesUnflagged;
+	}
+
+	public boolean hasWon() {
+		return won;
+	}
+
+	public boolean hasDied() {
+		return lost;
+	}
+
+	public boolean isGameFinished() {
+		return won || lost;
+	}
+}
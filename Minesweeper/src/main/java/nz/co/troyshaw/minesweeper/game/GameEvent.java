@@ -0,0 +1,93 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * A single {@link MinesweeperListener} event, as sent to the subscribers of a {@link GameEventPublisher}. <p>
+ *
+ * Events that aren't about a square have an x and y of 0, and only {@link Type#REVEALED},
+ * {@link Type#FLAGS_CHANGED} and {@link Type#DROPPED} have a value.
+ */
+public final class GameEvent {
+
+	public enum Type {
+		ALREADY_CLICKED,
+		/** A square was revealed, the value being its number of adjacent mines. */
+		REVEALED,
+		FLAGGED,
+		MINE_REVEALED,
+		QUESTIONED,
+		UNMARKED,
+		BOMB,
+		INCORRECT_FLAG,
+		WON,
+		LOST,
+		/** The move that lost the game was undone. */
+		RESUMED,
+		TICK,
+		MOVE_FINISHED,
+		/** The number of mines left unflagged changed, the value being the new number. */
+		FLAGS_CHANGED,
+		/**
+		 * Not a game event: the subscriber's buffer was full, and the value is how many events were dropped
+		 * before this one. A subscriber that needs the whole board should read it again from the game.
+		 */
+		DROPPED
+	}
+
+	private final Type type;
+	private final int x, y, value;
+
+	public GameEvent(Type type, int x, int y, int value) {
+		this.type = type;
+		this.x = x;
+		this.y = y;
+		this.value = value;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * Returns true if a later event replaces this one, so the two can be coalesced into the later one
+	 * when a subscriber falls behind. Flag changes and ticks replace earlier ones, and marking a square
+	 * replaces an earlier mark of the same square. Reveals and the end of the game never replace anything.
+	 *
+	 * @param later an event fired after this one
+	 * @return true if this event can be forgotten in favour of the later one
+	 */
+	boolean replacedBy(GameEvent later) {
+		switch (type) {
+		case TICK:
+		case FLAGS_CHANGED:
+		case ALREADY_CLICKED:
+			return later.type == type;
+		case FLAGGED:
+		case QUESTIONED:
+		case UNMARKED:
+			return isMark(later.type) && later.x == x && later.y == y;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean isMark(Type type) {
+		return type == Type.FLAGGED || type == Type.QUESTIONED || type == Type.UNMARKED;
+	}
+
+	@Override
+	public String toString() {
+		return type + "(" + x + ", " + y + ", " + value + ")";
+	}
+}
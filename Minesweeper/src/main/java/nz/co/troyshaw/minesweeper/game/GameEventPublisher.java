@@ -0,0 +1,500 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes a game's events on to its listener, then publishes them to any number of {@link Flow.Subscriber}s. <p>
+ *
+ * Each subscriber has its own bounded buffer, and events are delivered to it asynchronously on the publisher's
+ * executor, only as fast as it requests them. Publishing an event only copies it into each buffer, so a slow
+ * subscriber doesn't slow down moves. What happens when a subscriber's buffer is full is up to its {@link Overflow}
+ * policy. When there are no subscribers, publishing costs nothing beyond the listener call. <p>
+ *
+ * Events are published from both the game thread and the timer thread. Each subscriber is signalled by one thread
+ * at a time, in the order the events were fired. The stream doesn't complete when a game ends, since a game can be
+ * restarted: call {@link #close()} once the game won't be played any more.
+ */
+public class GameEventPublisher implements Flow.Publisher<GameEvent>, MinesweeperListener {
+
+	/**
+	 * What happens to a subscriber that falls behind, when its buffer is full.
+	 */
+	public enum Overflow {
+		/**
+		 * The move waits for space in the buffer, so the subscriber sees every event.
+		 * Only for subscribers that must see every event and keep up, such as recorders, since it does slow moves.
+		 * Ticks are coalesced instead, since one thread ticks every game.
+		 */
+		BLOCK,
+
+		/**
+		 * New events are dropped, and the subscriber is sent a {@link GameEvent.Type#DROPPED} event before
+		 * the next one that fits.
+		 */
+		DROP,
+
+		/**
+		 * A new event replaces an older one it supersedes, such as an earlier tick or an earlier mark of the same square,
+		 * and is otherwise dropped as with {@link #DROP}.
+		 */
+		COALESCE
+	}
+
+	/**
+	 * The buffer size and policy of subscribers added with {@link #subscribe(Flow.Subscriber)}.
+	 */
+	public static final int DEFAULT_BUFFER = 256;
+	public static final Overflow DEFAULT_OVERFLOW = Overflow.COALESCE;
+
+	/**
+	 * How many signals are delivered to a subscriber before the thread is given to other subscribers.
+	 */
+	private static final int BATCH = 64;
+
+	private static final Subscription[] NONE = new Subscription[0];
+
+	/**
+	 * Delivers the events of every game without an executor of its own. Subscribers may block, so threads are
+	 * made as needed rather than sharing a fixed few.
+	 */
+	private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "game-events-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final MinesweeperListener listener;
+	private final Executor executor;
+
+	/**
+	 * Replaced rather than changed, so publishing reads it without locking.
+	 */
+	private volatile Subscription[] subscriptions = NONE;
+	private boolean closed;
+
+	/**
+	 * Creates a publisher that delivers on a shared pool of daemon threads.
+	 *
+	 * @param listener the listener every event is passed to first, on the thread that fired it
+	 */
+	public GameEventPublisher(MinesweeperListener listener) {
+		this(listener, DEFAULT_EXECUTOR);
+	}
+
+	/**
+	 * Creates a publisher.
+	 *
+	 * @param listener the listener every event is passed to first, on the thread that fired it
+	 * @param executor runs the delivery of events to subscribers
+	 */
+	public GameEventPublisher(MinesweeperListener listener, Executor executor) {
+		this.listener = listener;
+		this.executor = executor;
+	}
+
+	/**
+	 * Subscribes with a buffer of {@link #DEFAULT_BUFFER} events that coalesces when full.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super GameEvent> subscriber) {
+		subscribe(subscriber, DEFAULT_BUFFER, DEFAULT_OVERFLOW);
+	}
+
+	/**
+	 * Subscribes to events fired from now on. If the publisher has been closed, the subscriber is completed straight away.
+	 *
+	 * @param subscriber the subscriber
+	 * @param bufferSize the most events waiting to be delivered to the subscriber
+	 * @param overflow what to do when the buffer is full
+	 * @throws IllegalArgumentException if the buffer size isn't positive
+	 */
+	public void subscribe(Flow.Subscriber<? super GameEvent> subscriber, int bufferSize, Overflow overflow) {
+		if (subscriber == null || overflow == null) throw new NullPointerException();
+		if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive");
+
+		Subscription s = new Subscription(subscriber, bufferSize, overflow);
+
+		synchronized (this) {
+			if (closed) {
+				s.complete();
+			} else {
+				Subscription[] bigger = new Subscription[subscriptions.length + 1];
+				System.arraycopy(subscriptions, 0, bigger, 0, subscriptions.length);
+				bigger[subscriptions.length] = s;
+				subscriptions = bigger;
+			}
+		}
+
+		s.schedule();
+	}
+
+	/**
+	 * Stops publishing. Each subscriber is completed once the events already in its buffer have been delivered.
+	 */
+	public void close() {
+		Subscription[] old;
+
+		synchronized (this) {
+			if (closed) return;
+
+			closed = true;
+			old = subscriptions;
+			subscriptions = NONE;
+		}
+
+		for (Subscription s : old) s.complete();
+	}
+
+	/**
+	 * Returns the number of subscribers that haven't cancelled.
+	 *
+	 * @return the number of subscribers
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.length;
+	}
+
+	private synchronized void remove(Subscription s) {
+		Subscription[] current = subscriptions;
+
+		for (int i = 0; i < current.length; i++) {
+			if (current[i] != s) continue;
+
+			Subscription[] smaller = new Subscription[current.length - 1];
+			System.arraycopy(current, 0, smaller, 0, i);
+			System.arraycopy(current, i + 1, smaller, i, smaller.length - i);
+			subscriptions = smaller;
+			return;
+		}
+	}
+
+	private void publish(GameEvent.Type type, int x, int y, int value) {
+		Subscription[] current = subscriptions;
+		if (current.length == 0) return;
+
+		GameEvent event = new GameEvent(type, x, y, value);
+		for (Subscription s : current) s.offer(event);
+	}
+
+	@Override
+	public void alreadyClickedEvent() {
+		listener.alreadyClickedEvent();
+		publish(GameEvent.Type.ALREADY_CLICKED, 0, 0, 0);
+	}
+
+	@Override
+	public void squareRevealed(int x, int y, int numMines) {
+		listener.squareRevealed(x, y, numMines);
+		publish(GameEvent.Type.REVEALED, x, y, numMines);
+	}
+
+	@Override
+	public void squareFlagged(int x, int y) {
+		listener.squareFlagged(x, y);
+		publish(GameEvent.Type.FLAGGED, x, y, 0);
+	}
+
+	@Override
+	public void mineRevealed(int x, int y) {
+		listener.mineRevealed(x, y);
+		publish(GameEvent.Type.MINE_REVEALED, x, y, 0);
+	}
+
+	@Override
+	public void squareQuestioned(int x, int y) {
+		listener.squareQuestioned(x, y);
+		publish(GameEvent.Type.QUESTIONED, x, y, 0);
+	}
+
+	@Override
+	public void squareUnmarked(int x, int y) {
+		listener.squareUnmarked(x, y);
+		publish(GameEvent.Type.UNMARKED, x, y, 0);
+	}
+
+	@Override
+	public void squareBomb(int x, int y) {
+		listener.squareBomb(x, y);
+		publish(GameEvent.Type.BOMB, x, y, 0);
+	}
+
+	@Override
+	public void incorrectFlag(int x, int y) {
+		listener.incorrectFlag(x, y);
+		publish(GameEvent.Type.INCORRECT_FLAG, x, y, 0);
+	}
+
+	@Override
+	public void gameWon() {
+		listener.gameWon();
+		publish(GameEvent.Type.WON, 0, 0, 0);
+	}
+
+	@Override
+	public void gameLost() {
+		listener.gameLost();
+		publish(GameEvent.Type.LOST, 0, 0, 0);
+	}
+
+	@Override
+	public void gameResumed() {
+		listener.gameResumed();
+		publish(GameEvent.Type.RESUMED, 0, 0, 0);
+	}
+
+	@Override
+	public void tick() {
+		listener.tick();
+		publish(GameEvent.Type.TICK, 0, 0, 0);
+	}
+
+	@Override
+	public void moveFinished() {
+		listener.moveFinished();
+		publish(GameEvent.Type.MOVE_FINISHED, 0, 0, 0);
+	}
+
+	@Override
+	public void totalFlagsChanged(int numFlags) {
+		listener.totalFlagsChanged(numFlags);
+		publish(GameEvent.Type.FLAGS_CHANGED, 0, 0, numFlags);
+	}
+
+	/**
+	 * One subscriber's buffer and demand. <p>
+	 *
+	 * The buffer is a ring guarded by the subscription's lock, filled by the threads firing events and emptied by
+	 * the delivery task. Only one delivery task runs at a time, so the subscriber is never signalled concurrently.
+	 */
+	private class Subscription implements Flow.Subscription, Runnable {
+
+		private final Flow.Subscriber<? super GameEvent> subscriber;
+		private final Overflow overflow;
+
+		private final GameEvent[] buffer;
+		private int head, count;
+
+		/**
+		 * For each event in the buffer, how many events were dropped just before it, so the subscriber can be told.
+		 * Events dropped since the last one buffered are counted in dropped.
+		 */
+		private final int[] gaps;
+		private int dropped;
+
+		private long demand;
+
+		/**
+		 * Threads waiting for space under {@link Overflow#BLOCK}.
+		 */
+		private int waiting;
+
+		private boolean subscribed, completing, cancelled;
+		private IllegalArgumentException error;
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		private Subscription(Flow.Subscriber<? super GameEvent> subscriber, int capacity, Overflow overflow) {
+			this.subscriber = subscriber;
+			this.overflow = overflow;
+			this.buffer = new GameEvent[capacity];
+			this.gaps = new int[capacity];
+		}
+
+		private void offer(GameEvent event) {
+			boolean signal;
+
+			synchronized (this) {
+				if (cancelled || completing) return;
+
+				if (count == buffer.length && !makeRoom(event)) {
+					dropped++;
+					return;
+				}
+
+				int slot = (head + count++) % buffer.length;
+				buffer[slot] = event;
+				gaps[slot] = dropped;
+				dropped = 0;
+
+				signal = demand > 0;
+			}
+
+			if (signal) schedule();
+		}
+
+		/**
+		 * Makes space in a full buffer as the overflow policy says, returning false if the event should be dropped.
+		 */
+		private boolean makeRoom(GameEvent event) {
+			if (overflow == Overflow.BLOCK && event.getType() != GameEvent.Type.TICK) {
+				waiting++;
+
+				try {
+					while (count == buffer.length && !cancelled) wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					waiting--;
+				}
+
+				return count < buffer.length && !cancelled;
+			}
+
+			if (overflow == Overflow.DROP) return false;
+
+			//from the newest, so the event replaced is the last one it supersedes
+			for (int i = count - 1; i >= 0; i--) {
+				int slot = (head + i) % buffer.length;
+				if (!buffer[slot].replacedBy(event)) continue;
+
+				//anything dropped before the replaced event is now before the one after it
+				int gap = gaps[slot];
+
+				for (int j = i; j < count - 1; j++) {
+					int to = (head + j) % buffer.length, from = (head + j + 1) % buffer.length;
+					buffer[to] = buffer[from];
+					gaps[to] = gaps[from];
+				}
+
+				buffer[(head + --count) % buffer.length] = null;
+
+				if (i < count) gaps[slot] += gap;
+				else dropped += gap;
+
+				return true;
+			}
+
+			return false;
+		}
+
+		private void complete() {
+			synchronized (this) {
+				completing = true;
+			}
+
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (cancelled) return;
+
+				if (n <= 0) {
+					error = new IllegalArgumentException("Requested " + n + " events, must be positive");
+				} else {
+					demand += n;
+					if (demand < 0) demand = Long.MAX_VALUE;
+				}
+			}
+
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				if (cancelled) return;
+
+				cancelled = true;
+				head = count = 0;
+				Arrays.fill(buffer, null);
+				notifyAll();
+			}
+
+			remove(this);
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) executor.execute(this);
+		}
+
+		@Override
+		public void run() {
+			try {
+				deliver();
+			} finally {
+				scheduled.set(false);
+			}
+
+			//more may have arrived after the last check, and whoever added it saw this was still scheduled
+			if (hasWork()) schedule();
+		}
+
+		private void deliver() {
+			if (!subscribed) {
+				subscribed = true;
+				subscriber.onSubscribe(this);
+			}
+
+			for (int i = 0; i < BATCH; i++) {
+				GameEvent event = null;
+				Throwable failed = null;
+				boolean finished = false;
+
+				synchronized (this) {
+					if (cancelled) return;
+
+					if (error != null) {
+						failed = error;
+					} else if (count > 0 && demand > 0 && gaps[head] > 0) {
+						//tell the subscriber about the gap before the event after it
+						event = new GameEvent(GameEvent.Type.DROPPED, 0, 0, gaps[head]);
+						gaps[head] = 0;
+						demand--;
+					} else if (count > 0 && demand > 0) {
+						event = buffer[head];
+						buffer[head] = null;
+						head = (head + 1) % buffer.length;
+						count--;
+						demand--;
+
+						if (waiting > 0) notifyAll();
+					} else if (completing && count == 0 && dropped > 0 && demand > 0) {
+						//events dropped after the last one buffered
+						event = new GameEvent(GameEvent.Type.DROPPED, 0, 0, dropped);
+						dropped = 0;
+						demand--;
+					} else if (completing && count == 0 && dropped == 0) {
+						finished = true;
+					} else {
+						return;
+					}
+				}
+
+				if (event != null) {
+					try {
+						subscriber.onNext(event);
+					} catch (RuntimeException e) {
+						//a subscriber that throws has broken the contract, so gets nothing more
+						cancel();
+						return;
+					}
+				} else {
+					//errors and completion end the subscription
+					cancel();
+
+					if (failed != null) subscriber.onError(failed);
+					else if (finished) subscriber.onComplete();
+					return;
+				}
+			}
+		}
+
+		private synchronized boolean hasWork() {
+			return !cancelled && (!subscribed || error != null || (count > 0 && demand > 0) || (completing && count == 0 && (dropped == 0 || demand > 0)));
+		}
+	}
+}
@@ -0,0 +1,407 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.util.Arrays;
+
+/**
+ * A compact copy of a game that moves can be tried on, for looking ahead without touching the real game. <p>
+ *
+ * Each square is a byte, and the bytes are kept in chunks of 64. A fork shares every chunk with the state it was
+ * forked from, and a chunk is only copied the first time either of them changes it. So forking costs a pointer per chunk,
+ * and a move costs the squares it changes plus at most one copy per chunk it touches. Moves within a fork can also be
+ * undone back to a {@link #mark()} with {@link #rollback(int)}, which costs only what was changed since. <p>
+ *
+ * Moves are played as {@link Minesweeper} plays them, except that nothing is notified and nothing is timed.
+ * A fork knows where the mines are, as the game does, so searches that mustn't know should only read
+ * {@link #getPiece(int, int)}. Forks are not thread safe, but separate forks can be used on separate threads.
+ */
+public final class GameFork {
+
+	private static final int CHUNK_BITS = 6;
+	private static final int CHUNK = 1 << CHUNK_BITS;
+
+	//a square's byte: its number in the low 4 bits, then whether it is a mine, revealed, flagged and questioned
+	private static final int NUMBER = 0x0F;
+	private static final int MINE = 0x10;
+	private static final int REVEALED = 0x20;
+	private static final int FLAGGED = 0x40;
+	private static final int QUESTIONED = 0x80;
+
+	private static final int PLAYING = 0, WON = 1, LOST = 2;
+
+	private final int width, height, numMines;
+
+	private final byte[][] chunks;
+
+	/**
+	 * Whether each chunk belongs to this fork alone, so can be changed without copying it.
+	 */
+	private final boolean[] owned;
+
+	private int unclickedNonmines, minesUnflagged, state;
+
+	/**
+	 * The squares changed since the first mark, as the index shifted up 8 bits above the byte it had,
+	 * and where each mark starts along with the counts it has to restore. Nothing is logged without a mark.
+	 */
+	private long[] journal = new long[0];
+	private int journalSize;
+	private int[] marks = new int[0];
+	private int markCount;
+
+	/**
+	 * Squares waiting to be revealed when opening up an area, reused between moves.
+	 */
+	private int[] stack = new int[0];
+
+	/**
+	 * Copies a populated game's board. The mine clicked to lose the game, if any, isn't revealed on the board,
+	 * so is given by its index, or -1.
+	 */
+	GameFork(Square[][] squares, int clickedMine, int numMines, int unclickedNonmines, int minesUnflagged, boolean won, boolean lost) {
+		this.width = squares.length;
+		this.height = squares[0].length;
+		this.numMines = numMines;
+		this.unclickedNonmines = unclickedNonmines;
+		this.minesUnflagged = minesUnflagged;
+		this.state = won ? WON : lost ? LOST : PLAYING;
+
+		int count = (width * height + CHUNK - 1) >>> CHUNK_BITS;
+		chunks = new byte[count][CHUNK];
+		owned = new boolean[count];
+		Arrays.fill(owned, true);
+
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				Square s = squares[i][j];
+				int index = j * width + i;
+				int b = s.isMine() ? MINE : s.numMines();
+
+				if (s.isRevealed() || index == clickedMine) b |= REVEALED;
+				if (s.isFlagged()) b |= FLAGGED;
+				if (s.isQuestioned()) b |= QUESTIONED;
+
+				chunks[index >>> CHUNK_BITS][index & (CHUNK - 1)] = (byte) b;
+			}
+		}
+	}
+
+	private GameFork(GameFork parent) {
+		width = parent.width;
+		height = parent.height;
+		numMines = parent.numMines;
+		unclickedNonmines = parent.unclickedNonmines;
+		minesUnflagged = parent.minesUnflagged;
+		state = parent.state;
+
+		chunks = parent.chunks.clone();
+		owned = new boolean[chunks.length];
+	}
+
+	/**
+	 * Returns a new fork that starts as this one is now. The two can then be changed independently.
+	 * Marks aren't carried over, so the new fork can't be rolled back past where it starts.
+	 *
+	 * @return the new fork
+	 */
+	public GameFork fork() {
+		//every chunk is now shared, so whichever of the two changes one first copies it
+		Arrays.fill(owned, false);
+
+		return new GameFork(this);
+	}
+
+	/**
+	 * Marks the current state so it can be returned to with {@link #rollback(int)}. Marks nest, and rolling back
+	 * to a mark forgets any made after it.
+	 *
+	 * @return the mark
+	 */
+	public int mark() {
+		if ((markCount + 1) * 4 > marks.length) marks = Arrays.copyOf(marks, Math.max(16, marks.length * 2));
+
+		marks[markCount * 4] = journalSize;
+		marks[markCount * 4 + 1] = unclickedNonmines;
+		marks[markCount * 4 + 2] = minesUnflagged;
+		marks[markCount * 4 + 3] = state;
+
+		return markCount++;
+	}
+
+	/**
+	 * Undoes every move made since the given mark, which stays marked so it can be rolled back to again.
+	 *
+	 * @param mark the mark returned by {@link #mark()}
+	 * @throws IllegalArgumentException if there is no such mark, or it has been forgotten
+	 */
+	public void rollback(int mark) {
+		if (mark < 0 || mark >= markCount) throw new IllegalArgumentException("No mark " + mark);
+
+		int start = marks[mark * 4];
+
+		//newest first, so each square ends as it was at the mark
+		while (journalSize > start) {
+			long entry = journal[--journalSize];
+			write((int) (entry >>> 8), (byte) entry);
+		}
+
+		unclickedNonmines = marks[mark * 4 + 1];
+		minesUnflagged = marks[mark * 4 + 2];
+		state = marks[mark * 4 + 3];
+
+		markCount = mark + 1;
+	}
+
+	/**
+	 * Forgets every mark, so moves are no longer logged.
+	 */
+	public void clearMarks() {
+		markCount = 0;
+		journalSize = 0;
+	}
+
+	/**
+	 * Reveals a square, opening up the area around it if it has no adjacent mines.
+	 * Does nothing if the square is revealed or flagged, or the game is over.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void revealSquare(int x, int y) {
+		if (!positionExists(x, y) || state != PLAYING) return;
+
+		reveal(x, y);
+	}
+
+	/**
+	 * Reveals the squares around a revealed number that has as many flags around it as it has adjacent mines.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void revealSurrounding(int x, int y) {
+		if (!positionExists(x, y) || state != PLAYING) return;
+
+		int b = get(x, y);
+		int number = b & NUMBER;
+
+		if ((b & REVEALED) == 0 || (b & MINE) != 0 || number == 0) return;
+
+		int flags = 0;
+		for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				if (positionExists(i, j) && (i != x || j != y) && (get(i, j) & FLAGGED) != 0) flags++;
+			}
+		}
+
+		if (flags != number) return;
+
+		for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				if (positionExists(i, j) && state == PLAYING) reveal(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Toggles a flag on an unrevealed square: unmarked squares are flagged, and flagged ones are unmarked,
+	 * or questioned in question mode. Questioned squares are unmarked.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void toggleSquare(int x, int y) {
+		if (!positionExists(x, y) || state != PLAYING) return;
+
+		int b = get(x, y);
+		if ((b & REVEALED) != 0) return;
+
+		int unmarked = b & ~(FLAGGED | QUESTIONED);
+
+		if ((b & FLAGGED) != 0) {
+			minesUnflagged++;
+			set(x, y, Minesweeper.questionMode ? unmarked | QUESTIONED : unmarked);
+		} else if ((b & QUESTIONED) != 0) {
+			set(x, y, unmarked);
+		} else {
+			minesUnflagged--;
+			set(x, y, unmarked | FLAGGED);
+		}
+	}
+
+	/**
+	 * Flags an unrevealed square, whatever its mark.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 */
+	public void setFlagged(int x, int y) {
+		if (!positionExists(x, y) || state != PLAYING) return;
+
+		int b = get(x, y);
+		if ((b & REVEALED) != 0) return;
+
+		if ((b & FLAGGED) == 0) minesUnflagged--;
+		set(x, y, b & ~QUESTIONED | FLAGGED);
+	}
+
+	private void reveal(int x, int y) {
+		int b = get(x, y);
+		if ((b & (REVEALED | FLAGGED)) != 0) return;
+
+		if ((b & MINE) != 0) {
+			//shown as the mine that was clicked
+			set(x, y, b | REVEALED);
+			state = LOST;
+			return;
+		}
+
+		//the game doesn't open an area from a questioned square
+		if ((b & NUMBER) == 0 && (b & QUESTIONED) != 0) return;
+
+		set(x, y, b | REVEALED);
+		unclickedNonmines--;
+
+		if ((b & NUMBER) == 0) open(x, y);
+		if (unclickedNonmines == 0) state = WON;
+	}
+
+	/**
+	 * Reveals the area around a square with no adjacent mines, without recursing. As when the game opens an area,
+	 * marked squares aren't revealed.
+	 */
+	private void open(int x, int y) {
+		int size = 0;
+		if (stack.length == 0) stack = new int[64];
+
+		stack[size++] = y * width + x;
+
+		while (size > 0) {
+			int index = stack[--size];
+			int cx = index % width, cy = index / width;
+
+			for (int i = cx - 1; i <= cx + 1; i++) {
+				for (int j = cy - 1; j <= cy + 1; j++) {
+					if (!positionExists(i, j)) continue;
+
+					int b = get(i, j);
+					if ((b & (REVEALED | FLAGGED | QUESTIONED | MINE)) != 0) continue;
+
+					set(i, j, b | REVEALED);
+					unclickedNonmines--;
+
+					if ((b & NUMBER) == 0) {
+						if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+						stack[size++] = j * width + i;
+					}
+				}
+			}
+		}
+	}
+
+	private int get(int x, int y) {
+		int index = y * width + x;
+		return chunks[index >>> CHUNK_BITS][index & (CHUNK - 1)] & 0xFF;
+	}
+
+	private void set(int x, int y, int b) {
+		int index = y * width + x;
+
+		if (markCount > 0) {
+			if (journalSize == journal.length) journal = Arrays.copyOf(journal, Math.max(64, journalSize * 2));
+			journal[journalSize++] = (long) index << 8 | get(x, y);
+		}
+
+		write(index, (byte) b);
+	}
+
+	private void write(int index, byte b) {
+		int c = index >>> CHUNK_BITS;
+
+		if (!owned[c]) {
+			chunks[c] = chunks[c].clone();
+			owned[c] = true;
+		}
+
+		chunks[c][index & (CHUNK - 1)] = b;
+	}
+
+	/**
+	 * Returns the piece the game would show at a square.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the piece
+	 */
+	public Piece getPiece(int x, int y) {
+		int b = get(x, y);
+		boolean mine = (b & MINE) != 0, flagged = (b & FLAGGED) != 0;
+
+		if ((b & REVEALED) != 0) return mine ? Piece.redMine : Piece.getPiece(b & NUMBER);
+		if (state == WON && mine) return Piece.flag;
+		if (state == LOST && mine && !flagged) return Piece.mine;
+		if (state == LOST && flagged && !mine) return Piece.incorrectFlag;
+		if (flagged) return Piece.flag;
+
+		return (b & QUESTIONED) != 0 ? Piece.question : Piece.blank;
+	}
+
+	/**
+	 * Returns true if the square is a mine. Searches that play fair shouldn't call this.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return true if the square is a mine
+	 */
+	public boolean isMine(int x, int y) {
+		return (get(x, y) & MINE) != 0;
+	}
+
+	public boolean isRevealed(int x, int y) {
+		return (get(x, y) & REVEALED) != 0;
+	}
+
+	public boolean isFlagged(int x, int y) {
+		return (get(x, y) & FLAGGED) != 0;
+	}
+
+	public boolean positionExists(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getNumMines() {
+		return numMines;
+	}
+
+	public int getMinesUnflagged() {
+		return minesUnflagged;
+	}
+
+	/**
+	 * Returns the number of safe squares still to be revealed.
+	 *
+	 * @return the safe squares left
+	 */
+	public int getUnrevealedSafe() {
+		return unclickedNonmines;
+	}
+
+	public boolean hasWon() {
+		return state == WON;
+	}
+
+	public boolean hasDied() {
+		return state == LOST;
+	}
+
+	public boolean isGameFinished() {
+		return state != PLAYING;
+	}
+}
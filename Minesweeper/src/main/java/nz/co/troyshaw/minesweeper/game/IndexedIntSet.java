@@ -0,0 +1,62 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * A set of square indices kept by the board, which can be checked in constant time,
+ * and read through in time proportional to its size rather than the board's. <p>
+ *
+ * The set is a run of neighbouring parts of the board's {@link SquarePartition}, so the board's sets share the
+ * same two arrays. The order of the members changes as the set does.
+ * Only the board changes its sets. They must only be read on the thread the game is played on.
+ */
+public final class IndexedIntSet {
+
+	private final SquarePartition partition;
+
+	/**
+	 * The first part in the set, and the part after the last.
+	 */
+	private final int from, to;
+
+	IndexedIntSet(SquarePartition partition, int from, int to) {
+		this.partition = partition;
+		this.from = from;
+		this.to = to;
+	}
+
+	public int size() {
+		return partition.start(to) - partition.start(from);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the member at the given position, from 0 to size - 1.
+	 * Positions only stay the same while the set isn't changed.
+	 *
+	 * @param position the position
+	 * @return the square index there
+	 */
+	public int get(int position) {
+		if (position < 0 || position >= size()) throw new IndexOutOfBoundsException(Integer.toString(position));
+
+		return partition.member(partition.start(from) + position);
+	}
+
+	public boolean contains(int index) {
+		int position = partition.position(index);
+		return position >= partition.start(from) && position < partition.start(to);
+	}
+
+	/**
+	 * Copies the members into a new array, in no particular order.
+	 *
+	 * @return the members
+	 */
+	public int[] toArray() {
+		int[] copy = new int[size()];
+		for (int i = 0; i < copy.length; i++) copy[i] = partition.member(partition.start(from) + i);
+		return copy;
+	}
+}
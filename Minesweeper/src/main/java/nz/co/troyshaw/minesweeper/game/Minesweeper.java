@@ -1,5 +1,7 @@
 package nz.co.troyshaw.minesweeper.game;
 
+import java.util.Random;
+
 import nz.co.troyshaw.minesweeper.controller.MinesweeperTimer;
 import nz.co.troyshaw.minesweeper.solver.Solver;
 
@@ -18,6 +20,8 @@ public class Minesweeper {
 	 * Setting this true will cause squares to be toggled to question-mark after right clicking a flagged square.
 	 */
 	public static boolean questionMode = false;
+	
+	private static final Square.State[] STATES = Square.State.values();
 
 	/**
 	 * Object that maintains the data of the board.
@@ -27,14 +31,48 @@ public class Minesweeper {
 	//maintain hasWon and hasLost since returning !hasWon for hasLost could be misleading if used inappropriately.
 	private boolean gameFinished, hasWon, hasLost;
 
+	/**
+	 * The index of the mine clicked to lose the game, or -1. The mine isn't revealed on the board, so it is kept here.
+	 */
+	private int clickedMine = -1;
+
 	/**
 	 * The object that is notified as squares are revealed, when turns are finished, 
-	 * and the post-status of a move (win/ lose/ continue).
+	 * and the post-status of a move (win/ lose/ continue). 
+	 * This is the event publisher, which passes each event on to the game's listener then to its subscribers.
+	 */
+	private final GameEventPublisher listener;
+
+	/**
+	 * Keeps the snapshots of the board from the game's events, before they reach the listener.
 	 */
-	private MinesweeperListener listener;
+	private final VersionedBoard versions;
 
 	private MinesweeperTimer timer;
 	
+	/**
+	 * Places the mines when the board is populated, seeded with seed.
+	 */
+	private Random random;
+	private long seed;
+	
+	/**
+	 * Records the moves made, or null if they aren't being recorded.
+	 */
+	private MoveLog moveLog;
+	
+	/**
+	 * The moves made since the first reveal, so they can be undone and redone.
+	 */
+	private final MoveJournal journal = new MoveJournal();
+	
+	/**
+	 * True while a move is being redone, so the moves still to redo are kept.
+	 */
+	private boolean redoing;
+	
+	private int width, height, numMines;
+	
 	private int minesUnflagged, unclickedNonmines;
 
 	/**
@@ -49,17 +87,143 @@ public class Minesweeper {
 	 * @throws IllegalArgumentException if mines < 0 or mines > width * height
 	 */
 	public Minesweeper(int width, int height, int numMines, MinesweeperListener listener){
+		this(width, height, numMines, listener, new Random().nextLong());
+	}
+
+	/**
+	 * Creates a new minesweeper game whose mines are placed using the given seed. <p>
+	 * The same seed and first click always give the same board.
+	 * 
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines number of mines
+	 * @param listener the listener object notified during gameplay
+	 * @param seed the seed used to place the mines
+	 * @throws IllegalArgumentException if mines < 0 or mines > width * height
+	 */
+	public Minesweeper(int width, int height, int numMines, MinesweeperListener listener, long seed){
 		if (width < 0 || height < 0) throw new IllegalArgumentException("Board dimension must be greater than 0");
 		else if (numMines < 0 || numMines > width * height) throw new IllegalArgumentException("Invalid mines number");
 
+		this.width = width;
+		this.height = height;
+		this.numMines = numMines;
+		this.seed = seed;
+		this.random = new Random(seed);
+		
 		minesUnflagged = numMines;
 		unclickedNonmines = width * height - numMines;
 		
 		board = new Board(width, height, numMines);
 		
-		this.listener = listener;
+		versions = new VersionedBoard(width, height, numMines, listener);
+		this.listener = new GameEventPublisher(versions);
+
+		timer = new MinesweeperTimer(this.listener);
+	}
 
-		timer = new MinesweeperTimer(listener);
+	/**
+	 * Starts a new game with the given seed on this game's board, which is cleared rather than created again. <p>
+	 * Solvers for this game carry on working for the new game. Any move log is stopped.
+	 * 
+	 * @param seed the seed used to place the mines
+	 */
+	public void restart(long seed) {
+		timer.cancel();
+		
+		this.seed = seed;
+		random.setSeed(seed);
+		moveLog = null;
+		
+		board.reset();
+		journal.clear();
+		
+		gameFinished = false;
+		hasWon = false;
+		hasLost = false;
+		clickedMine = -1;
+		
+		minesUnflagged = numMines;
+		unclickedNonmines = width * height - numMines;
+		
+		versions.reset();
+		
+		timer = new MinesweeperTimer(listener, timer.isTicking());
+	}
+
+	/**
+	 * Finishes restoring a saved game once its board has been filled in. 
+	 * The flag and square counts are recounted from the board, and an unfinished game's timer 
+	 * carries on from the saved time straight away.
+	 *
+	 * @param elapsedNanos the time the game had been played for
+	 * @param won true if the game had been won
+	 * @param lost true if the game had been lost
+	 * @param clickedMine the index of the mine clicked to lose the game, or -1
+	 */
+	void restore(long elapsedNanos, boolean won, boolean lost, int clickedMine) {
+		Square[][] b = board.getBoard();
+		int flags = 0, unclicked = 0;
+
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				Square s = b[i][j];
+
+				if (s.isFlagged()) flags++;
+				if (!s.isMine() && !s.isRevealed()) unclicked++;
+			}
+		}
+
+		minesUnflagged = numMines - flags;
+		unclickedNonmines = unclicked;
+		
+		board.recountFrontier();
+
+		hasWon = won;
+		hasLost = lost;
+		gameFinished = won || lost;
+		this.clickedMine = lost ? clickedMine : -1;
+		
+		versions.load(b, minesUnflagged, won, lost, this.clickedMine);
+
+		timer.setElapsedNanos(elapsedNanos);
+
+		if (board.isPopulated() && !gameFinished) timer.startTimer();
+		else if (gameFinished) timer.cancel();
+	}
+
+	Board getBoard() {
+		return board;
+	}
+
+	/**
+	 * Returns the number of mines not yet flagged, as shown on the mine counter. 
+	 * This can be negative if more squares are flagged than there are mines.
+	 *
+	 * @return the mines not yet flagged
+	 */
+	public int getMinesUnflagged() {
+		return minesUnflagged;
+	}
+
+	/**
+	 * Returns the 3BV of this game's board, or 0 if no move has been made yet.
+	 *
+	 * @return the 3BV of the board
+	 * @see Board#get3BV()
+	 */
+	public int get3BV() {
+		return board.isPopulated() ? board.get3BV() : 0;
+	}
+
+	/**
+	 * Returns the number of openings on this game's board, or 0 if no move has been made yet.
+	 *
+	 * @return the number of openings
+	 * @see Board#getOpenings()
+	 */
+	public int getOpenings() {
+		return board.isPopulated() ? board.getOpenings() : 0;
 	}
 
 	/**
@@ -83,8 +247,11 @@ public class Minesweeper {
 		//first check click is on board
 		if (!board.positionExists(x, y)) return;
 
+		if (moveLog != null) moveLog.record(MoveLog.REVEAL, x, y);
+
 		//if the board hasn't been populated, populate it and start game timer
 		if (!board.isPopulated()) startSequence(x, y);
+		else journal.begin(MoveLog.REVEAL, y * width + x, minesUnflagged, unclickedNonmines);
 
 		//now do the click
 		internalReveal(x, y);
@@ -111,6 +278,8 @@ public class Minesweeper {
 
 		//check if we are on a mine, if so end the game
 		if (square.isMine()) {
+			journal(x, y, square);
+			clickedMine = y * width + x;
 			listener.mineRevealed(x, y);
 			initiateLoseSequence(x, y);
 			return;
@@ -119,12 +288,10 @@ public class Minesweeper {
 		//we must be on a square we haven't clicked yet
 		if (square.numMines() > 0) {
 			//if square has any number of mines surrounding it, we can simply display that square
-			square.setClicked();
-			listener.squareRevealed(x, y, square.numMines());
-			unclickedNonmines--;
-		} else {
-			//otherwise we must recursively 'click' squares until we click one that has a mine around it
-			recurseClick(x, y);
+			reveal(x, y, square);
+		} else if (!square.isQuestioned()) {
+			//otherwise reveal the whole opening it is part of
+			revealOpening(x, y);
 		}
 
 		//check if we have won
@@ -147,6 +314,9 @@ public class Minesweeper {
 
 		if (!s.isRevealed() || s.isMine() || !board.isSatisfied(x, y)) return;
 
+		if (moveLog != null) moveLog.record(MoveLog.CHORD, x, y);
+		journal.begin(MoveLog.CHORD, y * width + x, minesUnflagged, unclickedNonmines);
+
 		for (int i = x - 1; i <= x + 1; i++) {
 			for (int j = y - 1; j <= y + 1; j++) {
 				if (!board.positionExists(i, j)) continue;
@@ -172,17 +342,25 @@ public class Minesweeper {
 		//first check we are are allowed to make a move 
 		if (!checkValidMove(x, y)) return;
 
+		if (moveLog != null) moveLog.record(MoveLog.TOGGLE, x, y);
+		journal.begin(MoveLog.TOGGLE, y * width + x, minesUnflagged, unclickedNonmines);
+
 		Square square = board.getSquare(x, y);
 
 		if (square.isRevealed()) {
 			//do nothing
 			return;
 		}
+		
+		journal(x, y, square);
 		if (square.isFlagged()) 
 			minesUnflagged++;
 		
 		//toggle flag and notify listener
-		switch(square.toggleState()) {
+		Square.State state = square.toggleState();
+		board.squareChanged(x, y);
+		
+		switch(state) {
 		case flagged:
 			listener.squareFlagged(x, y);
 			minesUnflagged--;
@@ -210,6 +388,9 @@ public class Minesweeper {
 		//first check we are are allowed to make a move 
 		if (!checkValidMove(x, y)) return;
 
+		if (moveLog != null) moveLog.record(MoveLog.FLAG, x, y);
+		journal.begin(MoveLog.FLAG, y * width + x, minesUnflagged, unclickedNonmines);
+
 		Square square = board.getSquare(x, y);
 
 		if (square.isRevealed()) {
@@ -218,11 +399,13 @@ public class Minesweeper {
 		}
 
 		//toggle flag and notify listener
+		journal(x, y, square);
 		square.setFlagged();
+		board.squareChanged(x, y);
 
 		minesUnflagged--;
-		listener.totalFlagsChanged(minesUnflagged);
 		listener.squareFlagged(x, y);
+		listener.totalFlagsChanged(minesUnflagged);
 	}
 
 	/**
@@ -237,33 +420,178 @@ public class Minesweeper {
 	}
 
 	/**
-	 * Helper method to recursively click squares with no adjacent mines.
-	 * If a square has no adjacent mines, it is clicked and all adjacent squares are recursively clicked.
-	 * If a square has any number of adjacent mines, it is clicked and then the recursion stops.
+	 * Records the square in the current move's journal before it is changed, or shown differently.
+	 */
+	private void journal(int x, int y, Square square) {
+		journal.record(y * width + x, square, redoing);
+	}
+
+	/**
+	 * Undoes the last move, putting back the squares it touched and the mine and flag counts. 
+	 * Undoing the move that lost the game carries the game on, with the timer carrying on from when it was lost. <p>
+	 * 
+	 * Moves up to and including the first reveal can't be undone, since that's when the mines are placed, 
+	 * and a won game can't be undone at all. Undoing stops any move log, since the log can't replay it.
+	 *
+	 * @return true if a move was undone
+	 */
+	public boolean undo() {
+		if (hasWon || !journal.canUndo()) return false;
+
+		moveLog = null;
+
+		int move = journal.pop();
+		int start = journal.getCellStart(move);
+
+		if (hasLost) {
+			hasLost = false;
+			gameFinished = false;
+			clickedMine = -1;
+
+			//the old timer was cancelled for good when the game was lost
+			MinesweeperTimer resumed = new MinesweeperTimer(listener, timer.isTicking());
+			resumed.setElapsedNanos(timer.getElapsedNanos());
+			timer = resumed;
+			timer.startTimer();
+
+			listener.gameResumed();
+		}
+
+		//put the squares back last touched first, so a square touched twice ends up as it was before the move
+		for (int i = journal.getCellCount() - 1; i >= start; i--) {
+			int cell = journal.getCell(i);
+			int x = (cell >>> 3) % width, y = (cell >>> 3) / width;
+			Square s = board.getSquare(x, y);
+
+			s.setRevealed((cell & MoveJournal.REVEALED) != 0);
+			s.setState(STATES[cell & MoveJournal.MARK]);
+			board.squareChanged(x, y);
+
+			if (s.isRevealed()) listener.squareRevealed(x, y, s.numMines());
+			else if (s.isFlagged()) listener.squareFlagged(x, y);
+			else if (s.isQuestioned()) listener.squareQuestioned(x, y);
+			else listener.squareUnmarked(x, y);
+		}
+
+		journal.truncate(start);
+		unclickedNonmines = journal.getUnclickedNonmines(move);
+
+		int flags = journal.getMinesUnflagged(move);
+		if (flags != minesUnflagged) {
+			minesUnflagged = flags;
+			listener.totalFlagsChanged(minesUnflagged);
+		}
+
+		listener.moveFinished();
+		return true;
+	}
+
+	/**
+	 * Makes the last undone move again. The moves undone are forgotten once any other move is made.
+	 *
+	 * @return true if a move was redone
+	 */
+	public boolean redo() {
+		if (gameFinished || !journal.canRedo()) return false;
+
+		int move = journal.popRedo();
+		int x = (move >>> 2) % width, y = (move >>> 2) / width;
+
+		redoing = true;
+		try {
+			switch (move & 3) {
+			case MoveLog.REVEAL: revealSquare(x, y); break;
+			case MoveLog.CHORD: revealSurrounding(x, y); break;
+			case MoveLog.TOGGLE: toggleSquare(x, y); break;
+			default: setFlagged(x, y); break;
+			}
+		} finally {
+			redoing = false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns true if there is a move that {@link #undo()} can undo.
+	 *
+	 * @return true if a move can be undone
+	 */
+	public boolean canUndo() {
+		return !hasWon && journal.canUndo();
+	}
+
+	/**
+	 * Returns true if there is an undone move that {@link #redo()} can make again.
+	 *
+	 * @return true if a move can be redone
+	 */
+	public boolean canRedo() {
+		return !gameFinished && journal.canRedo();
+	}
+
+	/**
+	 * Reveals the opening the given zero is part of, and its border. 
+	 * The openings are worked out when the board is populated, so an untouched opening is revealed 
+	 * straight from its list of squares. If some of its zeros are marked or already revealed, the reveal has to stop 
+	 * at them, so instead the zeros are followed out from the given one, as far as the unmarked, unrevealed ones go.
 	 *
 	 * @param x the x coordinate
 	 * @param y the y coordinate
 	 */
-	private void recurseClick(int x, int y) {
-		Square square = board.getSquare(x, y);
+	private void revealOpening(int x, int y) {
+		int opening = board.getOpening(board.indexOf(x, y));
 
-		if (square.isRevealed() || square.isFlagged() || square.isQuestioned()) return;
-		//first click square
-		square.setClicked();
-		listener.squareRevealed(x, y, square.numMines());
-		unclickedNonmines--;
+		if (board.isOpeningUntouched(opening)) {
+			for (int i = board.getOpeningStart(opening), end = board.getOpeningEnd(opening); i < end; i++) {
+				int index = board.getOpeningSquare(i);
+				int sx = index % width, sy = index / width;
+				Square square = board.getSquare(sx, sy);
 
-		//then check if it has any adjacent mines. If it doesn't, recurse.
-		if (square.numMines() == 0 && square.isRevealed()) {
-			for (int i = x - 1; i <= x + 1; i++) {
-				for (int j = y - 1; j <= y + 1; j++) {
+				//a number bordering the opening may already be revealed or marked
+				if (!square.isRevealed() && square.getState() == Square.State.unmarked) reveal(sx, sy, square);
+			}
+
+			return;
+		}
+
+		//the zeros still to be followed, only needed for the rare opening that can't be revealed all at once.
+		//only the opening's own zeros are pushed, so its size is enough
+		int[] stack = new int[board.getOpeningEnd(opening) - board.getOpeningStart(opening)];
+		int size = 0;
+		reveal(x, y, board.getSquare(x, y));
+		stack[size++] = board.indexOf(x, y);
+
+		//each zero is pushed once, when it is revealed
+		while (size > 0) {
+			int index = stack[--size];
+			int cx = index % width, cy = index / width;
+
+			for (int i = cx - 1; i <= cx + 1; i++) {
+				for (int j = cy - 1; j <= cy + 1; j++) {
 					if (!board.positionExists(i, j)) continue;
-					recurseClick(i, j);
+
+					Square square = board.getSquare(i, j);
+					if (square.isRevealed() || square.isFlagged() || square.isQuestioned()) continue;
+
+					reveal(i, j, square);
+					if (square.numMines() == 0) stack[size++] = board.indexOf(i, j);
 				}
 			}
 		}
 	}
 
+	/**
+	 * Reveals a single non-mine square.
+	 */
+	private void reveal(int x, int y, Square square) {
+		journal(x, y, square);
+		square.setClicked();
+		board.squareChanged(x, y);
+		listener.squareRevealed(x, y, square.numMines());
+		unclickedNonmines--;
+	}
+
 
 	/**
 	 * Causes the screen to display the mines and incorrect flagged squares.
@@ -286,8 +614,13 @@ public class Minesweeper {
 
 				Square s = b[i][j];
 
-				if (s.isFlagged() && !s.isMine()) listener.incorrectFlag(i, j);
-				else if (s.isMine() && !s.isFlagged()) listener.squareBomb(i, j);
+				if (s.isFlagged() && !s.isMine()) {
+					journal(i, j, s);
+					listener.incorrectFlag(i, j);
+				} else if (s.isMine() && !s.isFlagged()) {
+					journal(i, j, s);
+					listener.squareBomb(i, j);
+				}
 			}
 		}
 
@@ -327,6 +660,72 @@ public class Minesweeper {
 		return board.getBoard();
 	}
 	
+	/**
+	 * Returns the board as it was at the end of the last move. Unlike the squares, this can be read from any thread 
+	 * while the game is being played: the snapshot never changes, and getting it never waits.
+	 *
+	 * @return the latest snapshot
+	 */
+	public BoardSnapshot getSnapshot() {
+		return versions.getSnapshot();
+	}
+	
+	/**
+	 * Copies the game as it is into a compact fork, which moves can be tried on without changing this game. 
+	 * Forks of the fork are cheap, as they share what they don't change. Must be called on the game's thread.
+	 *
+	 * @return the fork
+	 * @throws IllegalStateException if the first square hasn't been revealed yet, so there are no mines to copy
+	 */
+	public GameFork fork() {
+		if (!board.isPopulated()) throw new IllegalStateException("The board isn't populated until the first reveal");
+
+		return new GameFork(board.getBoard(), clickedMine, numMines, unclickedNonmines, minesUnflagged, hasWon, hasLost);
+	}
+	
+	/**
+	 * Returns the publisher of this game's events, for anything that wants to follow the game without slowing it down. 
+	 * Events are passed to the game's listener first, then delivered to each subscriber asynchronously. 
+	 * Whoever is finished with the game should close the publisher, to complete its subscribers.
+	 *
+	 * @return the event publisher
+	 */
+	public GameEventPublisher getEvents() {
+		return listener;
+	}
+	
+	/**
+	 * Starts recording every move made from now on to the given log, or stops recording if null. 
+	 * Recording should start before the first move, for the log to replay the whole game.
+	 *
+	 * @param moveLog the log to record to, or null
+	 */
+	public void setMoveLog(MoveLog moveLog) {
+		this.moveLog = moveLog;
+	}
+	
+	/**
+	 * Returns the seed the mines are placed with. 
+	 * A new game of the same size with the same seed and first click has the same board.
+	 *
+	 * @return the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getNumMines() {
+		return numMines;
+	}
+	
 	/**
 	 * Returns true if the game has been won (all non-mine squares have been revealed).
 	 * @return true if they have won
@@ -354,11 +753,25 @@ public class Minesweeper {
 		return hasLost;
 	}
 
+	/**
+	 * Returns true if the given square is the mine that was clicked to lose the game.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return true if it was the mine clicked
+	 */
+	public boolean isClickedMine(int x, int y) {
+		return clickedMine >= 0 && y * width + x == clickedMine;
+	}
+
 	/**
 	 * Populates the board and starts the game timer.
 	 */
 	private void startSequence(int xSafe, int ySafe) {
-		board.populateBoard(xSafe, ySafe);
+		board.populateBoard(xSafe, ySafe, random);
+		
+		//the marks made before the mines were placed can't be undone
+		journal.clear();
 
 		//calls event every 1 second, with a 1 second delay 
 		timer.startTimer();
@@ -367,4 +780,38 @@ public class Minesweeper {
 	public void stopTimer() {
 		timer.cancel();
 	}
+	
+	/**
+	 * Pauses the game timer. Does nothing if the game hasn't started or has finished.
+	 */
+	public void pauseTimer() {
+		timer.pauseTimer();
+	}
+	
+	/**
+	 * Resumes the game timer after it has been paused.
+	 */
+	public void resumeTimer() {
+		timer.resumeTimer();
+	}
+	
+	/**
+	 * Turns the listener's tick every second on or off. The game is timed either way. 
+	 * By default games tick unless running headless.
+	 *
+	 * @param ticking true if the listener should be ticked
+	 */
+	public void setTicking(boolean ticking) {
+		timer.setTicking(ticking);
+	}
+	
+	/**
+	 * Returns the time spent playing this game so far, not counting time paused. 
+	 * Once the game is over this is the time the game took.
+	 *
+	 * @return the game time in nanoseconds
+	 */
+	public long timeSinceStart() {
+		return timer.getElapsedNanos();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * An empty implementation of {@link MinesweeperListener}.
+ * Extend this to only listen to some events, or use it as is when nothing needs to listen to a game.
+ */
+public class MinesweeperAdapter implements MinesweeperListener {
+
+	@Override
+	public void alreadyClickedEvent() {}
+
+	@Override
+	public void squareRevealed(int x, int y, int numMines) {}
+
+	@Override
+	public void squareFlagged(int x, int y) {}
+
+	@Override
+	public void mineRevealed(int x, int y) {}
+
+	@Override
+	public void squareQuestioned(int x, int y) {}
+
+	@Override
+	public void squareUnmarked(int x, int y) {}
+
+	@Override
+	public void squareBomb(int x, int y) {}
+
+	@Override
+	public void incorrectFlag(int x, int y) {}
+
+	@Override
+	public void gameWon() {}
+
+	@Override
+	public void gameLost() {}
+
+	@Override
+	public void gameResumed() {}
+
+	@Override
+	public void tick() {}
+
+	@Override
+	public void moveFinished() {}
+
+	@Override
+	public void totalFlagsChanged(int numFlags) {}
+}
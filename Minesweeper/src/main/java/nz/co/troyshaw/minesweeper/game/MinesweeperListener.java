@@ -68,6 +68,11 @@ public interface MinesweeperListener {
 	 */
 	public void gameLost();
 	
+	/**
+	 * Signals that the move that lost the game was undone, so the game is being played again.
+	 */
+	public void gameResumed();
+	
 	/**
 	 * Called every second of gameplay. To get a more accurate time, call timeSinceStart() of Minesweeper.
 	 */
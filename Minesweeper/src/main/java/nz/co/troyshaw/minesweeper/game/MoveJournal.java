@@ -0,0 +1,161 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * The moves made in a game, kept so they can be undone and redone. <p>
+ *
+ * Rather than copying the board, each move keeps only the squares it touched, as they were before the move:
+ * one int per square, its index shifted left 3 with the square's mark and whether it was revealed in the low bits.
+ * The squares of every move are kept end to end in one array, and each move keeps where its squares start,
+ * the square it was made on and the counters before it, so undoing a move takes time in proportion to
+ * the squares it touched.
+ */
+class MoveJournal {
+
+	static final int REVEALED = 4;
+	static final int MARK = 3;
+
+	/**
+	 * The ints kept per move: where its squares start, its square's index shifted left 2 with the move type in the
+	 * low bits (as in {@link MoveLog}), then the mines unflagged and the unclicked non-mines before the move.
+	 */
+	private static final int MOVE_SIZE = 4;
+
+	//grown as moves are made, so a game that is barely played costs next to nothing
+	private int[] cells = new int[0];
+	private int cellCount;
+
+	private int[] moves = new int[0];
+	private int moveCount;
+
+	/**
+	 * The moves undone, as their index shifted left 2 with their type, the last undone on top.
+	 */
+	private int[] redo = new int[0];
+	private int redoCount;
+
+	/**
+	 * True while a move has been started and not yet undone, so the squares changed belong to it.
+	 */
+	private boolean open;
+
+	/**
+	 * Starts a move, which the squares recorded from now on belong to. A move that didn't touch any squares is
+	 * replaced by the next one.
+	 */
+	void begin(int type, int index, int minesUnflagged, int unclickedNonmines) {
+		if (moveCount > 0 && moves[(moveCount - 1) * MOVE_SIZE] == cellCount) moveCount--;
+
+		if ((moveCount + 1) * MOVE_SIZE > moves.length) {
+			int[] bigger = new int[Math.max(moves.length * 2, 16 * MOVE_SIZE)];
+			System.arraycopy(moves, 0, bigger, 0, moveCount * MOVE_SIZE);
+			moves = bigger;
+		}
+
+		int m = moveCount++ * MOVE_SIZE;
+		moves[m] = cellCount;
+		moves[m + 1] = index << 2 | type;
+		moves[m + 2] = minesUnflagged;
+		moves[m + 3] = unclickedNonmines;
+
+		open = true;
+	}
+
+	/**
+	 * Records a square as it is before the current move changes it, or shows it differently.
+	 * Does nothing if no move has been started, as for the first reveal.
+	 *
+	 * @param redoing true if the move is being redone, so the moves undone before it are kept
+	 */
+	void record(int index, Square square, boolean redoing) {
+		if (!open) return;
+
+		//a new move replaces the moves that were undone
+		if (!redoing && moves[(moveCount - 1) * MOVE_SIZE] == cellCount) redoCount = 0;
+
+		if (cellCount == cells.length) {
+			int[] bigger = new int[Math.max(cells.length * 2, 64)];
+			System.arraycopy(cells, 0, bigger, 0, cellCount);
+			cells = bigger;
+		}
+
+		cells[cellCount++] = index << 3 | (square.isRevealed() ? REVEALED : 0) | square.getState().ordinal();
+	}
+
+	/**
+	 * Returns true if there is a move that touched at least one square to undo.
+	 */
+	boolean canUndo() {
+		if (moveCount > 0 && moves[(moveCount - 1) * MOVE_SIZE] == cellCount) {
+			moveCount--;
+			open = false;
+		}
+
+		return moveCount > 0;
+	}
+
+	boolean canRedo() {
+		return redoCount > 0;
+	}
+
+	/**
+	 * Takes the last move off the journal and pushes it onto the moves to redo.
+	 * {@link #canUndo()} must have returned true.
+	 *
+	 * @return the offset of the move's counters, for {@link #getMinesUnflagged(int)} and the like
+	 */
+	int pop() {
+		int m = --moveCount * MOVE_SIZE;
+
+		if (redoCount == redo.length) {
+			int[] bigger = new int[Math.max(redo.length * 2, 16)];
+			System.arraycopy(redo, 0, bigger, 0, redoCount);
+			redo = bigger;
+		}
+
+		redo[redoCount++] = moves[m + 1];
+		open = false;
+		return m;
+	}
+
+	/**
+	 * Returns the first of the squares of the move popped at the given offset. Its squares run up to
+	 * {@link #getCellCount()}, and are freed by {@link #truncate(int)} once they have been restored.
+	 */
+	int getCellStart(int move) {
+		return moves[move];
+	}
+
+	int getMinesUnflagged(int move) {
+		return moves[move + 2];
+	}
+
+	int getUnclickedNonmines(int move) {
+		return moves[move + 3];
+	}
+
+	int getCellCount() {
+		return cellCount;
+	}
+
+	int getCell(int i) {
+		return cells[i];
+	}
+
+	void truncate(int cellCount) {
+		this.cellCount = cellCount;
+	}
+
+	/**
+	 * Takes the last undone move off the moves to redo, as its index shifted left 2 with its type.
+	 */
+	int popRedo() {
+		return redo[--redoCount];
+	}
+
+	void clear() {
+		cellCount = 0;
+		moveCount = 0;
+		redoCount = 0;
+		open = false;
+	}
+}
@@ -0,0 +1,90 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Records every move made in a game so it can be replayed by {@link MoveLogReader}. <p>
+ * 
+ * A log starts with a header of the game's size, mines and seed, which is all that's needed to recreate the board, 
+ * and whether {@link Minesweeper#questionMode} was on, since that changes what toggling a square does. 
+ * Each move after that is two unsigned varints: the square's index shifted left 2 with the move type in the low bits, 
+ * then the microseconds since the previous move. Most moves take 3 to 5 bytes.
+ */
+public class MoveLog implements Closeable {
+
+	static final int MAGIC = 0x4D534C47;
+	static final int VERSION = 2;
+
+	/**
+	 * The move types, as stored in the low 2 bits of each move.
+	 */
+	public static final int REVEAL = 0, CHORD = 1, TOGGLE = 2, FLAG = 3;
+
+	private final DataOutputStream out;
+	private final int width;
+
+	private long lastMove = System.nanoTime();
+
+	/**
+	 * Starts a log of the given game, writing the header. 
+	 * The log should be given to the game before its first move.
+	 *
+	 * @param out the stream to write to. A buffered stream is best, since moves are written a few bytes at a time
+	 * @param game the game being logged
+	 * @throws IOException if the header can't be written
+	 */
+	public MoveLog(OutputStream out, Minesweeper game) throws IOException {
+		this.out = new DataOutputStream(out);
+		this.width = game.getWidth();
+
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+		writeVarint(game.getWidth());
+		writeVarint(game.getHeight());
+		writeVarint(game.getNumMines());
+		this.out.writeLong(game.getSeed());
+		this.out.writeBoolean(Minesweeper.questionMode);
+	}
+
+	/**
+	 * Records a move.
+	 *
+	 * @param type the type of move
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 * @throws UncheckedIOException if the move can't be written
+	 */
+	public void record(int type, int x, int y) {
+		long now = System.nanoTime();
+
+		try {
+			writeVarint(((long) (y * width + x) << 2) | type);
+			writeVarint((now - lastMove) / 1000);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		lastMove = now;
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private void writeVarint(long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
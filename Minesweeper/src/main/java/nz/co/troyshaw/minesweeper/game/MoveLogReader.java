@@ -0,0 +1,194 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a log written by {@link MoveLog} one move at a time, without loading the whole log. <p>
+ * 
+ * Either step through the moves with {@link #next()}, or {@link #replay(MinesweeperListener)} the whole game at once.
+ */
+public class MoveLogReader implements Closeable {
+
+	private final DataInputStream in;
+
+	private final int width, height, numMines;
+	private final long seed;
+	private final boolean questionMode;
+
+	private int type, x, y;
+	private long delay;
+
+	/**
+	 * Opens a log, reading its header.
+	 *
+	 * @param in the stream to read. A buffered stream is best, since moves are read a byte at a time
+	 * @throws IOException if the header can't be read or this isn't a move log
+	 */
+	public MoveLogReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(in);
+
+		if (this.in.readInt() != MoveLog.MAGIC) throw new IOException("Not a move log");
+		
+		int version = this.in.readUnsignedByte();
+		if (version < 1 || version > MoveLog.VERSION) throw new IOException("Unsupported move log version " + version);
+
+		width = (int) readVarint();
+		height = (int) readVarint();
+		numMines = (int) readVarint();
+		seed = this.in.readLong();
+
+		//version 1 logs didn't record it, and were almost all written with it off
+		questionMode = version >= 2 ? this.in.readBoolean() : false;
+	}
+
+	/**
+	 * Creates a new game with the size, mines and seed of the logged one, and sets {@link Minesweeper#questionMode} 
+	 * as it was when the game was logged. Making the same moves on it plays out the same game.
+	 *
+	 * @param listener the listener of the new game
+	 * @return the new game
+	 */
+	public Minesweeper createGame(MinesweeperListener listener) {
+		Minesweeper.questionMode = questionMode;
+
+		return new Minesweeper(width, height, numMines, listener, seed);
+	}
+
+	/**
+	 * Moves on to the next move in the log.
+	 *
+	 * @return true if there was another move, false at the end of the log
+	 * @throws IOException if the log can't be read, or ends part way through a move
+	 */
+	public boolean next() throws IOException {
+		int first = in.read();
+		if (first < 0) return false;
+
+		long move = readVarint(first);
+		int index = (int) (move >>> 2);
+
+		type = (int) (move & 3);
+		x = index % width;
+		y = index / width;
+		delay = readVarint();
+
+		return true;
+	}
+
+	/**
+	 * Creates the logged game and makes every move in the log on it as fast as possible, ignoring the logged timings.
+	 *
+	 * @param listener the listener of the replayed game
+	 * @return the game after the last move
+	 * @throws IOException if the log can't be read
+	 */
+	public Minesweeper replay(MinesweeperListener listener) throws IOException {
+		Minesweeper game = createGame(listener);
+
+		while (next()) {
+			apply(game);
+		}
+
+		return game;
+	}
+
+	/**
+	 * Makes the current move on the given game.
+	 *
+	 * @param game the game
+	 */
+	public void apply(Minesweeper game) {
+		switch (type) {
+		case MoveLog.REVEAL:
+			game.revealSquare(x, y);
+			break;
+		case MoveLog.CHORD:
+			game.revealSurrounding(x, y);
+			break;
+		case MoveLog.TOGGLE:
+			game.toggleSquare(x, y);
+			break;
+		case MoveLog.FLAG:
+			game.setFlagged(x, y);
+			break;
+		}
+	}
+
+	/**
+	 * @return the type of the current move, one of the move types of {@link MoveLog}
+	 */
+	public int getType() {
+		return type;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return the microseconds between the previous move and the current one
+	 */
+	public long getDelay() {
+		return delay;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getNumMines() {
+		return numMines;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return true if question marks were on when the game was logged
+	 */
+	public boolean isQuestionMode() {
+		return questionMode;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private long readVarint() throws IOException {
+		int first = in.read();
+		if (first < 0) throw new EOFException("Move log ends part way through a move");
+
+		return readVarint(first);
+	}
+
+	private long readVarint(int first) throws IOException {
+		long value = first & 0x7F;
+		int shift = 7;
+		int b = first;
+
+		while ((b & 0x80) != 0) {
+			b = in.read();
+			if (b < 0) throw new EOFException("Move log ends part way through a move");
+			if (shift > 63) throw new IOException("Varint too long");
+
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+
+		return value;
+	}
+}
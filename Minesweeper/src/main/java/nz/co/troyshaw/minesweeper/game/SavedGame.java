@@ -0,0 +1,285 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves games to files and loads them back, including games still in progress. <p>
+ * 
+ * A save is a header, then 4 bits per square, then a CRC32 of everything before it. Squares are stored two to a byte 
+ * in index order (see {@link Board#indexOf(int, int)}), the first of each pair in the low 4 bits. Each square's bits are 
+ * the mine in bit 0, then whether it is revealed, flagged or questioned in bits 1 to 2. The adjacent mine counts aren't 
+ * stored since they follow from the mines. A mine is only stored as revealed if it is the one clicked to lose the game. <p>
+ * 
+ * Games can also be saved to an array, for keeping many idle games compactly in memory. 
+ * Files are read and written through memory maps, so even boards of millions of squares are never copied 
+ * through the heap as a whole. Saves are written to a temporary file first, then moved into place, 
+ * so a failed save never leaves a damaged file behind. Loading a very large board takes far longer than saving it, 
+ * since the board keeps a {@link Square} object per square and they all have to be created.
+ */
+public class SavedGame {
+
+	private static final int MAGIC = 0x4D535356;
+	private static final int VERSION = 1;
+
+	/**
+	 * magic, version, flags, width, height, mines, seed, elapsed nanos
+	 */
+	private static final int HEADER_SIZE = 4 + 1 + 1 + 4 + 4 + 4 + 8 + 8;
+	private static final int CRC_SIZE = 4;
+
+	//header flags
+	private static final int POPULATED = 1, WON = 2, LOST = 4;
+
+	//square bits
+	private static final int MINE = 1, REVEALED = 1 << 1, FLAGGED = 2 << 1, QUESTIONED = 3 << 1;
+	private static final int MARK = 3 << 1;
+
+	private SavedGame() {
+	}
+
+	/**
+	 * Saves the given game. This must be called on the thread that plays the game.
+	 *
+	 * @param game the game to save
+	 * @param file the file to save to, replaced if it exists
+	 * @throws IOException if the file can't be written
+	 */
+	public static void save(Minesweeper game, File file) throws IOException {
+		int size = size(game);
+
+		Path target = file.getAbsoluteFile().toPath();
+		Path temp = Files.createTempFile(target.getParent(), "save", ".tmp");
+
+		try {
+			FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			try {
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+				write(game, map);
+				map.force();
+			} finally {
+				channel.close();
+			}
+
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Loads a saved game. The game carries on where it was saved, including its timer.
+	 *
+	 * @param file the saved game
+	 * @param listener the listener of the loaded game
+	 * @return the loaded game
+	 * @throws IOException if the file can't be read, isn't a saved game, or is damaged
+	 */
+	public static Minesweeper load(File file, MinesweeperListener listener) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE + CRC_SIZE || size > Integer.MAX_VALUE) throw new IOException("Not a saved game");
+
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), listener);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Saves the given game to an array, in the same format as a file. 
+	 * This must be called on the thread that plays the game.
+	 *
+	 * @param game the game to save
+	 * @return the saved game
+	 * @throws IOException if the board is too big to save
+	 */
+	public static byte[] toBytes(Minesweeper game) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size(game));
+
+		write(game, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * Loads a game saved by {@link #toBytes(Minesweeper)}. The game carries on where it was saved, including its timer.
+	 *
+	 * @param bytes the saved game
+	 * @param listener the listener of the loaded game
+	 * @return the loaded game
+	 * @throws IOException if the array isn't a saved game, or is damaged
+	 */
+	public static Minesweeper fromBytes(byte[] bytes, MinesweeperListener listener) throws IOException {
+		if (bytes.length < HEADER_SIZE + CRC_SIZE) throw new IOException("Not a saved game");
+
+		return read(ByteBuffer.wrap(bytes), listener);
+	}
+
+	/**
+	 * Returns the number of bytes the given game saves to.
+	 */
+	private static int size(Minesweeper game) throws IOException {
+		long size = HEADER_SIZE + ((long) game.getWidth() * game.getHeight() + 1) / 2 + CRC_SIZE;
+
+		if (size > Integer.MAX_VALUE) throw new IOException("Board too big to save");
+		return (int) size;
+	}
+
+	/**
+	 * Writes the game to the buffer, which must be exactly its size.
+	 */
+	private static void write(Minesweeper game, ByteBuffer buffer) {
+		Board board = game.getBoard();
+		Square[][] squares = board.getBoard();
+
+		int width = game.getWidth();
+		int height = game.getHeight();
+		int flags = (board.isPopulated() ? POPULATED : 0) | (game.hasWon() ? WON : 0) | (game.hasDied() ? LOST : 0);
+
+		buffer.putInt(MAGIC);
+		buffer.put((byte) VERSION);
+		buffer.put((byte) flags);
+		buffer.putInt(width);
+		buffer.putInt(height);
+		buffer.putInt(game.getNumMines());
+		buffer.putLong(game.getSeed());
+		buffer.putLong(game.timeSinceStart());
+
+		//pairs of squares along each row, carrying a half filled byte over to the next row
+		int pending = -1;
+
+		for (int j = 0; j < height; j++) {
+			for (int i = 0; i < width; i++) {
+				int bits = encode(squares[i][j], game.isClickedMine(i, j));
+
+				if (pending < 0) {
+					pending = bits;
+				} else {
+					buffer.put((byte) (pending | bits << 4));
+					pending = -1;
+				}
+			}
+		}
+
+		if (pending >= 0) buffer.put((byte) pending);
+
+		buffer.putInt(crc(buffer, buffer.capacity() - CRC_SIZE));
+	}
+
+	/**
+	 * Reads a game from the buffer, which must hold exactly one saved game.
+	 */
+	private static Minesweeper read(ByteBuffer buffer, MinesweeperListener listener) throws IOException {
+		int size = buffer.capacity();
+
+		if (buffer.getInt() != MAGIC) throw new IOException("Not a saved game");
+
+		int version = buffer.get();
+		if (version != VERSION) throw new IOException("Unsupported saved game version " + version);
+
+		int flags = buffer.get();
+		int width = buffer.getInt();
+		int height = buffer.getInt();
+		int numMines = buffer.getInt();
+		long seed = buffer.getLong();
+		long elapsed = buffer.getLong();
+
+		if (width <= 0 || height <= 0 || size != HEADER_SIZE + ((long) width * height + 1) / 2 + CRC_SIZE) {
+			throw new IOException("Saved game is the wrong size");
+		}
+		if (buffer.getInt(size - CRC_SIZE) != crc(buffer, size - CRC_SIZE)) {
+			throw new IOException("Saved game is damaged");
+		}
+
+		Minesweeper game = new Minesweeper(width, height, numMines, listener, seed);
+		Square[][] squares = game.getBoard().getBoard();
+
+		if ((flags & POPULATED) != 0) {
+			boolean[][] mines = new boolean[width][height];
+
+			for (int i = 0; i < width; i++) {
+				for (int j = 0; j < height; j++) {
+					mines[i][j] = (nibble(buffer, j * width + i) & MINE) != 0;
+				}
+			}
+
+			game.getBoard().restore(mines);
+		}
+
+		int clickedMine = -1;
+
+		//down each column, the order the squares are laid out in memory
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				int bits = nibble(buffer, j * width + i);
+
+				//the clicked mine is remembered by the game rather than revealed on the board
+				if ((bits & MINE) != 0 && (bits & MARK) == REVEALED) clickedMine = j * width + i;
+				else decode(bits, squares[i][j]);
+			}
+		}
+
+		game.restore(elapsed, (flags & WON) != 0, (flags & LOST) != 0, clickedMine);
+
+		return game;
+	}
+
+	/**
+	 * Returns the bits of the square with the given index.
+	 */
+	private static int nibble(ByteBuffer map, int index) {
+		int b = map.get(HEADER_SIZE + (index >> 1));
+		return (index & 1) == 0 ? b & 0xF : b >> 4 & 0xF;
+	}
+
+	private static int encode(Square s, boolean clickedMine) {
+		int bits = s.isMine() ? MINE : 0;
+
+		if (s.isRevealed() || clickedMine) bits |= REVEALED;
+		else if (s.isFlagged()) bits |= FLAGGED;
+		else if (s.isQuestioned()) bits |= QUESTIONED;
+
+		return bits;
+	}
+
+	private static void decode(int bits, Square s) {
+		switch (bits & MARK) {
+		case REVEALED:
+			s.setClicked();
+			break;
+		case FLAGGED:
+			s.setState(Square.State.flagged);
+			break;
+		case QUESTIONED:
+			s.setState(Square.State.questioned);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Returns the CRC32 of the first length bytes of the buffer, without moving its position.
+	 */
+	private static int crc(ByteBuffer buffer, int length) {
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.position(0).limit(length);
+
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+
+		return (int) crc.getValue();
+	}
+}
@@ -11,7 +11,6 @@ public class Square {
 
 	//the x, y coordinate of this square on the board
 	private int x, y;
-	private Point position;
 	
 	//the number of mines that surround this square on the board
 	private int numMines;
@@ -33,8 +32,6 @@ public class Square {
 	public Square(int x, int y) {
 		this.x = x;
 		this.y = y;
-		
-		position = new Point(x, y);
 	}
 	
 	/**
@@ -52,10 +49,27 @@ public class Square {
 		numMines = adjacent;
 	}
 	
+	/**
+	 * Returns this square to how it was created: an unrevealed, unmarked non-mine.
+	 */
+	public void reset() {
+		numMines = 0;
+		revealed = false;
+		state = State.unmarked;
+		isMine = false;
+	}
+	
 	public void setClicked() {
 		revealed = true;
 	}
 	
+	/**
+	 * Sets whether this square is revealed directly, for undoing a move.
+	 */
+	void setRevealed(boolean revealed) {
+		this.revealed = revealed;
+	}
+	
 	/**
 	 * Toggles flag/ questioned/ none state, then returns the state it turned to.
 	 * If the square has previously been revealed this method returns null.
@@ -90,6 +104,21 @@ public class Square {
 		state = State.flagged;
 	}
 	
+	/**
+	 * Sets the mark of this square directly, for restoring a saved game.
+	 */
+	void setState(State state) {
+		this.state = state;
+	}
+	
+	/**
+	 * Returns the mark on this square: unmarked, flagged or questioned.
+	 * @return the mark
+	 */
+	public State getState() {
+		return state;
+	}
+	
 	
 	/**
 	 * Returns true if this square is a mine.
@@ -146,7 +175,7 @@ public class Square {
 	}
 	
 	public Point getPosition() {
-		return position;
+		return new Point(x, y);
 	}
 	
 	public int getX() {
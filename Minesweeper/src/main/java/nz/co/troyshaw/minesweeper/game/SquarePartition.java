@@ -0,0 +1,102 @@
+package nz.co.troyshaw.minesweeper.game;
+
+/**
+ * Splits the squares of a board into a few parts, so that moving a square to another part, finding its part, and
+ * reading through a part all take constant time per square. <p>
+ *
+ * Every square is in exactly one part. The squares are kept in one array, part by part, with a second array
+ * keeping where each square is in the first. Moving a square to the next part along swaps it to the end of its
+ * part and moves the boundary past it, so a move takes one swap per part crossed. This needs the same two arrays
+ * however the squares are split, rather than two per part.
+ */
+class SquarePartition {
+
+	private final int[] members;
+
+	/**
+	 * Where each square is in members.
+	 */
+	private final int[] positions;
+
+	/**
+	 * Where each part starts in members, followed by the number of squares.
+	 */
+	private final int[] starts;
+
+	/**
+	 * Creates a partition of the given number of squares, all in the given part.
+	 */
+	SquarePartition(int squares, int parts, int part) {
+		members = new int[squares];
+		positions = new int[squares];
+		starts = new int[parts + 1];
+
+		reset(part);
+	}
+
+	/**
+	 * Puts every square back in the given part, in index order.
+	 */
+	void reset(int part) {
+		for (int i = 0; i < members.length; i++) {
+			members[i] = i;
+			positions[i] = i;
+		}
+
+		for (int p = 0; p < starts.length; p++) starts[p] = p <= part ? 0 : members.length;
+	}
+
+	/**
+	 * Returns where the given part starts among the members. The part runs up to the start of the next.
+	 */
+	int start(int part) {
+		return starts[part];
+	}
+
+	int member(int position) {
+		return members[position];
+	}
+
+	int position(int index) {
+		return positions[index];
+	}
+
+	int partOf(int index) {
+		int position = positions[index];
+		int part = 0;
+
+		while (starts[part + 1] <= position) part++;
+
+		return part;
+	}
+
+	/**
+	 * Moves the square to the given part.
+	 */
+	void move(int index, int part) {
+		int current = partOf(index);
+
+		//moving the boundary past the square moves it into the next part along
+		while (current < part) {
+			swap(index, starts[current + 1] - 1);
+			starts[current + 1]--;
+			current++;
+		}
+
+		while (current > part) {
+			swap(index, starts[current]);
+			starts[current]++;
+			current--;
+		}
+	}
+
+	private void swap(int index, int to) {
+		int from = positions[index];
+		int other = members[to];
+
+		members[from] = other;
+		positions[other] = from;
+		members[to] = index;
+		positions[index] = to;
+	}
+}
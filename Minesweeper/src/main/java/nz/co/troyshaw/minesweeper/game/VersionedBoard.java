@@ -0,0 +1,221 @@
+package nz.co.troyshaw.minesweeper.game;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the pieces shown on a game's board from its events, and publishes them as a {@link BoardSnapshot}
+ * at the end of each move, then passes the events on to the game's listener. <p>
+ *
+ * Only the game's thread changes the board. The squares are kept in chunks, and a snapshot takes the chunks as they
+ * are rather than copying them. A chunk is only copied when it is next changed, at most once per snapshot, so the
+ * snapshots already published never change. Publishing is a single volatile write, so readers on other threads
+ * never wait for a move, never hold one up, and always see a whole move or none of it.
+ */
+class VersionedBoard implements MinesweeperListener {
+
+	static final int CHUNK_BITS = 8;
+	static final int CHUNK = 1 << CHUNK_BITS;
+
+	/**
+	 * A chunk of unrevealed squares, shared by every board until its squares are changed.
+	 */
+	private static final byte[] BLANK = new byte[CHUNK];
+
+	static {
+		Arrays.fill(BLANK, (byte) Piece.blank.ordinal());
+	}
+
+	private final MinesweeperListener listener;
+	private final int width, height, numMines;
+
+	private final byte[][] chunks;
+
+	/**
+	 * The epoch each chunk was last copied in. Each snapshot ends an epoch, so a chunk copied in an earlier one
+	 * may be part of a snapshot and is copied again before it is changed. Epochs start at 1, so a chunk that has
+	 * never been copied counts as shared. Restarted games carry on from the epoch they were at, so epochs are longs.
+	 */
+	private final long[] copiedIn;
+	private long epoch = 1;
+
+	private int minesUnflagged;
+	private boolean won, lost, changed;
+
+	private long version;
+	private volatile BoardSnapshot snapshot;
+
+	VersionedBoard(int width, int height, int numMines, MinesweeperListener listener) {
+		this.width = width;
+		this.height = height;
+		this.numMines = numMines;
+		this.listener = listener;
+
+		int count = (width * height + CHUNK - 1) >>> CHUNK_BITS;
+		chunks = new byte[count][];
+		copiedIn = new long[count];
+
+		reset();
+	}
+
+	BoardSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Clears the board for a restarted game, and publishes it.
+	 */
+	void reset() {
+		Arrays.fill(chunks, BLANK);
+		Arrays.fill(copiedIn, 0);
+
+		minesUnflagged = numMines;
+		won = lost = false;
+
+		changed = true;
+		publish();
+	}
+
+	/**
+	 * Sets every square from a restored game's board, and publishes it.
+	 *
+	 * @param clickedMine the index of the mine clicked to lose the game, or -1
+	 */
+	void load(Square[][] squares, int minesUnflagged, boolean won, boolean lost, int clickedMine) {
+		for (int i = 0; i < width; i++) {
+			for (int j = 0; j < height; j++) {
+				Square s = squares[i][j];
+				Piece piece;
+
+				if (j * width + i == clickedMine) piece = Piece.redMine;
+				else if (lost && s.isMine() && !s.isFlagged()) piece = Piece.mine;
+				else if (lost && s.isFlagged() && !s.isMine()) piece = Piece.incorrectFlag;
+				else if (won && s.isMine()) piece = Piece.flag;
+				else piece = s.getPiece();
+
+				set(i, j, piece);
+			}
+		}
+
+		this.minesUnflagged = minesUnflagged;
+		this.won = won;
+		this.lost = lost;
+
+		changed = true;
+		publish();
+	}
+
+	private void set(int x, int y, Piece piece) {
+		int index = y * width + x;
+		int c = index >>> CHUNK_BITS;
+
+		if (copiedIn[c] != epoch) {
+			chunks[c] = chunks[c].clone();
+			copiedIn[c] = epoch;
+		}
+
+		chunks[c][index & (CHUNK - 1)] = (byte) piece.ordinal();
+		changed = true;
+	}
+
+	/**
+	 * Publishes the board as it is if it has changed, and starts a new epoch.
+	 */
+	private void publish() {
+		if (!changed) return;
+
+		snapshot = new BoardSnapshot(width, height, numMines, minesUnflagged, won, lost, ++version, chunks.clone());
+
+		epoch++;
+		changed = false;
+	}
+
+	@Override
+	public void alreadyClickedEvent() {
+		listener.alreadyClickedEvent();
+	}
+
+	@Override
+	public void squareRevealed(int x, int y, int numMines) {
+		set(x, y, Piece.getPiece(numMines));
+		listener.squareRevealed(x, y, numMines);
+	}
+
+	@Override
+	public void squareFlagged(int x, int y) {
+		set(x, y, Piece.flag);
+		listener.squareFlagged(x, y);
+	}
+
+	@Override
+	public void mineRevealed(int x, int y) {
+		set(x, y, Piece.redMine);
+		listener.mineRevealed(x, y);
+	}
+
+	@Override
+	public void squareQuestioned(int x, int y) {
+		set(x, y, Piece.question);
+		listener.squareQuestioned(x, y);
+	}
+
+	@Override
+	public void squareUnmarked(int x, int y) {
+		set(x, y, Piece.blank);
+		listener.squareUnmarked(x, y);
+	}
+
+	@Override
+	public void squareBomb(int x, int y) {
+		set(x, y, Piece.mine);
+		listener.squareBomb(x, y);
+	}
+
+	@Override
+	public void incorrectFlag(int x, int y) {
+		set(x, y, Piece.incorrectFlag);
+		listener.incorrectFlag(x, y);
+	}
+
+	@Override
+	public void gameWon() {
+		won = true;
+		changed = true;
+		publish();
+		listener.gameWon();
+	}
+
+	@Override
+	public void gameLost() {
+		lost = true;
+		changed = true;
+		publish();
+		listener.gameLost();
+	}
+
+	@Override
+	public void gameResumed() {
+		//published at the end of the undo
+		lost = false;
+		changed = true;
+		listener.gameResumed();
+	}
+
+	@Override
+	public void tick() {
+		listener.tick();
+	}
+
+	@Override
+	public void moveFinished() {
+		publish();
+		listener.moveFinished();
+	}
+
+	@Override
+	public void totalFlagsChanged(int numFlags) {
+		minesUnflagged = numFlags;
+		changed = true;
+		publish();
+		listener.totalFlagsChanged(numFlags);
+	}
+}
@@ -1,35 +1,56 @@
 package nz.co.troyshaw.minesweeper.gui;
 
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 
 import javax.swing.*;
 
 import nz.co.troyshaw.minesweeper.controller.GuiController;
 import nz.co.troyshaw.minesweeper.game.GameConstants;
+import nz.co.troyshaw.minesweeper.images.AssetLoader;
 import nz.co.troyshaw.minesweeper.images.ImageData;
 
 public class GameFrame extends JFrame {
 	
 	private GamePanel gamePanel;
+	
+	private JScrollPane scrollPane;
 
 	private MenuBar menuBar;
 	
 	private GuiController controller;
 
+	/**
+	 * Creates and shows the game, decoding its images while the frame is built.
+	 */
 	public GameFrame() {
+		this(AssetLoader.start());
+	}
+
+	/**
+	 * Creates and shows the game, using images that are already being decoded. Must be called on the EDT.
+	 * 
+	 * @param assets the loader decoding the startup images
+	 */
+	public GameFrame(AssetLoader assets) {
 		super("Troysweeper");
 
 		//needs to be called first to have any effect
 		setNativeLAndF();
 
-		setIcon();
+		//the menu bar doesn't use any images, so it is built while they finish decoding
+		initializeMenuBar();
+
+		setIconImage(assets.getIcon());
 
-		//load images first so components have images to use
-		ImageData.loadDefaultImages();
+		//components need images to draw with
+		ImageData.setSpriteSheet(assets.getSpriteSheet());
 
 		//init objects
-		initializeMenuBar();
 		initializeComponents();
 		initializeController();
 		
@@ -51,6 +72,18 @@ public class GameFrame extends JFrame {
 
 	private void initializeComponents() {
 		gamePanel = new GamePanel(GameConstants.EASY_WIDTH, GameConstants.EASY_HEIGHT, GameConstants.EASY_MINES);
+		
+		//boards bigger than the screen are scrolled, otherwise the scroll pane is the size of the board
+		scrollPane = new JScrollPane(gamePanel) {
+			@Override
+			public Dimension getPreferredSize() {
+				Dimension d = super.getPreferredSize();
+				Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+				
+				return new Dimension(Math.min(d.width, screen.width - 50), Math.min(d.height, screen.height - 100));
+			}
+		};
+		scrollPane.setBorder(null);
 	}
 	
 	private void initializeController() {
@@ -64,12 +97,29 @@ public class GameFrame extends JFrame {
 		
 		menuBar.registerController(controller);
 		
+		//don't count time the game is minimised
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowIconified(WindowEvent e) {
+				controller.pause();
+			}
+			
+			@Override
+			public void windowDeiconified(WindowEvent e) {
+				controller.resume();
+			}
+		});
+		
 		//after setting up relations, start a new game
 		controller.newGame();
 	}
 
+	public GamePanel getGamePanel() {
+		return gamePanel;
+	}
+
 	private void setupLayout() {
-		getContentPane().add(gamePanel);
+		getContentPane().add(scrollPane);
 	}
 	
 	/**
@@ -85,13 +135,6 @@ public class GameFrame extends JFrame {
 		}
 	}
 
-	/**
-	 * Method sets the icon to the minesweeper icon.
-	 */
-	private void setIcon() {
-		setIconImage(ImageData.getIconImage());
-	}
-
 	/**
 	 * Method centers the JFrame on the screen.
 	 */
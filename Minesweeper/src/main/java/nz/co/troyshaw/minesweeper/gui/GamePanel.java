@@ -16,6 +16,11 @@ public class GamePanel extends JPanel {
 
 	private MainImage mainImage;
 	
+	/**
+	 * Run once, after the panel has first been painted. Null if nobody is waiting for the first paint.
+	 */
+	private Runnable firstPaintListener;
+	
 	public GamePanel(int mineX, int mineY, int numMines) {
 		mainImage = new MainImage(this, mineX, mineY, numMines);
 	
@@ -61,6 +66,21 @@ public class GamePanel extends JPanel {
 		Graphics2D g2d = (Graphics2D) g;
 		
 		g2d.drawImage(mainImage.getImage(), 0, 0, null);
+		
+		if (firstPaintListener != null) {
+			Runnable r = firstPaintListener;
+			firstPaintListener = null;
+			r.run();
+		}
+	}
+	
+	/**
+	 * Sets the listener to run once, straight after the panel is next painted. Used to time startup.
+	 * 
+	 * @param listener the listener to run
+	 */
+	public void setFirstPaintListener(Runnable listener) {
+		firstPaintListener = listener;
 	}
 	
 	public MainImage getMainImage() {
@@ -0,0 +1,71 @@
+package nz.co.troyshaw.minesweeper.gui;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+
+import nz.co.troyshaw.minesweeper.game.GameConstants;
+import nz.co.troyshaw.minesweeper.misc.Highscores;
+import nz.co.troyshaw.minesweeper.misc.Highscores.Config;
+import nz.co.troyshaw.minesweeper.misc.Highscores.Score;
+
+/**
+ * Shows the high score tables, one tab per board. 
+ * Beginner, intermediate and expert always have a tab, then any custom boards that have been won follow.
+ */
+public class HighscoreWindow extends JDialog {
+
+	private static final String[] COLUMNS = {"", "Name", "Time (s)", "Date"};
+
+	public HighscoreWindow(JFrame parent, Highscores highscores) {
+		super(parent, "Highscores", true);
+
+		List<Config> configs = new ArrayList<Config>();
+		configs.add(new Config(GameConstants.EASY_WIDTH, GameConstants.EASY_HEIGHT, GameConstants.EASY_MINES));
+		configs.add(new Config(GameConstants.MEDIUM_WIDTH, GameConstants.MEDIUM_HEIGHT, GameConstants.MEDIUM_MINES));
+		configs.add(new Config(GameConstants.HARD_WIDTH, GameConstants.HARD_HEIGHT, GameConstants.HARD_MINES));
+
+		String[] names = {"Beginner", "Intermediate", "Expert"};
+
+		for (Config c : highscores.getConfigs()) {
+			if (!configs.contains(c)) configs.add(c);
+		}
+
+		JTabbedPane tabs = new JTabbedPane();
+		DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
+
+		for (int i = 0; i < configs.size(); i++) {
+			List<Score> scores = highscores.getScores(configs.get(i));
+			Object[][] rows = new Object[Highscores.TOP][];
+
+			for (int rank = 0; rank < Highscores.TOP; rank++) {
+				if (rank < scores.size()) {
+					Score s = scores.get(rank);
+					rows[rank] = new Object[] {rank + 1, s.getName(), String.format("%.3f", s.getMillis() / 1000.0), dateFormat.format(new Date(s.getDate()))};
+				} else {
+					rows[rank] = new Object[] {rank + 1, "", "", ""};
+				}
+			}
+
+			JTable table = new JTable(rows, COLUMNS);
+			table.setEnabled(false);
+			table.getColumnModel().getColumn(0).setMaxWidth(30);
+
+			JScrollPane pane = new JScrollPane(table);
+			pane.setPreferredSize(table.getPreferredSize());
+
+			tabs.addTab(i < names.length ? names[i] : configs.get(i).toString(), pane);
+		}
+
+		add(tabs);
+		pack();
+		setLocationRelativeTo(parent);
+	}
+}
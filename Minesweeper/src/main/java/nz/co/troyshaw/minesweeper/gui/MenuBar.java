@@ -2,6 +2,7 @@ package nz.co.troyshaw.minesweeper.gui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 
 import javax.swing.ButtonGroup;
@@ -25,8 +26,8 @@ public class MenuBar extends JMenuBar implements ActionListener {
 	//state objects
 	private JMenu gameMenu, extrasMenu, helpMenu;
 	
-	private JMenuItem newGame, beginner, intermediate, expert, custom, questioned, exit;
-	private JMenuItem stats;
+	private JMenuItem newGame, undo, redo, saveGame, loadGame, beginner, intermediate, expert, custom, questioned, exit;
+	private JMenuItem stats, highscores, minimap;
 	private JMenuItem defaultSkin, loadSkin, solve;
 	private JMenuItem help, about;
 	
@@ -44,6 +45,10 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		helpMenu = new JMenu("Help");
 		
 		newGame = new JMenuItem("New Game");
+		undo = new JMenuItem("Undo");
+		redo = new JMenuItem("Redo");
+		saveGame = new JMenuItem("Save Game...");
+		loadGame = new JMenuItem("Load Game...");
 		
 		beginner = new JRadioButtonMenuItem("Beginner", true);
 		intermediate = new JRadioButtonMenuItem("Intermediate");
@@ -57,6 +62,8 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		exit = new JMenuItem("Exit");
 		
 		stats = new JMenuItem("Statistics");
+		highscores = new JMenuItem("Highscores");
+		minimap = new JMenuItem("Minimap");
 		
 		defaultSkin = new JMenuItem("Default skin");
 		loadSkin = new JMenuItem("Load skin...");
@@ -68,6 +75,8 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		//hotkeys
 		newGame.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F2, 0));
 		solve.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+		undo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+		redo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
 		
 		//put jradio into a group
 		ButtonGroup g = new ButtonGroup();
@@ -79,6 +88,11 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		
 		//add items to menus
 		gameMenu.add(newGame);
+		gameMenu.add(undo);
+		gameMenu.add(redo);
+		gameMenu.addSeparator();
+		gameMenu.add(saveGame);
+		gameMenu.add(loadGame);
 		gameMenu.addSeparator();
 		gameMenu.add(beginner);
 		gameMenu.add(intermediate);
@@ -90,6 +104,8 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		gameMenu.add(exit);
 		
 		extrasMenu.add(stats);
+		extrasMenu.add(highscores);
+		extrasMenu.add(minimap);
 		extrasMenu.addSeparator();
 		extrasMenu.add(defaultSkin);
 		extrasMenu.add(loadSkin);
@@ -101,6 +117,10 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		
 		//add listener
 		newGame.addActionListener(this);
+		undo.addActionListener(this);
+		redo.addActionListener(this);
+		saveGame.addActionListener(this);
+		loadGame.addActionListener(this);
 		beginner.addActionListener(this);
 		intermediate.addActionListener(this);
 		expert.addActionListener(this);
@@ -108,6 +128,8 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		questioned.addActionListener(this);
 		exit.addActionListener(this);
 		stats.addActionListener(this);
+		highscores.addActionListener(this);
+		minimap.addActionListener(this);
 		defaultSkin.addActionListener(this);
 		loadSkin.addActionListener(this);
 		solve.addActionListener(this);
@@ -133,6 +155,24 @@ public class MenuBar extends JMenuBar implements ActionListener {
 		
 		if (o == newGame) {
 			controller.newGame();
+		} else if (o == undo) {
+			controller.undo();
+		} else if (o == redo) {
+			controller.redo();
+		} else if (o == saveGame) {
+			JFileChooser fc = new JFileChooser();
+
+			if (fc.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
+				controller.saveGame(fc.getSelectedFile());
+			}
+		} else if (o == loadGame) {
+			JFileChooser fc = new JFileChooser();
+
+			if (fc.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+				lastSelected = custom;
+				custom.setSelected(true);
+				controller.loadGame(fc.getSelectedFile());
+			}
 		} else if (o == beginner) {
 			lastSelected = beginner;
 			controller.newGame(GameConstants.EASY_WIDTH, GameConstants.EASY_HEIGHT, GameConstants.EASY_MINES);
@@ -157,6 +197,10 @@ public class MenuBar extends JMenuBar implements ActionListener {
 			controller.quit();
 		} else if (o == stats) {
 			controller.displayStats();
+		} else if (o == highscores) {
+			controller.displayHighscores();
+		} else if (o == minimap) {
+			controller.displayMinimap();
 		} else if (o == defaultSkin) {
 			controller.setDefaultSkin();
 		} else if (o == loadSkin) {
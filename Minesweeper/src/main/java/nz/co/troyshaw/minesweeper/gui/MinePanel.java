@@ -2,12 +2,15 @@ package nz.co.troyshaw.minesweeper.gui;
 
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.util.Map;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 import nz.co.troyshaw.minesweeper.controller.GuiController;
 import nz.co.troyshaw.minesweeper.game.Piece;
@@ -44,6 +47,16 @@ public class MinePanel extends JPanel{
 
 
 	private BufferedImage boardImage, singleclickImage, multiclickImage;
+	private Graphics2D singleclickGraphics, multiclickGraphics;
+
+	/**
+	 * The pieces around the depressed square, refilled on every depress.
+	 */
+	private Piece[][] surroundingPieces = new Piece[3][3];
+
+	//the latest square the mouse was dragged to, drawn at most once a frame by the drag timer
+	private int xDrag, yDrag;
+	private Timer dragTimer;
 
 	private ClickMode clickMode;
 	private int xClick, yClick;
@@ -69,6 +82,16 @@ public class MinePanel extends JPanel{
 		//create clickImage and 
 		singleclickImage = new BufferedImage(squareSize, squareSize, BufferedImage.TYPE_INT_RGB);
 		multiclickImage = new BufferedImage(3 * squareSize, 3 * squareSize, BufferedImage.TYPE_INT_RGB);
+		singleclickGraphics = singleclickImage.createGraphics();
+		multiclickGraphics = multiclickImage.createGraphics();
+
+		dragTimer = new Timer(16, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (clickMode != ClickMode.none && (xDrag != xClick || yDrag != yClick)) manageDepress(xDrag, yDrag);
+			}
+		});
+		dragTimer.setRepeats(false);
 
 		resetBoard(width, height);
 	}
@@ -143,23 +166,24 @@ public class MinePanel extends JPanel{
 	}
 
 	private void manageDepress(int xClick, int yClick) {
+		int oldX = this.xClick;
+		int oldY = this.yClick;
+
 		this.xClick = xClick;
 		this.yClick = yClick;
+		xDrag = xClick;
+		yDrag = yClick;
 
 		//get the data we are to draw
-		Graphics2D g2d;
-
 		switch (clickMode) {
 		case left:
-			g2d = singleclickImage.createGraphics();
-			g2d.drawImage(depressedImages.get(controller.getPiece(xClick, yClick)), 0, 0, null);
+			singleclickGraphics.drawImage(depressedImages.get(controller.getPiece(xClick, yClick)), 0, 0, null);
 			break;
 		case both:
-			g2d = multiclickImage.createGraphics();
-			Piece[][] p = controller.getSurroundingPieces(xClick, yClick);
+			Piece[][] p = controller.getSurroundingPieces(xClick, yClick, surroundingPieces);
 			for (int i = 0; i < 3; i++) {
 				for (int j = 0; j < 3; j++) {
-					g2d.drawImage(depressedImages.get(p[i][j]), i * squareSize, j * squareSize, null);
+					multiclickGraphics.drawImage(depressedImages.get(p[i][j]), i * squareSize, j * squareSize, null);
 				}
 			}
 			break;
@@ -167,7 +191,9 @@ public class MinePanel extends JPanel{
 			break;
 		}
 
-		repaint();
+		//only the squares around the old and new depress can have changed
+		repaint((oldX - 1) * squareSize, (oldY - 1) * squareSize, 3 * squareSize, 3 * squareSize);
+		repaint((xClick - 1) * squareSize, (yClick - 1) * squareSize, 3 * squareSize, 3 * squareSize);
 	}
 
 	private class MouseController extends MouseAdapter {
@@ -229,6 +255,7 @@ public class MinePanel extends JPanel{
 
 				clickMode = ClickMode.none;
 				dirty = true;
+				dragTimer.stop();
 
 				repaint();
 			}
@@ -240,11 +267,11 @@ public class MinePanel extends JPanel{
 		@Override
 		public void mouseDragged(MouseEvent e) {
 			if (!isListening) return;
-			if (e.getX() / squareSize == xClick && e.getY() / squareSize == yClick) return;
 
-			manageDepress(e.getX() / squareSize, e.getY() / squareSize);
+			xDrag = e.getX() / squareSize;
+			yDrag = e.getY() / squareSize;
 
-			repaint();
+			if (!dragTimer.isRunning()) dragTimer.start();
 		}
 
 		@Override
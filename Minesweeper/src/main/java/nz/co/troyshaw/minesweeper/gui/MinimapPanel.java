@@ -0,0 +1,205 @@
+package nz.co.troyshaw.minesweeper.gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import javax.swing.JPanel;
+
+import nz.co.troyshaw.minesweeper.controller.GuiController;
+import nz.co.troyshaw.minesweeper.game.BoardSnapshot;
+import nz.co.troyshaw.minesweeper.game.Piece;
+
+/**
+ * Displays an overview of the whole board at one pixel per square. <p>
+ *
+ * Squares are written straight into the int raster of the backing image rather than drawn as sprites,
+ * and the image is then scaled to fit the panel when painted. Individual squares are updated as the game
+ * reports changes, so only a new board requires a full pass, which reads the packed squares of a {@link BoardSnapshot}. <p>
+ *
+ * Clicking on the minimap asks the controller to scroll the main board to the clicked square.
+ */
+public class MinimapPanel extends JPanel {
+
+	/**
+	 * The largest size in pixels the minimap will ask to be on either axis.
+	 */
+	private static final int MAX_SIZE = 256;
+
+	/**
+	 * Colour of each piece, indexed by the pieces ordinal.
+	 */
+	private static final int[] colours = new int[Piece.values().length];
+
+	static {
+		colours[Piece.blank.ordinal()] = 0x808080;
+		colours[Piece.question.ordinal()] = 0xE0E000;
+		colours[Piece.flag.ordinal()] = 0xE00000;
+		colours[Piece.incorrectFlag.ordinal()] = 0xE000E0;
+		colours[Piece.mine.ordinal()] = 0x000000;
+		colours[Piece.redMine.ordinal()] = 0xFF4040;
+
+		//revealed squares get darker the more mines they have around them
+		for (int i = 0; i <= 8; i++) {
+			int shade = 0xF0 - i * 0x10;
+			colours[Piece.getPiece(i).ordinal()] = (shade << 16) | (shade << 8) | 0xF0;
+		}
+	}
+
+	private int width, height;
+
+	private BufferedImage image;
+	private int[] pixels;
+
+	/**
+	 * Bounds of the squares changed since the last flush.
+	 * If nothing has changed, dirtyMinX > dirtyMaxX.
+	 */
+	private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+	private GuiController controller;
+
+	public MinimapPanel(int width, int height) {
+		setBackground(Color.BLACK);
+
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				jumpTo(e.getX(), e.getY());
+			}
+		});
+
+		addMouseMotionListener(new MouseAdapter() {
+			@Override
+			public void mouseDragged(MouseEvent e) {
+				jumpTo(e.getX(), e.getY());
+			}
+		});
+
+		resetBoard(width, height);
+	}
+
+	public void registerController(GuiController controller) {
+		this.controller = controller;
+	}
+
+	/**
+	 * Resets the minimap to a blank board of the given size.
+	 *
+	 * @param width the width of the board in squares
+	 * @param height the height of the board in squares
+	 */
+	public void resetBoard(int width, int height) {
+		if (image == null || this.width != width || this.height != height) {
+			this.width = width;
+			this.height = height;
+
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+			Dimension d = preferredSize(width, height);
+			setPreferredSize(d);
+			setMinimumSize(d);
+		}
+
+		Arrays.fill(pixels, colours[Piece.blank.ordinal()]);
+		clearDirty();
+
+		repaint();
+	}
+
+	/**
+	 * Redraws every square of the minimap from a snapshot of the board, which can be read while the game is played.
+	 * Squares changed after the snapshot are set as usual when their events arrive.
+	 *
+	 * @param snapshot the board, the same size as the minimap
+	 */
+	public void redraw(BoardSnapshot snapshot) {
+		//the snapshot's squares are packed in the same order as the pixels
+		snapshot.lookup(colours, pixels);
+
+		clearDirty();
+		repaint();
+	}
+
+	/**
+	 * Sets a single square of the minimap. The change isn't shown until {@link #flush()} is called.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param piece the piece now at that square
+	 */
+	public void setPiece(int x, int y, Piece piece) {
+		pixels[y * width + x] = colours[piece.ordinal()];
+
+		if (x < dirtyMinX) dirtyMinX = x;
+		if (x > dirtyMaxX) dirtyMaxX = x;
+		if (y < dirtyMinY) dirtyMinY = y;
+		if (y > dirtyMaxY) dirtyMaxY = y;
+	}
+
+	/**
+	 * Repaints the area of the minimap covering the squares changed since the last flush.
+	 */
+	public void flush() {
+		if (dirtyMinX > dirtyMaxX) return;
+
+		double scale = getScale();
+		int x = (int) (dirtyMinX * scale);
+		int y = (int) (dirtyMinY * scale);
+		int w = (int) Math.ceil((dirtyMaxX + 1) * scale) - x;
+		int h = (int) Math.ceil((dirtyMaxY + 1) * scale) - y;
+
+		clearDirty();
+
+		repaint(x, y, w, h);
+	}
+
+	@Override
+	public void paintComponent(Graphics g) {
+		super.paintComponent(g);
+
+		double scale = getScale();
+
+		Graphics2D g2d = (Graphics2D) g;
+		g2d.drawImage(image, 0, 0, (int) Math.ceil(width * scale), (int) Math.ceil(height * scale), null);
+	}
+
+	private void jumpTo(int px, int py) {
+		if (controller == null) return;
+
+		double scale = getScale();
+		int x = (int) (px / scale);
+		int y = (int) (py / scale);
+
+		if (x >= 0 && y >= 0 && x < width && y < height) controller.jumpTo(x, y);
+	}
+
+	/**
+	 * Returns the number of pixels on screen a single square takes up.
+	 * This is less than 1 when the board is bigger than the panel.
+	 */
+	private double getScale() {
+		return Math.min(getWidth() / (double) width, getHeight() / (double) height);
+	}
+
+	private void clearDirty() {
+		dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+		dirtyMaxX = dirtyMaxY = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Returns the size that fits a board of the given size into a MAX_SIZE square, keeping its aspect ratio.
+	 */
+	private static Dimension preferredSize(int width, int height) {
+		double scale = MAX_SIZE / (double) Math.max(width, height);
+
+		return new Dimension(Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale)));
+	}
+}
@@ -0,0 +1,66 @@
+package nz.co.troyshaw.minesweeper.gui;
+
+import java.util.List;
+
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+
+import nz.co.troyshaw.minesweeper.misc.Statistics.ConfigStats;
+import nz.co.troyshaw.minesweeper.misc.Statistics.MonthStats;
+
+/**
+ * Shows the statistics of every game played, with a tab of totals per board and a tab of win rates per month.
+ */
+public class StatisticsWindow extends JDialog {
+
+	private static final String[] BOARD_COLUMNS = {"Board", "Played", "Won", "Win %", "Best (s)", "Average (s)", "3BV/s", "Clicks", "Solver used"};
+	private static final String[] MONTH_COLUMNS = {"Month", "Played", "Won", "Win %"};
+
+	public StatisticsWindow(JFrame parent, List<ConfigStats> boards, List<MonthStats> months) {
+		super(parent, "Statistics", true);
+
+		Object[][] boardRows = new Object[boards.size()][];
+
+		for (int i = 0; i < boardRows.length; i++) {
+			ConfigStats s = boards.get(i);
+
+			boardRows[i] = new Object[] {s.getConfig(), s.getGames(), s.getWins(), percent(s.getWins(), s.getGames()),
+					seconds(s.getBestNanos()), seconds(s.getAverageNanos()), String.format("%.2f", s.getBBBVPerSecond()),
+					String.format("%.1f", s.getAverageClicks()), s.getAssisted()};
+		}
+
+		Object[][] monthRows = new Object[months.size()][];
+
+		for (int i = 0; i < monthRows.length; i++) {
+			MonthStats s = months.get(i);
+
+			monthRows[i] = new Object[] {s.getMonth(), s.getGames(), s.getWins(), percent(s.getWins(), s.getGames())};
+		}
+
+		JTabbedPane tabs = new JTabbedPane();
+		tabs.addTab("Boards", table(boardRows, BOARD_COLUMNS));
+		tabs.addTab("Months", table(monthRows, MONTH_COLUMNS));
+
+		add(tabs);
+		pack();
+		setLocationRelativeTo(parent);
+	}
+
+	private static JScrollPane table(Object[][] rows, String[] columns) {
+		JTable table = new JTable(rows, columns);
+		table.setEnabled(false);
+
+		return new JScrollPane(table);
+	}
+
+	private static String percent(int wins, int games) {
+		return games == 0 ? "" : String.format("%.1f", 100.0 * wins / games);
+	}
+
+	private static String seconds(long nanos) {
+		return nanos < 0 ? "" : String.format("%.3f", nanos / 1e9);
+	}
+}
@@ -2,22 +2,39 @@ package nz.co.troyshaw.minesweeper.gui.gameImages;
 
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.util.Map;
 
+import javax.swing.Timer;
+
 import nz.co.troyshaw.minesweeper.controller.GuiController;
 import nz.co.troyshaw.minesweeper.game.Piece;
-import nz.co.troyshaw.minesweeper.game.Square;
 import nz.co.troyshaw.minesweeper.images.ImageData;
 
 public class BoardImage extends GameImage {
+	
+	/**
+	 * Drags are only drawn once per this many milliseconds (about once per frame).
+	 */
+	private static final int DRAG_DELAY = 16;
+	
 	private int width, height;
 	
 	private Map<Piece, BufferedImage> depressedImages = ImageData.getDepressedBoardPieces();
 	
 	private BufferedImage returnImage, boardImage, singleClickImage, multiClickImage;
 	
+	//kept for the life of their images so depressing doesn't create a new graphics each time
+	private Graphics2D returnGraphics, singleClickGraphics, multiClickGraphics;
+	
+	/**
+	 * The pieces around the depressed square, refilled on every depress.
+	 */
+	private Piece[][] surroundingPieces = new Piece[3][3];
+	
 	private Rectangle bounds;
 	private int squareSize = ImageData.squareSize;
 	
@@ -30,6 +47,10 @@ public class BoardImage extends GameImage {
 	private boolean leftClicked, rightClicked, dirty, isListening, onScreen;
 	private int xClick, yClick;
 	
+	//the latest square the mouse was dragged to, which is drawn when the drag timer fires
+	private int xDrag, yDrag;
+	private Timer dragTimer;
+	
 	public BoardImage(MainImage parent, int width, int height) {
 		this.parent = parent;
 		
@@ -37,6 +58,16 @@ public class BoardImage extends GameImage {
 		
 		singleClickImage = new BufferedImage(squareSize, squareSize, ImageData.bottomLeftCorner.getType());
 		multiClickImage = new BufferedImage(squareSize * 3, squareSize * 3, ImageData.bottomLeftCorner.getType());
+		singleClickGraphics = singleClickImage.createGraphics();
+		multiClickGraphics = multiClickImage.createGraphics();
+		
+		dragTimer = new Timer(DRAG_DELAY, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (clickMode != ClickMode.none && (xDrag != xClick || yDrag != yClick)) manageDepress(xDrag, yDrag);
+			}
+		});
+		dragTimer.setRepeats(false);
 		
 		//sets variables, creates first image, then draws blank board
 		resetBoard(width, height);
@@ -79,13 +110,36 @@ public class BoardImage extends GameImage {
 		boardImage = new BufferedImage(squareSize * width, squareSize * height, ImageData.bottomLeftCorner.getType());
 		returnImage = new BufferedImage(squareSize * width, squareSize * height, ImageData.bottomLeftCorner.getType());
 		
+		if (returnGraphics != null) returnGraphics.dispose();
+		returnGraphics = returnImage.createGraphics();
+		
 		resetBoard();
 	}
 	
 	@Override
 	public void redraw() {	
-		Graphics2D g = returnImage.createGraphics();
-
+		returnGraphics.setClip(null);
+		draw(returnGraphics);
+	}
+	
+	/**
+	 * Redraws only the given area of the image. The area is in pixels, relative to this image.
+	 * 
+	 * @param x the left of the area
+	 * @param y the top of the area
+	 * @param w the width of the area
+	 * @param h the height of the area
+	 */
+	public void redraw(int x, int y, int w, int h) {
+		returnGraphics.setClip(x, y, w, h);
+		draw(returnGraphics);
+		returnGraphics.setClip(null);
+	}
+	
+	/**
+	 * Draws the board and any depressed squares to the given graphics.
+	 */
+	private void draw(Graphics2D g) {
 		g.drawImage(boardImage, 0, 0, null);
 
 		if (onScreen) {
@@ -105,33 +159,40 @@ public class BoardImage extends GameImage {
 	@Override
 	public void reskin() {
 		Graphics2D g = boardImage.createGraphics();
-		Square[][] p = controller.getPieces();
+		Piece[][] p = controller.getPieces();
 		
 		for (int i = 0; i < p.length; i++) {
 			for (int j = 0; j < p[i].length; j++) {
-				g.drawImage(ImageData.getBoardPieces().get(p[i][j].getPiece()), i * squareSize, j * squareSize, null);
+				g.drawImage(ImageData.getBoardPieces().get(p[i][j]), i * squareSize, j * squareSize, null);
 			}
 		}
 	}
 	
+	/**
+	 * Moves the depressed square(s) to the given square, then repaints the area around the old and new squares.
+	 * 
+	 * @param x the x coordinate of the square
+	 * @param y the y coordinate of the square
+	 */
 	public void manageDepress(int x, int y) {
+		int oldX = xClick;
+		int oldY = yClick;
+		
 		this.xClick = x;
 		this.yClick = y;
+		xDrag = x;
+		yDrag = y;
 
 		//get the data we are to draw
-		Graphics2D g2d;
-
 		switch (clickMode) {
 		case left:
-			g2d = singleClickImage.createGraphics();
-			g2d.drawImage(depressedImages.get(controller.getPiece(xClick, yClick)), 0, 0, null);
+			singleClickGraphics.drawImage(depressedImages.get(controller.getPiece(xClick, yClick)), 0, 0, null);
 			break;
 		case both:
-			g2d = multiClickImage.createGraphics();
-			Piece[][] p = controller.getSurroundingPieces(xClick, yClick);
+			Piece[][] p = controller.getSurroundingPieces(xClick, yClick, surroundingPieces);
 			for (int i = 0; i < 3; i++) {
 				for (int j = 0; j < 3; j++) {
-					g2d.drawImage(depressedImages.get(p[i][j]), i * squareSize, j * squareSize, null);
+					multiClickGraphics.drawImage(depressedImages.get(p[i][j]), i * squareSize, j * squareSize, null);
 				}
 			}
 			break;
@@ -139,7 +200,15 @@ public class BoardImage extends GameImage {
 			break;
 		}
 
-		parent.repaintBoard();
+		repaintAround(oldX, oldY);
+		if (oldX != x || oldY != y) repaintAround(x, y);
+	}
+	
+	/**
+	 * Repaints the 3x3 squares around the given square.
+	 */
+	private void repaintAround(int x, int y) {
+		parent.repaintBoard((x - 1) * squareSize, (y - 1) * squareSize, 3 * squareSize, 3 * squareSize);
 	}
 	
 	public void mousePressed(MouseEvent e) {
@@ -197,8 +266,9 @@ public class BoardImage extends GameImage {
 
 			clickMode = ClickMode.none;
 			dirty = true;
+			dragTimer.stop();
 
-			parent.repaintBoard();
+			repaintAround(this.xClick, this.yClick);
 		}
 
 		if (left) leftClicked = false;
@@ -206,16 +276,20 @@ public class BoardImage extends GameImage {
 	}
 
 
+	/**
+	 * Signals the mouse has been dragged. <p>
+	 * The new square is only remembered here; it is drawn when the drag timer next fires, 
+	 * so any number of drags in a frame cost a single depress.
+	 * 
+	 * @param e
+	 */
 	public void mouseDragged(MouseEvent e) {
 		if (!isListening) return;
 		
-		int x = (e.getX() - getX()) / squareSize;
-		int y = (e.getY() - getY()) / squareSize;
-		if (x == xClick && y == yClick) return;
-
-		manageDepress(x, y);
-
-		parent.repaintBoard();
+		xDrag = (e.getX() - getX()) / squareSize;
+		yDrag = (e.getY() - getY()) / squareSize;
+		
+		if (!dragTimer.isRunning()) dragTimer.start();
 	}
 
 	
@@ -253,5 +327,12 @@ public class BoardImage extends GameImage {
 		isListening = false;
 	}
 	
+	/**
+	 * Lets the board be clicked again, such as when the move that lost the game is undone.
+	 */
+	public void enableBoard() {
+		isListening = true;
+	}
+	
 	private enum ClickMode {none, left, both}
 }
\ No newline at end of file
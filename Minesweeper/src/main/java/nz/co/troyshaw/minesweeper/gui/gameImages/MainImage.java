@@ -25,6 +25,9 @@ public class MainImage extends GameImage {
 
 	private BufferedImage thisImage;
 
+	//kept for the life of the image so depressing squares and ticking the timer don't create a new graphics each time
+	private Graphics2D graphics;
+
 	private JPanel parent;
 
 	private int numMines;
@@ -42,6 +45,7 @@ public class MainImage extends GameImage {
 		buttonImage = new ButtonImage(this);
 
 		thisImage = new BufferedImage(getWidth(), getHeight(), ImageData.bottomLeftCorner.getType());
+		graphics = thisImage.createGraphics();
 
 		setPositions();
 		redraw();
@@ -81,6 +85,9 @@ public class MainImage extends GameImage {
 
 		//do this last since getWidth() and getHeight() depend on borderImage
 		thisImage = new BufferedImage(getWidth(), getHeight(), ImageData.bottomLeftCorner.getType());
+
+		graphics.dispose();
+		graphics = thisImage.createGraphics();
 	}
 
 	public void setPositions() {
@@ -98,13 +105,11 @@ public class MainImage extends GameImage {
 	 */
 	@Override
 	public void redraw() {
-		Graphics2D g = thisImage.createGraphics();
-
-		g.drawImage(borderImage.getImage(), borderImage.getX(), borderImage.getY(), null);
-		g.drawImage(gameImage.getImage(), gameImage.getX(), gameImage.getY(), null);
-		g.drawImage(timerImage.getImage(), timerImage.getX(), timerImage.getY(), null);
-		g.drawImage(minesLeftImage.getImage(), minesLeftImage.getX(), minesLeftImage.getY(), null);
-		g.drawImage(buttonImage.getImage(), buttonImage.getX(), buttonImage.getY(), null);
+		graphics.drawImage(borderImage.getImage(), borderImage.getX(), borderImage.getY(), null);
+		graphics.drawImage(gameImage.getImage(), gameImage.getX(), gameImage.getY(), null);
+		graphics.drawImage(timerImage.getImage(), timerImage.getX(), timerImage.getY(), null);
+		graphics.drawImage(minesLeftImage.getImage(), minesLeftImage.getX(), minesLeftImage.getY(), null);
+		graphics.drawImage(buttonImage.getImage(), buttonImage.getX(), buttonImage.getY(), null);
 	}
 
 	/**
@@ -114,14 +119,25 @@ public class MainImage extends GameImage {
 		timerImage.setValue(timerImage.getValue() + 1);
 
 		//redraw timer image
-		thisImage.createGraphics().drawImage(timerImage.getImage(), timerImage.getX(), timerImage.getY(), null);
+		graphics.drawImage(timerImage.getImage(), timerImage.getX(), timerImage.getY(), null);
+	}
+
+	/**
+	 * Sets the timer to the given number of seconds and redraws the timer image.
+	 *
+	 * @param seconds the time to show
+	 */
+	public void setTimer(int seconds) {
+		timerImage.setValue(seconds);
+		
+		graphics.drawImage(timerImage.getImage(), timerImage.getX(), timerImage.getY(), null);
 	}
 
 	public void setMinesLeft(int flagsLeft) {
 		minesLeftImage.setValue(flagsLeft);
 		
 		//redraw timer image
-		thisImage.createGraphics().drawImage(minesLeftImage.getImage(), minesLeftImage.getX(), minesLeftImage.getY(), null);
+		graphics.drawImage(minesLeftImage.getImage(), minesLeftImage.getX(), minesLeftImage.getY(), null);
 	}
 
 	@Override
@@ -190,8 +206,7 @@ public class MainImage extends GameImage {
 	public void repaintButton() {
 		buttonImage.redraw();
 
-		Graphics2D g = thisImage.createGraphics();
-		g.drawImage(buttonImage.getImage(), buttonImage.getX(), buttonImage.getY(), null);
+		graphics.drawImage(buttonImage.getImage(), buttonImage.getX(), buttonImage.getY(), null);
 
 		parent.repaint();
 	}
@@ -199,11 +214,33 @@ public class MainImage extends GameImage {
 	public void repaintBoard() {
 		gameImage.redraw();
 		
-		Graphics2D g = thisImage.createGraphics();
-		g.drawImage(gameImage.getImage(), gameImage.getX(), gameImage.getY(), null);
+		graphics.drawImage(gameImage.getImage(), gameImage.getX(), gameImage.getY(), null);
 
 		parent.repaint();
 	}
+	
+	/**
+	 * Redraws and repaints only the given area of the board. The area is in pixels, relative to the board image.
+	 * 
+	 * @param x the left of the area
+	 * @param y the top of the area
+	 * @param w the width of the area
+	 * @param h the height of the area
+	 */
+	public void repaintBoard(int x, int y, int w, int h) {
+		gameImage.redraw(x, y, w, h);
+		
+		int left = gameImage.getX() + x;
+		int top = gameImage.getY() + y;
+		
+		//the clip is set for just this draw, since the graphics is shared
+		graphics.setClip(gameImage.getX(), gameImage.getY(), gameImage.getImage().getWidth(), gameImage.getImage().getHeight());
+		graphics.clipRect(left, top, w, h);
+		graphics.drawImage(gameImage.getImage(), gameImage.getX(), gameImage.getY(), null);
+		graphics.setClip(null);
+		
+		parent.repaint(left, top, w, h);
+	}
 
 	public BoardImage getBoardImage() {
 		return gameImage;
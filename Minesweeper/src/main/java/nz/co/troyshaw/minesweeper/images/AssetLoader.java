@@ -0,0 +1,61 @@
+package nz.co.troyshaw.minesweeper.images;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Decodes the images needed at startup on background threads. <p>
+ *
+ * Decoding doesn't need Swing, so it is started before anything else and runs while Swing starts up and the
+ * first components are built. The getters wait for their image if it hasn't finished yet.
+ */
+public class AssetLoader {
+
+	private final CompletableFuture<BufferedImage> spriteSheet;
+	private final CompletableFuture<Image> icon;
+
+	private AssetLoader() {
+		spriteSheet = CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+			@Override
+			public BufferedImage get() {
+				return ImageData.readDefaultSpriteSheet();
+			}
+		});
+
+		icon = CompletableFuture.supplyAsync(new Supplier<Image>() {
+			@Override
+			public Image get() {
+				return ImageData.getIconImage();
+			}
+		});
+	}
+
+	/**
+	 * Starts decoding the startup images in the background.
+	 *
+	 * @return the loader to collect the images from
+	 */
+	public static AssetLoader start() {
+		return new AssetLoader();
+	}
+
+	/**
+	 * Returns the default spritesheet, waiting for it to be decoded if needed.
+	 *
+	 * @return the default spritesheet
+	 */
+	public BufferedImage getSpriteSheet() {
+		return spriteSheet.join();
+	}
+
+	/**
+	 * Returns the game icon, waiting for it to be decoded if needed.
+	 *
+	 * @return the game icon
+	 */
+	public Image getIcon() {
+		return icon.join();
+	}
+}
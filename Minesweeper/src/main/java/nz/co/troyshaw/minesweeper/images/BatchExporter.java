@@ -0,0 +1,109 @@
+package nz.co.troyshaw.minesweeper.images;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import nz.co.troyshaw.minesweeper.game.Square;
+
+/**
+ * Renders many boards to PNG files in parallel. <p>
+ *
+ * Boards are split between a fixed number of threads, and each thread renders with its own {@link BoardRenderer}
+ * so the image it renders into is reused for every board that thread handles. No display is needed.
+ */
+public class BatchExporter {
+
+	private final int threads;
+	private final boolean showMines;
+
+	/**
+	 * Creates an exporter using one thread per processor.
+	 *
+	 * @param showMines true to show unrevealed mines and incorrect flags
+	 */
+	public BatchExporter(boolean showMines) {
+		this(Runtime.getRuntime().availableProcessors(), showMines);
+	}
+
+	/**
+	 * Creates an exporter using the given number of threads.
+	 *
+	 * @param threads the number of threads to render and encode on
+	 * @param showMines true to show unrevealed mines and incorrect flags
+	 */
+	public BatchExporter(int threads, boolean showMines) {
+		if (threads < 1) throw new IllegalArgumentException("Must have at least 1 thread");
+
+		this.threads = threads;
+		this.showMines = showMines;
+	}
+
+	/**
+	 * Writes each board to the given directory as a PNG.
+	 * The board at index i of the list is written to <code>prefix</code>i<code>.png</code>.
+	 * The boards must not be changed until this method returns.
+	 *
+	 * @param boards the boards to render, each indexed [x][y]
+	 * @param directory the directory to write to
+	 * @param prefix the start of each file name
+	 * @throws IOException if any image could not be written
+	 */
+	public void export(final List<Square[][]> boards, final File directory, final String prefix) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+		//load the skin up front rather than letting every thread race to do it
+		if (ImageData.getBoardPieces().isEmpty()) ImageData.loadDefaultImages();
+
+		//we only write straight to files, so there's no need for ImageIO to buffer through its disk cache
+		ImageIO.setUseCache(false);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+		for (int t = 0; t < threads; t++) {
+			final int first = t;
+
+			results.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					BoardRenderer renderer = new BoardRenderer();
+					renderer.setShowMines(showMines);
+
+					//each thread takes every threads'th board, so the work is spread evenly
+					for (int i = first; i < boards.size(); i += threads) {
+						File file = new File(directory, prefix + i + ".png");
+
+						if (!ImageIO.write(renderer.render(boards.get(i)), "png", file)) {
+							throw new IOException("No PNG writer available");
+						}
+					}
+
+					return null;
+				}
+			}));
+		}
+
+		executor.shutdown();
+
+		try {
+			for (Future<Void> f : results) f.get();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while exporting");
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+}
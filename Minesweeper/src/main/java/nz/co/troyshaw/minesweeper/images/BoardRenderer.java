@@ -0,0 +1,108 @@
+package nz.co.troyshaw.minesweeper.images;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Map;
+
+import nz.co.troyshaw.minesweeper.game.Piece;
+import nz.co.troyshaw.minesweeper.game.Square;
+
+/**
+ * Renders a board straight from its squares into an image, without any Swing components. <p>
+ *
+ * The sprites of the current skin are copied out of {@link ImageData} once, and each square is then drawn by
+ * copying its sprite's pixels into the int raster of the image. This works with <code>java.awt.headless=true</code>. <p>
+ *
+ * The image is reused between renders when the board size doesn't change, so a renderer must only be used by one
+ * thread, and the returned image is only valid until the next render.
+ */
+public class BoardRenderer {
+
+	private static final int squareSize = ImageData.squareSize;
+
+	/**
+	 * The pixels of each piece's sprite, indexed by the pieces ordinal.
+	 */
+	private final int[][] sprites = new int[Piece.values().length][];
+
+	/**
+	 * If true, unrevealed mines and incorrect flags are drawn as they are at the end of a lost game.
+	 */
+	private boolean showMines;
+
+	private BufferedImage image;
+	private int[] raster;
+
+	/**
+	 * Creates a new renderer using the current skin. The default skin is loaded if no skin has been loaded yet.
+	 */
+	public BoardRenderer() {
+		if (ImageData.getBoardPieces().isEmpty()) ImageData.loadDefaultImages();
+
+		for (Map.Entry<Piece, BufferedImage> e : ImageData.getBoardPieces().entrySet()) {
+			int[] pixels = new int[squareSize * squareSize];
+			e.getValue().getRGB(0, 0, squareSize, squareSize, pixels, 0, squareSize);
+
+			sprites[e.getKey().ordinal()] = pixels;
+		}
+	}
+
+	/**
+	 * Sets whether unrevealed mines and incorrect flags are shown.
+	 *
+	 * @param showMines true to show the mines
+	 */
+	public void setShowMines(boolean showMines) {
+		this.showMines = showMines;
+	}
+
+	/**
+	 * Renders the given board. The returned image is reused by the next render.
+	 *
+	 * @param squares the board, indexed [x][y]
+	 * @return the rendered board
+	 */
+	public BufferedImage render(Square[][] squares) {
+		int width = squares.length;
+		int height = squares[0].length;
+
+		int[] raster = getRaster(width * squareSize, height * squareSize);
+		int stride = width * squareSize;
+
+		for (int y = 0; y < height; y++) {
+			int rowStart = y * squareSize * stride;
+
+			for (int x = 0; x < width; x++) {
+				int[] sprite = sprites[getPiece(squares[x][y]).ordinal()];
+				int offset = rowStart + x * squareSize;
+
+				for (int row = 0; row < squareSize; row++) {
+					System.arraycopy(sprite, row * squareSize, raster, offset + row * stride, squareSize);
+				}
+			}
+		}
+
+		return image;
+	}
+
+	private Piece getPiece(Square s) {
+		if (showMines && !s.isRevealed()) {
+			if (s.isMine() && !s.isFlagged()) return Piece.mine;
+			if (!s.isMine() && s.isFlagged()) return Piece.incorrectFlag;
+		}
+
+		return s.getPiece();
+	}
+
+	/**
+	 * Returns the raster of an image of the given size, only creating a new image if the size has changed.
+	 */
+	private int[] getRaster(int width, int height) {
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		}
+
+		return raster;
+	}
+}
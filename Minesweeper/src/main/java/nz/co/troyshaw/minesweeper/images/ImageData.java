@@ -39,7 +39,7 @@ public class ImageData {
 	/**
 	 * The directory the images are contained in within the jar file.
 	 */
-	private static String DIRECTORY = "/Images/";
+	private static String DIRECTORY = "/images/";
 
 	/**
 	 * The default images location.
@@ -108,26 +108,52 @@ public class ImageData {
 	 * Loads the default spritesheet.
 	 */
 	public static void loadDefaultImages() {
+		splitImage(readDefaultSpriteSheet());
+	}
+
+	/**
+	 * Splits the image in the supplied path and sets the images used by the game. <p>
+	 * The image must be of size (x, y) or InvalidDimensionException will be thrown.
+	 *
+	 * @param file the image file to load
+	 * @throws InvalidDimensionException
+	 * @throws NotImageException
+	 * @throws IOException
+	 */
+	public static void loadImages(File file) 
+			throws InvalidDimensionException, NotImageException, IOException {
+
+		splitImage(readSpriteSheet(file));
+	}
+
+	/**
+	 * Reads the default spritesheet, without setting it as the images used by the game.
+	 *
+	 * @return the default spritesheet
+	 */
+	public static BufferedImage readDefaultSpriteSheet() {
 		try {
-			splitImage(ImageIO.read(ImageIO.class.getResource(DIRECTORY + DEFAULT_IMAGE)));
+			return SkinCache.getDefault().read(ImageData.class.getResourceAsStream(DIRECTORY + DEFAULT_IMAGE), DIRECTORY + DEFAULT_IMAGE);
 		} catch (IOException e) {
 			throw new Error("default image caused an IO error");
 		}
 	}
 
 	/**
-	 * Splits the image in the supplied path and sets the images used by the game. <p>
+	 * Reads and checks the spritesheet in the given file, without setting it as the images used by the game. <p>
+	 * This does no drawing, so may be called from any thread.
 	 * The image must be of size (x, y) or InvalidDimensionException will be thrown.
 	 *
-	 * @param file the image file to load
+	 * @param file the image file to read
+	 * @return the spritesheet
 	 * @throws InvalidDimensionException
 	 * @throws NotImageException
 	 * @throws IOException
 	 */
-	public static void loadImages(File file) 
+	public static BufferedImage readSpriteSheet(File file) 
 			throws InvalidDimensionException, NotImageException, IOException {
 
-		BufferedImage spriteSheet = ImageIO.read(file);
+		BufferedImage spriteSheet = SkinCache.getDefault().read(file);
 
 		//check null
 		if (spriteSheet == null) throw new NotImageException();
@@ -137,6 +163,17 @@ public class ImageData {
 			throw new InvalidDimensionException("Image dimensions must be "
 					+ spriteSheetWidth + " by " + spriteSheetHeight);
 
+		return spriteSheet;
+	}
+
+	/**
+	 * Splits the given spritesheet and sets it as the images used by the game. <p>
+	 * The spritesheet should have come from one of the read methods. 
+	 * Since components draw using these images, this should be called on the EDT.
+	 *
+	 * @param spriteSheet the spritesheet to use
+	 */
+	public static void setSpriteSheet(BufferedImage spriteSheet) {
 		splitImage(spriteSheet);
 	}
 
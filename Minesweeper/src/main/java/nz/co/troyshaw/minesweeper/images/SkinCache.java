@@ -0,0 +1,233 @@
+package nz.co.troyshaw.minesweeper.images;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Caches decoded spritesheets on disk so a skin only ever has to be decoded once. <p>
+ *
+ * Spritesheets are converted to <code>TYPE_INT_RGB</code>, the type the game draws fastest, and their pixels are written
+ * raw to a file named by where the skin came from and the SHA-256 hash of its contents. Later loads of the same image
+ * map that file and copy the pixels straight into a new image's raster, skipping the decoder entirely. 
+ * Only the latest contents of each skin are kept, so editing a skin over and over doesn't fill the disk. <p>
+ *
+ * The cache is only an optimisation: if it can't be read or written the image is simply decoded.
+ * Without a display nothing is drawn, so the default cache doesn't touch the disk at all.
+ */
+public class SkinCache {
+
+	/**
+	 * Marks the start of a cache file ("MSKN").
+	 */
+	private static final int MAGIC = 0x4D534B4E;
+	private static final int VERSION = 1;
+
+	/**
+	 * The number of ints before the pixels: magic, version, width and height.
+	 */
+	private static final int HEADER_INTS = 4;
+
+	private static final File DEFAULT_DIRECTORY = new File(System.getProperty("user.home"), ".minesolve" + File.separator + "skins");
+
+	private static SkinCache defaultCache;
+
+	private final File directory;
+
+	/**
+	 * Creates a cache storing its files in the given directory. The directory is created when first written to.
+	 *
+	 * @param directory the cache directory, or null to decode every image without caching it
+	 */
+	public SkinCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the cache in the users home directory, or one that doesn't cache when there is no display, 
+	 * so headless tools such as simulations leave nothing behind.
+	 *
+	 * @return the default cache
+	 */
+	public static synchronized SkinCache getDefault() {
+		if (defaultCache == null) defaultCache = new SkinCache(GraphicsEnvironment.isHeadless() ? null : DEFAULT_DIRECTORY);
+
+		return defaultCache;
+	}
+
+	/**
+	 * Reads the image in the given file, from the cache if it has been read before.
+	 *
+	 * @param file the image file
+	 * @return the image, or null if the file wasn't an image
+	 * @throws IOException if the file couldn't be read
+	 */
+	public BufferedImage read(File file) throws IOException {
+		return read(Files.readAllBytes(file.toPath()), file.getAbsolutePath());
+	}
+
+	/**
+	 * Reads the image in the given stream, from the cache if it has been read before. The stream is closed.
+	 *
+	 * @param in the stream of image data
+	 * @param name where the image came from, such as its resource name. Only the latest image of each name is kept
+	 * @return the image, or null if the stream wasn't an image
+	 * @throws IOException if the stream couldn't be read
+	 */
+	public BufferedImage read(InputStream in, String name) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+
+			while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+
+			return read(out.toByteArray(), name);
+		} finally {
+			in.close();
+		}
+	}
+
+	private BufferedImage read(byte[] data, String name) throws IOException {
+		if (directory == null) {
+			BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+			return decoded == null ? null : toIntRGB(decoded);
+		}
+
+		//the skin's name hashed, so any path makes a valid file name
+		String skin = hash(name.getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+		File cached = new File(directory, skin + "-" + hash(data) + ".raw");
+
+		if (cached.isFile()) {
+			try {
+				return readCached(cached);
+			} catch (IOException e) {
+				//a damaged cache file, so fall through and replace it
+			}
+		}
+
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(data));
+		if (decoded == null) return null;
+
+		BufferedImage image = toIntRGB(decoded);
+
+		try {
+			writeCached(cached, image);
+			evict(skin, cached);
+		} catch (IOException e) {
+			//caching is only an optimisation
+		}
+
+		return image;
+	}
+
+	/**
+	 * Deletes the files of the skin's earlier contents, keeping only the given file, 
+	 * along with any files named only by their contents, as earlier versions of the cache named them.
+	 */
+	private void evict(String skin, File keep) {
+		File[] files = directory.listFiles();
+		if (files == null) return;
+
+		for (File f : files) {
+			String name = f.getName();
+			if (!name.endsWith(".raw") || f.equals(keep)) continue;
+
+			if (name.startsWith(skin + "-") || name.indexOf('-') < 0) f.delete();
+		}
+	}
+
+	private static BufferedImage readCached(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			IntBuffer ints = map.asIntBuffer();
+
+			if (ints.remaining() < HEADER_INTS || ints.get() != MAGIC || ints.get() != VERSION) throw new IOException("Not a cached skin");
+
+			int width = ints.get();
+			int height = ints.get();
+
+			if (width <= 0 || height <= 0 || ints.remaining() != width * height) throw new IOException("Truncated cached skin");
+
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			ints.get(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+
+			return image;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes to a temporary file first, then moves it into place, so a half written file is never read.
+	 */
+	private void writeCached(File file, BufferedImage image) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		ByteBuffer buffer = ByteBuffer.allocate((HEADER_INTS + pixels.length) * 4);
+		buffer.asIntBuffer().put(MAGIC).put(VERSION).put(image.getWidth()).put(image.getHeight()).put(pixels);
+
+		Path temp = Files.createTempFile(directory.toPath(), "skin", ".tmp");
+
+		try {
+			FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+
+			try {
+				while (buffer.hasRemaining()) channel.write(buffer);
+			} finally {
+				channel.close();
+			}
+
+			Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Returns the given image as a TYPE_INT_RGB image, converting it if it isn't one already.
+	 */
+	private static BufferedImage toIntRGB(BufferedImage image) {
+		if (image.getType() == BufferedImage.TYPE_INT_RGB) return image;
+
+		BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+		converted.createGraphics().drawImage(image, 0, 0, null);
+
+		return converted;
+	}
+
+	private static String hash(byte[] data) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+			StringBuilder sb = new StringBuilder();
+
+			for (byte b : digest) sb.append(String.format("%02x", b));
+
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new Error("SHA-256 is not available");
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package nz.co.troyshaw.minesweeper.images;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches a skin file and re-reads it whenever it changes on disk. <p>
+ *
+ * The watching and reading both happen on a background thread. Each time the skin has been read successfully the
+ * listener is given the new spritesheet; it is up to the listener to swap it in (on the EDT).
+ * Changes that leave the file unreadable, such as a half saved file, are ignored until the next change.
+ */
+public class SkinWatcher {
+
+	/**
+	 * How long to wait after a change before reading, so an editor has time to finish saving.
+	 */
+	private static final long SETTLE_DELAY = 200;
+
+	/**
+	 * Notified from the watcher thread each time the skin has been re-read.
+	 */
+	public interface Listener {
+		public void skinChanged(BufferedImage spriteSheet);
+	}
+
+	private final File file;
+	private final Listener listener;
+
+	private final WatchService watcher;
+
+	/**
+	 * Starts watching the given skin file.
+	 *
+	 * @param file the skin file
+	 * @param listener notified with the new spritesheet each time the file changes
+	 * @throws IOException if the file's directory can't be watched
+	 */
+	public SkinWatcher(File file, Listener listener) throws IOException {
+		this.file = file.getAbsoluteFile();
+		this.listener = listener;
+
+		watcher = FileSystems.getDefault().newWatchService();
+		this.file.getParentFile().toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+		Thread thread = new Thread("skin-watcher") {
+			@Override
+			public void run() {
+				watch();
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching the file. The listener will not be notified again.
+	 */
+	public void stop() {
+		try {
+			watcher.close();
+		} catch (IOException e) {
+			//nothing more we can do
+		}
+	}
+
+	private void watch() {
+		Path name = file.toPath().getFileName();
+
+		try {
+			while (true) {
+				WatchKey key = watcher.take();
+				boolean changed = false;
+
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (name.equals(event.context())) changed = true;
+				}
+
+				key.reset();
+
+				if (changed) {
+					Thread.sleep(SETTLE_DELAY);
+
+					//collapse the events the save made while we were waiting
+					WatchKey pending;
+					while ((pending = watcher.poll()) != null) {
+						pending.pollEvents();
+						pending.reset();
+					}
+
+					reload();
+				}
+			}
+		} catch (InterruptedException e) {
+			//stop watching
+		} catch (ClosedWatchServiceException e) {
+			//stopped
+		}
+	}
+
+	private void reload() {
+		try {
+			listener.skinChanged(ImageData.readSpriteSheet(file));
+		} catch (InvalidDimensionException e) {
+			//wait for a valid version
+		} catch (NotImageException e) {
+			//wait for a valid version
+		} catch (IOException e) {
+			//wait for a valid version
+		}
+	}
+}
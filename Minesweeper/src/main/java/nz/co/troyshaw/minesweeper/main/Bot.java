@@ -0,0 +1,49 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import nz.co.troyshaw.minesweeper.server.BotProtocol;
+import nz.co.troyshaw.minesweeper.server.SpectatorServer;
+
+/**
+ * Plays games for a bot over stdin and stdout, headless. See {@link BotProtocol} for the commands and answers. <p>
+ *
+ * Usage: <code>[--spectate port]</code> <p>
+ *
+ * With <code>--spectate</code> the games are also streamed to viewers by a {@link SpectatorServer}, on the channel <code>bot</code>.
+ */
+public class Bot {
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		System.setProperty("java.awt.headless", "true");
+
+		//the raw streams, since the protocol does its own buffering
+		BotProtocol protocol = new BotProtocol(new FileInputStream(FileDescriptor.in), new FileOutputStream(FileDescriptor.out));
+
+		SpectatorServer spectators = null;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--spectate")) spectators = new SpectatorServer(Integer.parseInt(args[++i]));
+			else throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+
+		if (spectators != null) {
+			spectators.start();
+			protocol.setChannel(spectators.getChannel("bot"));
+
+			//stdout is the bot's
+			System.err.println("Spectate on 127.0.0.1:" + spectators.getPort() + ", channel bot");
+		}
+
+		try {
+			protocol.run();
+		} catch (IOException e) {
+			//the bot has gone
+		}
+
+		if (spectators != null) spectators.stop();
+	}
+}
@@ -0,0 +1,64 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import nz.co.troyshaw.minesweeper.simulation.Coordinator;
+import nz.co.troyshaw.minesweeper.simulation.SimulationReport;
+
+/**
+ * Like {@link Simulate}, but plays the games in separate worker processes coordinated over loopback TCP. <p>
+ *
+ * Usage: <code>width height mines games [--workers n] [--threads n] [--seed n] [--port n] [--timeout seconds] [--jvm option]...</code> <p>
+ *
+ * Starts the given number of worker processes (default 2), each playing on the given number of threads 
+ * (default the processors divided between the workers). With <code>--workers 0</code> none are started, 
+ * and workers started by hand with {@link SimulationWorker} can connect to the port instead.
+ * A worker that takes longer than the timeout (default 5 minutes, 0 for none) to play a range is 
+ * given up on and its range handed to another.
+ */
+public class Distribute {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length < 4) {
+			System.err.println("Usage: Distribute width height mines games [--workers n] [--threads n] [--seed n] [--port n] [--timeout seconds] [--jvm option]...");
+			System.exit(1);
+		}
+
+		int width = Integer.parseInt(args[0]);
+		int height = Integer.parseInt(args[1]);
+		int mines = Integer.parseInt(args[2]);
+		int games = Integer.parseInt(args[3]);
+
+		int workers = 2;
+		int threads = -1;
+		long seed = System.nanoTime();
+		int port = 0;
+		int timeout = Coordinator.DEFAULT_TIMEOUT;
+		List<String> jvmOptions = new ArrayList<String>();
+
+		for (int i = 4; i < args.length; i++) {
+			if (args[i].equals("--workers")) workers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("--port")) port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--timeout")) timeout = Integer.parseInt(args[++i]) * 1000;
+			else if (args[i].equals("--jvm")) jvmOptions.add(args[++i]);
+			else throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+
+		if (threads < 1) threads = Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, workers));
+
+		Coordinator coordinator = new Coordinator(width, height, mines, games, seed, port);
+		coordinator.setTimeout(timeout);
+
+		System.out.println(games + " games of " + width + "x" + height + " with " + mines + " mines, on " + workers 
+				+ " workers of " + threads + " threads, seed " + seed + ", port " + coordinator.getPort());
+
+		coordinator.startWorkers(workers, threads, jvmOptions);
+
+		SimulationReport report = coordinator.run();
+		Simulate.print(report);
+	}
+}
@@ -0,0 +1,70 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.File;
+import java.io.IOException;
+
+import nz.co.troyshaw.minesweeper.simulation.Sweep;
+import nz.co.troyshaw.minesweeper.simulation.SweepCell;
+
+/**
+ * Sweeps the solver over a grid of board sizes and mine densities, and prints tables of the results. <p>
+ *
+ * Usage: <code>sizes densities games checkpoint [--threads n] [--seed n]</code>,
+ * for example <code>8x8,16x16,30x16 0.1,0.15,0.2 10000 sweep.csv</code>. <p>
+ *
+ * Finished cells are kept in the checkpoint file; running the same command again only plays the cells that
+ * are missing from it. The seed defaults to 0 so that reruns resume rather than start again.
+ */
+public class Experiment {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		//no windows, and no timer ticks for games nobody is watching
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length < 4) {
+			System.err.println("Usage: Experiment sizes densities games checkpoint [--threads n] [--seed n]");
+			System.err.println("   eg: Experiment 8x8,16x16,30x16 0.1,0.15,0.2 10000 sweep.csv");
+			System.exit(1);
+		}
+
+		String[] sizeArgs = args[0].split(",");
+		int[][] sizes = new int[sizeArgs.length][];
+
+		for (int i = 0; i < sizeArgs.length; i++) {
+			String[] wh = sizeArgs[i].split("x");
+			sizes[i] = new int[] {Integer.parseInt(wh[0]), Integer.parseInt(wh[1])};
+		}
+
+		String[] densityArgs = args[1].split(",");
+		double[] densities = new double[densityArgs.length];
+
+		for (int i = 0; i < densityArgs.length; i++) {
+			densities[i] = Double.parseDouble(densityArgs[i]);
+		}
+
+		int games = Integer.parseInt(args[2]);
+		File checkpoint = new File(args[3]);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = 0;
+
+		for (int i = 4; i < args.length; i++) {
+			if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+			else throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+
+		Sweep sweep = new Sweep(sizes, densities, games, threads, seed);
+
+		sweep.run(checkpoint, new Sweep.Progress() {
+			@Override
+			public void cellFinished(SweepCell cell, boolean resumed) {
+				System.out.printf("%dx%d %s: %.2f%% won%s%n", cell.getWidth(), cell.getHeight(), cell.getDensity(), 
+						cell.getWinRate() * 100, resumed ? " (from checkpoint)" : "");
+			}
+		});
+
+		System.out.println();
+		sweep.printTables(System.out);
+	}
+}
@@ -0,0 +1,36 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.IOException;
+
+import nz.co.troyshaw.minesweeper.server.HintServer;
+
+/**
+ * Runs a {@link HintServer} on localhost until killed. <p>
+ *
+ * Usage: <code>[--port n] [--threads n] [--queue n] [--deadline ms]</code> <p>
+ *
+ * By default listens on port 8765, works out hints on a thread per processor, queues up to 1024 requests,
+ * and gives each request a second.
+ */
+public class HintService {
+
+	public static void main(String[] args) throws IOException {
+		int port = 8765;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int queue = 1024;
+		long deadline = 1000;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--port")) port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--queue")) queue = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--deadline")) deadline = Long.parseLong(args[++i]);
+			else throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+
+		HintServer server = new HintServer(port, threads, queue, deadline);
+		server.start();
+
+		System.out.println("Serving hints on http://127.0.0.1:" + server.getPort() + "/hint with " + threads + " threads, stats at /stats");
+	}
+}
@@ -1,10 +1,21 @@
 package nz.co.troyshaw.minesweeper.main;
 
+import javax.swing.SwingUtilities;
+
 import nz.co.troyshaw.minesweeper.gui.GameFrame;
+import nz.co.troyshaw.minesweeper.images.AssetLoader;
 
 public class Main {
 
 	public static void main(String[] args) {
-		new GameFrame();
+		//decoding images doesn't need Swing, so get it going while Swing starts up
+		final AssetLoader assets = AssetLoader.start();
+		
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				new GameFrame(assets);
+			}
+		});
 	}
 }
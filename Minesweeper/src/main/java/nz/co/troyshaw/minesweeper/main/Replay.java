@@ -0,0 +1,44 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+import nz.co.troyshaw.minesweeper.game.MoveLogReader;
+
+/**
+ * Replays move logs at full speed and prints how each game ended. <p>
+ *
+ * Usage: <code>log...</code>
+ */
+public class Replay {
+
+	public static void main(String[] args) throws IOException {
+		//no windows, and no timer ticks for games nobody is watching
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length == 0) {
+			System.err.println("Usage: Replay log...");
+			System.exit(1);
+		}
+
+		for (String file : args) {
+			MoveLogReader reader = new MoveLogReader(new BufferedInputStream(new FileInputStream(file)));
+
+			try {
+				long start = System.nanoTime();
+				Minesweeper game = reader.replay(new MinesweeperAdapter());
+				long micros = (System.nanoTime() - start) / 1000;
+
+				String result = game.hasWon() ? "won" : game.hasDied() ? "lost" : "unfinished";
+
+				System.out.println(file + ": " + reader.getWidth() + "x" + reader.getHeight() + " with " + reader.getNumMines() 
+						+ " mines, seed " + reader.getSeed() + (reader.isQuestionMode() ? ", question marks" : "") + ", " + result + ", replayed in " + micros + " us");
+			} finally {
+				reader.close();
+			}
+		}
+	}
+}
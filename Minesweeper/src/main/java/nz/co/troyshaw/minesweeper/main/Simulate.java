@@ -0,0 +1,103 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import nz.co.troyshaw.minesweeper.simulation.GameResult;
+import nz.co.troyshaw.minesweeper.simulation.Simulation;
+import nz.co.troyshaw.minesweeper.simulation.SimulationReport;
+
+/**
+ * Plays many games with the solver and reports how many it won and how quickly it played them. <p>
+ *
+ * Usage: <code>width height mines games [--threads n] [--seed n] [--csv file] [--logs dir]</code> <p>
+ *
+ * Threads default to one per processor, and the seed to a random one (which is printed, so a run can be repeated).
+ * With <code>--csv</code> the result of every game is written to the file as it finishes. 
+ * With <code>--logs</code> the move log of every lost game is written to the directory, to be replayed with {@link Replay}.
+ */
+public class Simulate {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		//no windows, and no timer ticks for games nobody is watching
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length < 4) {
+			System.err.println("Usage: Simulate width height mines games [--threads n] [--seed n] [--csv file] [--logs dir]");
+			System.exit(1);
+		}
+
+		int width = Integer.parseInt(args[0]);
+		int height = Integer.parseInt(args[1]);
+		int mines = Integer.parseInt(args[2]);
+		int games = Integer.parseInt(args[3]);
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		long seed = System.nanoTime();
+		String csv = null;
+		File logs = null;
+
+		for (int i = 4; i < args.length; i++) {
+			if (args[i].equals("--threads")) threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("--csv")) csv = args[++i];
+			else if (args[i].equals("--logs")) logs = new File(args[++i]);
+			else throw new IllegalArgumentException("Unknown option: " + args[i]);
+		}
+
+		System.out.println(games + " games of " + width + "x" + height + " with " + mines + " mines, on " + threads + " threads, seed " + seed);
+
+		Simulation simulation = new Simulation(width, height, mines, games, threads, seed);
+		SimulationReport report;
+
+		if (logs != null) {
+			logs.mkdirs();
+			simulation.setLogDirectory(logs);
+		}
+
+		if (csv == null) {
+			report = simulation.run(null);
+		} else {
+			final Writer out = new BufferedWriter(new FileWriter(csv));
+			final StringBuilder sb = new StringBuilder();
+
+			try {
+				out.write(GameResult.CSV_HEADER);
+				out.write('\n');
+
+				report = simulation.run(new Simulation.ResultHandler() {
+					@Override
+					public void gamesFinished(List<GameResult> results) throws IOException {
+						sb.setLength(0);
+						for (GameResult r : results) r.appendCsv(sb);
+						out.append(sb);
+					}
+				});
+			} finally {
+				out.close();
+			}
+		}
+
+		print(report);
+	}
+
+	/**
+	 * Prints the win rate, speed and game time percentiles of a report.
+	 */
+	static void print(SimulationReport report) {
+		System.out.printf("won %d of %d (%.2f%%)%n", report.getWins(), report.getGames(), report.getWinRate() * 100);
+		System.out.printf("%.1f games/s, %.2f s total%n", report.getGamesPerSecond(), report.getElapsedNanos() / 1e9);
+		System.out.printf("game time p50 %s, p90 %s, p99 %s, max %s%n", 
+				micros(report.getPercentile(50)), micros(report.getPercentile(90)), 
+				micros(report.getPercentile(99)), micros(report.getPercentile(100)));
+	}
+
+	private static String micros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos) + " us";
+	}
+}
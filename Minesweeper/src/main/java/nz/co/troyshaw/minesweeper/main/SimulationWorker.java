@@ -0,0 +1,27 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.IOException;
+
+import nz.co.troyshaw.minesweeper.simulation.Worker;
+
+/**
+ * Plays games for a simulation coordinator (see {@link Distribute}). <p>
+ *
+ * Usage: <code>host port [threads]</code>. Threads default to one per processor.
+ */
+public class SimulationWorker {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		//no windows, and no timer ticks for games nobody is watching
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length < 2) {
+			System.err.println("Usage: SimulationWorker host port [threads]");
+			System.exit(1);
+		}
+
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		new Worker(args[0], Integer.parseInt(args[1]), threads).run();
+	}
+}
@@ -0,0 +1,105 @@
+package nz.co.troyshaw.minesweeper.main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.SwingUtilities;
+
+import nz.co.troyshaw.minesweeper.gui.GameFrame;
+import nz.co.troyshaw.minesweeper.images.AssetLoader;
+
+/**
+ * Measures how long the game takes to start, up to the board first being painted. <p>
+ *
+ * With no arguments, starts the game the same way {@link Main} does, prints the time to first paint and exits.
+ * This is also the training run used to build the AppCDS archive (see the <code>appcds</code> profile). <p>
+ *
+ * With arguments <code>runs [jvm options...]</code>, starts that many fresh JVMs with the given options
+ * (such as <code>-XX:SharedArchiveFile=...</code>), and prints the times each took along with the median.
+ */
+public class StartupBenchmark {
+
+	private static final String RESULT_PREFIX = "first paint: ";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			measure();
+		} else {
+			compare(Integer.parseInt(args[0]), Arrays.asList(args).subList(1, args.length));
+		}
+	}
+
+	/**
+	 * Starts the game, then prints the time since the JVM started once the board is first painted.
+	 */
+	private static void measure() {
+		final long mainStart = System.nanoTime();
+		final AssetLoader assets = AssetLoader.start();
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				GameFrame frame = new GameFrame(assets);
+
+				frame.getGamePanel().setFirstPaintListener(new Runnable() {
+					@Override
+					public void run() {
+						long sinceMain = (System.nanoTime() - mainStart) / 1000000;
+						long sinceJvm = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+
+						System.out.println(RESULT_PREFIX + sinceJvm + " ms since JVM start, " + sinceMain + " ms since main");
+						System.exit(0);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Measures startup in the given number of new JVMs, each started with the given options.
+	 */
+	private static void compare(int runs, List<String> jvmOptions) throws IOException, InterruptedException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		command.addAll(jvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(StartupBenchmark.class.getName());
+
+		List<Long> times = new ArrayList<Long>();
+
+		for (int i = 0; i < runs; i++) {
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith(RESULT_PREFIX)) continue;
+
+				String millis = line.substring(RESULT_PREFIX.length(), line.indexOf(' ', RESULT_PREFIX.length()));
+				times.add(Long.parseLong(millis));
+
+				System.out.println("run " + (i + 1) + ": " + line);
+			}
+
+			process.waitFor();
+		}
+
+		if (times.isEmpty()) {
+			System.out.println("No runs painted, is there a display?");
+			return;
+		}
+
+		Collections.sort(times);
+		System.out.println("median " + times.get(times.size() / 2) + " ms, min " + times.get(0) + " ms, max " + times.get(times.size() - 1) + " ms");
+	}
+}
@@ -1,8 +1,647 @@
 package nz.co.troyshaw.minesweeper.misc;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
 /**
- * Class handles
+ * Keeps the top 10 times for every board size and number of mines that has been won, on disk. <p>
+ *
+ * New scores are appended to a log of records, each with its own length and CRC32, so a record torn by a crash
+ * is recognised and dropped. Adding a score only updates the tables; a background thread appends the record
+ * and syncs the log shortly after, so the caller never waits for the disk and a burst of scores costs a single
+ * sync. In memory each table is a heap with the slowest time at its head, so a new score only has to beat the head. <p>
+ *
+ * Once the log grows big enough it is compacted in the background: writing moves on to a new log, and the
+ * current tables are written to a snapshot which replaces the old one. The snapshot records which log comes
+ * after it, so opening the store only reads the snapshot and the logs written since, however long it has been used.
  */
 public class Highscores {
 
+	/**
+	 * The number of scores kept for each board.
+	 */
+	public static final int TOP = 10;
+
+	/**
+	 * Marks the start of a snapshot ("MSHS").
+	 */
+	private static final int MAGIC = 0x4D534853;
+	private static final int VERSION = 1;
+
+	/**
+	 * How long after a score is added the log is synced, in milliseconds.
+	 */
+	private static final long SYNC_DELAY = 100;
+
+	/**
+	 * How big the log can get before it is compacted, in bytes.
+	 */
+	private static final long COMPACT_SIZE = 64 * 1024;
+
+	/**
+	 * Bigger records than this are taken to be damage.
+	 */
+	private static final int MAX_RECORD = 4096;
+
+	private static final File DEFAULT_DIRECTORY = new File(System.getProperty("user.home"), ".minesolve" + File.separator + "highscores");
+
+	private static Highscores defaultScores;
+
+	/**
+	 * Told when the background thread couldn't write, sync or compact the log.
+	 */
+	public interface ErrorListener {
+		/**
+		 * Called on the background thread.
+		 *
+		 * @param message what was being done
+		 * @param e the failure
+		 */
+		void highscoresFailed(String message, IOException e);
+	}
+
+	/**
+	 * A board size and number of mines, which each have their own table.
+	 */
+	public static class Config {
+		private final int width, height, mines;
+
+		public Config(int width, int height, int mines) {
+			this.width = width;
+			this.height = height;
+			this.mines = mines;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int getMines() {
+			return mines;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Config)) return false;
+
+			Config c = (Config) o;
+			return width == c.width && height == c.height && mines == c.mines;
+		}
+
+		@Override
+		public int hashCode() {
+			return (width * 31 + height) * 31 + mines;
+		}
+
+		@Override
+		public String toString() {
+			return width + " x " + height + ", " + mines + " mines";
+		}
+	}
+
+	/**
+	 * A single winning time.
+	 */
+	public static class Score {
+		private final String name;
+		private final long millis, date;
+
+		public Score(String name, long millis, long date) {
+			this.name = name;
+			this.millis = millis;
+			this.date = date;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return the time the game took, in milliseconds
+		 */
+		public long getMillis() {
+			return millis;
+		}
+
+		/**
+		 * @return when the game was won, in milliseconds since the epoch
+		 */
+		public long getDate() {
+			return date;
+		}
+	}
+
+	/**
+	 * Orders scores slowest first, and of equal times the latest first, so the head of a heap is the one to drop.
+	 */
+	private static final Comparator<Score> SLOWEST_FIRST = new Comparator<Score>() {
+		@Override
+		public int compare(Score a, Score b) {
+			if (a.millis != b.millis) return a.millis > b.millis ? -1 : 1;
+			return a.date > b.date ? -1 : a.date < b.date ? 1 : 0;
+		}
+	};
+
+	private final File directory;
+
+	private final Map<Config, PriorityQueue<Score>> tables = new HashMap<Config, PriorityQueue<Score>>();
+
+	/**
+	 * The log being appended to, and its generation. Each compaction starts the next generation.
+	 */
+	private FileChannel log;
+	private long generation;
+
+	/**
+	 * Records added but not yet appended to the log, oldest first.
+	 */
+	private final List<ByteBuffer> unwritten = new ArrayList<ByteBuffer>();
+
+	private boolean writePending, syncPending, compacting, closed;
+
+	private volatile ErrorListener errorListener;
+
+	/**
+	 * Appends, syncs and compacts the log.
+	 */
+	private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "highscores");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Opens the store in the given directory, creating it if needed.
+	 *
+	 * @param directory the directory holding the snapshot and logs
+	 * @throws IOException if the store can't be read or the directory can't be written
+	 */
+	public Highscores(File directory) throws IOException {
+		this.directory = directory;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+		load();
+
+		log = FileChannel.open(logFile(generation).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Returns the store in the users home directory, opening it the first time.
+	 *
+	 * @return the default store
+	 * @throws IOException if the store can't be opened
+	 */
+	public static synchronized Highscores getDefault() throws IOException {
+		if (defaultScores == null) defaultScores = new Highscores(DEFAULT_DIRECTORY);
+
+		return defaultScores;
+	}
+
+	/**
+	 * Sets who is told about failures on the background thread. Without one they are written to standard error.
+	 *
+	 * @param listener the listener, or null
+	 */
+	public void setErrorListener(ErrorListener listener) {
+		errorListener = listener;
+	}
+
+	/**
+	 * Returns true if the given time would make the table for its board.
+	 *
+	 * @param config the board
+	 * @param millis the time in milliseconds
+	 * @return true if it is a high score
+	 */
+	public synchronized boolean isHighscore(Config config, long millis) {
+		PriorityQueue<Score> table = tables.get(config);
+
+		return table == null || table.size() < TOP || millis < table.peek().millis;
+	}
+
+	/**
+	 * Adds a time to the table for its board, if it is fast enough.
+	 * The score is written to disk by the background thread, so this never waits for the disk;
+	 * failures there go to the {@link ErrorListener}.
+	 *
+	 * @param config the board
+	 * @param name the name of the player
+	 * @param millis the time in milliseconds
+	 * @return true if the time made the table
+	 * @throws IOException if the store has been closed
+	 */
+	public synchronized boolean add(Config config, String name, long millis) throws IOException {
+		if (closed) throw new IOException("Highscores closed");
+		if (!isHighscore(config, millis)) return false;
+
+		Score score = new Score(name, millis, System.currentTimeMillis());
+
+		unwritten.add(encode(config, score));
+		insert(config, score);
+
+		if (!writePending) {
+			writePending = true;
+			background.execute(new Runnable() {
+				@Override
+				public void run() {
+					write();
+				}
+			});
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the table for the given board, fastest first.
+	 *
+	 * @param config the board
+	 * @return the scores, which may be empty
+	 */
+	public synchronized List<Score> getScores(Config config) {
+		PriorityQueue<Score> table = tables.get(config);
+		List<Score> scores = table == null ? new ArrayList<Score>() : new ArrayList<Score>(table);
+
+		Collections.sort(scores, Collections.reverseOrder(SLOWEST_FIRST));
+		return scores;
+	}
+
+	/**
+	 * Returns every board that has a table, smallest first.
+	 *
+	 * @return the boards
+	 */
+	public synchronized List<Config> getConfigs() {
+		List<Config> configs = new ArrayList<Config>(tables.keySet());
+
+		Collections.sort(configs, new Comparator<Config>() {
+			@Override
+			public int compare(Config a, Config b) {
+				long areaA = (long) a.width * a.height, areaB = (long) b.width * b.height;
+
+				if (areaA != areaB) return areaA < areaB ? -1 : 1;
+				if (a.width != b.width) return a.width - b.width;
+				return a.mines - b.mines;
+			}
+		});
+		return configs;
+	}
+
+	/**
+	 * Syncs the log and closes the store. Waits for any compaction to finish.
+	 *
+	 * @throws IOException if the log couldn't be synced
+	 */
+	public void close() throws IOException {
+		background.shutdown();
+
+		try {
+			background.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+
+			try {
+				//only left if the background thread didn't finish in time
+				writeUnwritten();
+				log.force(true);
+			} finally {
+				log.close();
+			}
+		}
+	}
+
+	/**
+	 * Appends the unwritten records, then schedules a sync and, if the log is big enough, a compaction.
+	 */
+	private void write() {
+		try {
+			synchronized (this) {
+				writePending = false;
+				if (closed) return;
+
+				writeUnwritten();
+
+				if (!syncPending) {
+					syncPending = true;
+					background.schedule(new Runnable() {
+						@Override
+						public void run() {
+							sync();
+						}
+					}, SYNC_DELAY, TimeUnit.MILLISECONDS);
+				}
+
+				if (!compacting && log.size() > COMPACT_SIZE) {
+					compacting = true;
+					background.execute(new Runnable() {
+						@Override
+						public void run() {
+							compact();
+						}
+					});
+				}
+			}
+		} catch (IOException e) {
+			failed("Could not save the highscores", e);
+		}
+	}
+
+	/**
+	 * Appends the unwritten records to the current log. Only called holding the lock, so they go in before
+	 * any compaction moves on to a new log.
+	 */
+	private void writeUnwritten() throws IOException {
+		while (!unwritten.isEmpty()) {
+			ByteBuffer record = unwritten.get(0);
+			while (record.hasRemaining()) log.write(record);
+			unwritten.remove(0);
+		}
+	}
+
+	private void failed(String message, IOException e) {
+		ErrorListener listener = errorListener;
+
+		if (listener != null) {
+			listener.highscoresFailed(message, e);
+		} else {
+			System.err.println(message + ": " + e);
+		}
+	}
+
+	private void sync() {
+		FileChannel channel;
+
+		synchronized (this) {
+			syncPending = false;
+			channel = log;
+		}
+
+		try {
+			//outside the lock, so adding scores never waits for the disk
+			channel.force(true);
+		} catch (ClosedChannelException e) {
+			//compaction closed it, after syncing it
+		} catch (IOException e) {
+			failed("Could not sync the highscores", e);
+		}
+	}
+
+	/**
+	 * Moves writing on to a new log, then writes the tables as they were at that moment to a new snapshot,
+	 * and deletes the old log. A crash at any point leaves either the old snapshot and logs, or the new ones.
+	 */
+	private void compact() {
+		FileChannel old;
+		long oldGeneration;
+		ByteBuffer snapshot;
+
+		try {
+			synchronized (this) {
+				if (closed) return;
+
+				//the snapshot will hold these, but until it is written only the old log does
+				writeUnwritten();
+
+				old = log;
+				oldGeneration = generation;
+
+				log = FileChannel.open(logFile(generation + 1).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				generation++;
+
+				snapshot = encodeSnapshot(generation);
+			}
+
+			old.force(true);
+			old.close();
+
+			Path temp = Files.createTempFile(directory.toPath(), "snapshot", ".tmp");
+
+			try {
+				FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+
+				try {
+					while (snapshot.hasRemaining()) channel.write(snapshot);
+					channel.force(true);
+				} finally {
+					channel.close();
+				}
+
+				Files.move(temp, snapshotFile().toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+
+			deleteLogsBefore(oldGeneration + 1);
+		} catch (IOException e) {
+			//the logs are all still there, so nothing is lost, but the log will keep growing
+			failed("Could not compact the highscores", e);
+		} finally {
+			synchronized (this) {
+				compacting = false;
+			}
+		}
+	}
+
+	/**
+	 * Reads the snapshot, then every log written since it, in order.
+	 */
+	private void load() throws IOException {
+		generation = 0;
+
+		File snapshotFile = snapshotFile();
+
+		if (snapshotFile.isFile()) {
+			ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile.toPath()));
+
+			if (snapshot.remaining() < 16 || snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+				throw new IOException("Highscore snapshot is damaged");
+			}
+
+			generation = snapshot.getLong();
+			readRecords(snapshot);
+		}
+
+		deleteLogsBefore(generation);
+
+		for (long g : logGenerations()) {
+			Path file = logFile(g).toPath();
+			ByteBuffer records = ByteBuffer.wrap(Files.readAllBytes(file));
+
+			int valid = readRecords(records);
+
+			if (valid < records.capacity()) {
+				//a record torn by a crash, cut it off so new records follow the last good one
+				FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+				try {
+					channel.truncate(valid);
+				} finally {
+					channel.close();
+				}
+			}
+
+			generation = g;
+		}
+	}
+
+	/**
+	 * Reads records until the end of the buffer or the first damaged record.
+	 *
+	 * @return the position after the last good record
+	 */
+	private int readRecords(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+
+		while (buffer.remaining() >= 8) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			int checksum = buffer.getInt();
+
+			if (length < 28 || length > MAX_RECORD || length > buffer.remaining()) return start;
+
+			crc.reset();
+			crc.update(buffer.array(), buffer.position(), length);
+			if ((int) crc.getValue() != checksum) return start;
+
+			Config config = new Config(buffer.getInt(), buffer.getInt(), buffer.getInt());
+			long millis = buffer.getLong();
+			long date = buffer.getLong();
+
+			byte[] name = new byte[length - 28];
+			buffer.get(name);
+
+			insert(config, new Score(new String(name, StandardCharsets.UTF_8), millis, date));
+		}
+
+		return buffer.position();
+	}
+
+	private void insert(Config config, Score score) {
+		PriorityQueue<Score> table = tables.get(config);
+
+		if (table == null) {
+			table = new PriorityQueue<Score>(TOP + 1, SLOWEST_FIRST);
+			tables.put(config, table);
+		}
+
+		table.add(score);
+		if (table.size() > TOP) table.poll();
+	}
+
+	/**
+	 * Returns a record: length, CRC32, then the board, time, date and name.
+	 */
+	private static ByteBuffer encode(Config config, Score score) {
+		byte[] name = score.name.getBytes(StandardCharsets.UTF_8);
+
+		//never bigger than a record is allowed to be
+		int nameLength = Math.min(name.length, MAX_RECORD - 28);
+
+		ByteBuffer record = ByteBuffer.allocate(8 + 28 + nameLength);
+		record.putInt(28 + nameLength);
+		record.putInt(0);
+		record.putInt(config.width).putInt(config.height).putInt(config.mines);
+		record.putLong(score.millis).putLong(score.date);
+		record.put(name, 0, nameLength);
+
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), 8, 28 + nameLength);
+		record.putInt(4, (int) crc.getValue());
+
+		record.flip();
+		return record;
+	}
+
+	/**
+	 * Returns a snapshot of every table, followed by the given log generation.
+	 */
+	private ByteBuffer encodeSnapshot(long nextGeneration) {
+		List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+		int size = 16;
+
+		for (Map.Entry<Config, PriorityQueue<Score>> e : tables.entrySet()) {
+			for (Score score : e.getValue()) {
+				ByteBuffer record = encode(e.getKey(), score);
+				size += record.remaining();
+				records.add(record);
+			}
+		}
+
+		ByteBuffer snapshot = ByteBuffer.allocate(size);
+		snapshot.putInt(MAGIC).putInt(VERSION).putLong(nextGeneration);
+
+		for (ByteBuffer record : records) snapshot.put(record);
+
+		snapshot.flip();
+		return snapshot;
+	}
+
+	private File snapshotFile() {
+		return new File(directory, "snapshot.dat");
+	}
+
+	private File logFile(long generation) {
+		return new File(directory, "log-" + generation + ".dat");
+	}
+
+	/**
+	 * Returns the generations of the log files in the directory, oldest first.
+	 */
+	private List<Long> logGenerations() {
+		List<Long> generations = new ArrayList<Long>();
+		String[] names = directory.list();
+
+		if (names == null) return generations;
+
+		for (String name : names) {
+			if (!name.startsWith("log-") || !name.endsWith(".dat")) continue;
+
+			try {
+				generations.add(Long.parseLong(name.substring(4, name.length() - 4)));
+			} catch (NumberFormatException e) {
+				//not one of ours
+			}
+		}
+
+		Collections.sort(generations);
+		return generations;
+	}
+
+	private void deleteLogsBefore(long generation) throws IOException {
+		for (long g : logGenerations()) {
+			if (g < generation) Files.deleteIfExists(logFile(g).toPath());
+		}
+	}
 }
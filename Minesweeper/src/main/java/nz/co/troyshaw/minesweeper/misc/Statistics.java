@@ -0,0 +1,490 @@
+package nz.co.troyshaw.minesweeper.misc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import nz.co.troyshaw.minesweeper.misc.Highscores.Config;
+
+/**
+ * Records every finished game, and answers questions about them all, such as the win rate each month. <p>
+ *
+ * Games are stored a column at a time: each field has its own file of fixed width values, so the nth game is
+ * the nth value of every file. A query maps just the columns it needs and reads them straight through, which
+ * takes tens of milliseconds for millions of games. <p>
+ *
+ * Each game is appended to every column in turn, so a crash can leave some columns a game longer than others.
+ * When the store is opened every column is cut back to the shortest, dropping any game that wasn't fully written.
+ */
+public class Statistics {
+
+	/**
+	 * Marks the start of every column file ("MSST").
+	 */
+	private static final int MAGIC = 0x4D535354;
+	private static final int VERSION = 1;
+
+	/**
+	 * The magic and version before each column's values.
+	 */
+	private static final int HEADER = 8;
+
+	/**
+	 * How many games are buffered before they are written out, if not flushed first.
+	 */
+	private static final int BATCH = 4096;
+
+	private static final File DEFAULT_DIRECTORY = new File(System.getProperty("user.home"), ".minesolve" + File.separator + "stats");
+
+	private static Statistics defaultStatistics;
+
+	/**
+	 * The columns, each the given number of bytes wide.
+	 */
+	private enum Column {
+		DATE(8), WIDTH(4), HEIGHT(4), MINES(4), SEED(8), WON(4), NANOS(8), CLICKS(4), BBBV(4), ASSISTS(4);
+
+		private final int size;
+
+		private Column(int size) {
+			this.size = size;
+		}
+
+		private String fileName() {
+			return name().toLowerCase() + ".col";
+		}
+	}
+
+	private static final Column[] COLUMNS = Column.values();
+
+	/**
+	 * The totals for every game played on one board.
+	 */
+	public static class ConfigStats {
+		private final Config config;
+		private int games, wins, assisted;
+		private long bestNanos = Long.MAX_VALUE, winNanos, winBBBV, clicks;
+
+		private ConfigStats(Config config) {
+			this.config = config;
+		}
+
+		public Config getConfig() {
+			return config;
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		public int getWins() {
+			return wins;
+		}
+
+		/**
+		 * @return the number of games the solver helped with
+		 */
+		public int getAssisted() {
+			return assisted;
+		}
+
+		/**
+		 * @return the fastest win the solver didn't help with, in nanoseconds, or -1 if there isn't one
+		 */
+		public long getBestNanos() {
+			return bestNanos == Long.MAX_VALUE ? -1 : bestNanos;
+		}
+
+		/**
+		 * @return the average time of a win, in nanoseconds, or -1 if there were none
+		 */
+		public long getAverageNanos() {
+			return wins == 0 ? -1 : winNanos / wins;
+		}
+
+		/**
+		 * @return the 3BV cleared per second over every win, or 0 if there were none
+		 */
+		public double getBBBVPerSecond() {
+			return winNanos == 0 ? 0 : winBBBV * 1e9 / winNanos;
+		}
+
+		/**
+		 * @return the average number of clicks in a game
+		 */
+		public double getAverageClicks() {
+			return games == 0 ? 0 : (double) clicks / games;
+		}
+	}
+
+	/**
+	 * The number of games played and won in one month.
+	 */
+	public static class MonthStats {
+		private final YearMonth month;
+		private int games, wins;
+
+		private MonthStats(YearMonth month) {
+			this.month = month;
+		}
+
+		public YearMonth getMonth() {
+			return month;
+		}
+
+		public int getGames() {
+			return games;
+		}
+
+		public int getWins() {
+			return wins;
+		}
+
+		/**
+		 * @return the fraction of games won, from 0 to 1
+		 */
+		public double getWinRate() {
+			return games == 0 ? 0 : (double) wins / games;
+		}
+	}
+
+	private final FileChannel[] files = new FileChannel[COLUMNS.length];
+
+	/**
+	 * Games added but not yet written, one buffer per column.
+	 */
+	private final ByteBuffer[] pending = new ByteBuffer[COLUMNS.length];
+
+	/**
+	 * The number of games written to the files.
+	 */
+	private int written;
+
+	/**
+	 * The columns mapped since games were last written, null for those no query has needed yet, 
+	 * and how many games they hold.
+	 */
+	private final ByteBuffer[] mapped = new ByteBuffer[COLUMNS.length];
+	private int mappedGames;
+
+	private boolean closed;
+
+	/**
+	 * Opens the store in the given directory, creating it if needed.
+	 *
+	 * @param directory the directory holding the column files
+	 * @throws IOException if the columns can't be read or the directory can't be written
+	 */
+	public Statistics(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+		long games = Long.MAX_VALUE;
+
+		try {
+			for (Column c : COLUMNS) {
+				FileChannel file = FileChannel.open(new File(directory, c.fileName()).toPath(),
+						StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				files[c.ordinal()] = file;
+
+				if (file.size() < HEADER) {
+					//new, or torn before its header was written
+					ByteBuffer header = ByteBuffer.allocate(HEADER);
+					header.putInt(MAGIC).putInt(VERSION).flip();
+
+					file.truncate(0);
+					while (header.hasRemaining()) file.write(header, header.position());
+				} else {
+					ByteBuffer header = ByteBuffer.allocate(HEADER);
+					while (header.hasRemaining() && file.read(header, header.position()) >= 0);
+					header.flip();
+
+					if (header.getInt() != MAGIC || header.getInt() != VERSION) throw new IOException(c.fileName() + " is not a statistics column");
+				}
+
+				games = Math.min(games, (file.size() - HEADER) / c.size);
+
+				pending[c.ordinal()] = ByteBuffer.allocate(BATCH * c.size).order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} catch (IOException e) {
+			closeFiles();
+			throw e;
+		}
+
+		if (games > Integer.MAX_VALUE) throw new IOException("Too many games in " + directory);
+		written = (int) games;
+
+		//drop any game only some columns got
+		for (Column c : COLUMNS) {
+			FileChannel file = files[c.ordinal()];
+			file.truncate(HEADER + (long) written * c.size);
+			file.position(file.size());
+		}
+	}
+
+	/**
+	 * Returns the store in the users home directory, opening it the first time.
+	 *
+	 * @return the default store
+	 * @throws IOException if the store can't be opened
+	 */
+	public static synchronized Statistics getDefault() throws IOException {
+		if (defaultStatistics == null) defaultStatistics = new Statistics(DEFAULT_DIRECTORY);
+
+		return defaultStatistics;
+	}
+
+	/**
+	 * Adds a finished game. Games are buffered, and written when enough have built up or on {@link #flush()}.
+	 *
+	 * @param date when the game finished, in milliseconds since the epoch
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param mines the number of mines
+	 * @param seed the seed the mines were placed with
+	 * @param won true if the game was won, false if lost
+	 * @param nanos how long the game took, in nanoseconds
+	 * @param clicks the number of clicks made
+	 * @param bbbv the 3BV of the board
+	 * @param assists the number of times the solver was used
+	 * @throws IOException if a full batch couldn't be written
+	 */
+	public synchronized void add(long date, int width, int height, int mines, long seed, boolean won, long nanos, int clicks, int bbbv, int assists) throws IOException {
+		if (closed) throw new IOException("Statistics closed");
+
+		pending[Column.DATE.ordinal()].putLong(date);
+		pending[Column.WIDTH.ordinal()].putInt(width);
+		pending[Column.HEIGHT.ordinal()].putInt(height);
+		pending[Column.MINES.ordinal()].putInt(mines);
+		pending[Column.SEED.ordinal()].putLong(seed);
+		pending[Column.WON.ordinal()].putInt(won ? 1 : 0);
+		pending[Column.NANOS.ordinal()].putLong(nanos);
+		pending[Column.CLICKS.ordinal()].putInt(clicks);
+		pending[Column.BBBV.ordinal()].putInt(bbbv);
+		pending[Column.ASSISTS.ordinal()].putInt(assists);
+
+		if (!pending[0].hasRemaining()) flush();
+	}
+
+	/**
+	 * Writes any buffered games to the column files.
+	 *
+	 * @throws IOException if they couldn't be written
+	 */
+	public synchronized void flush() throws IOException {
+		int games = pending[0].position() / COLUMNS[0].size;
+		if (games == 0) return;
+
+		for (int i = 0; i < COLUMNS.length; i++) {
+			ByteBuffer buffer = pending[i];
+			buffer.flip();
+			while (buffer.hasRemaining()) files[i].write(buffer);
+			buffer.clear();
+		}
+
+		written += games;
+	}
+
+	/**
+	 * Returns the number of games recorded, including any not yet written.
+	 *
+	 * @return the number of games
+	 */
+	public synchronized int size() {
+		return written + pending[0].position() / COLUMNS[0].size;
+	}
+
+	/**
+	 * Returns the totals for every board played, smallest board first.
+	 *
+	 * @return the totals
+	 * @throws IOException if the columns couldn't be read
+	 */
+	public synchronized List<ConfigStats> getConfigStats() throws IOException {
+		map();
+
+		IntBuffer widths = ints(Column.WIDTH), heights = ints(Column.HEIGHT), mines = ints(Column.MINES);
+		IntBuffer won = ints(Column.WON), clicks = ints(Column.CLICKS), bbbv = ints(Column.BBBV), assists = ints(Column.ASSISTS);
+		LongBuffer nanos = longs(Column.NANOS);
+
+		Map<Config, ConfigStats> stats = new HashMap<Config, ConfigStats>();
+		ConfigStats last = null;
+
+		for (int i = 0; i < mappedGames; i++) {
+			int w = widths.get(i), h = heights.get(i), m = mines.get(i);
+
+			//games mostly come in runs on the same board, so only look it up when it changes
+			if (last == null || last.config.getWidth() != w || last.config.getHeight() != h || last.config.getMines() != m) {
+				Config config = new Config(w, h, m);
+				last = stats.get(config);
+
+				if (last == null) {
+					last = new ConfigStats(config);
+					stats.put(config, last);
+				}
+			}
+
+			last.games++;
+			last.clicks += clicks.get(i);
+
+			boolean assisted = assists.get(i) != 0;
+			if (assisted) last.assisted++;
+
+			if (won.get(i) != 0) {
+				long time = nanos.get(i);
+
+				last.wins++;
+				last.winNanos += time;
+				last.winBBBV += bbbv.get(i);
+
+				if (!assisted && time < last.bestNanos) last.bestNanos = time;
+			}
+		}
+
+		List<ConfigStats> result = new ArrayList<ConfigStats>(stats.values());
+
+		Collections.sort(result, new Comparator<ConfigStats>() {
+			@Override
+			public int compare(ConfigStats a, ConfigStats b) {
+				Config x = a.config, y = b.config;
+				long areaX = (long) x.getWidth() * x.getHeight(), areaY = (long) y.getWidth() * y.getHeight();
+
+				if (areaX != areaY) return areaX < areaY ? -1 : 1;
+				if (x.getWidth() != y.getWidth()) return x.getWidth() - y.getWidth();
+				return x.getMines() - y.getMines();
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Returns the games played and won in each month games were played, in the local time zone, earliest first.
+	 *
+	 * @return the totals per month
+	 * @throws IOException if the columns couldn't be read
+	 */
+	public synchronized List<MonthStats> getMonthStats() throws IOException {
+		map();
+
+		LongBuffer dates = longs(Column.DATE);
+		IntBuffer won = ints(Column.WON);
+
+		ZoneId zone = ZoneId.systemDefault();
+		Map<YearMonth, MonthStats> stats = new HashMap<YearMonth, MonthStats>();
+
+		//the month of the last game, which the next is almost always in too
+		MonthStats last = null;
+		long start = 0, end = 0;
+
+		for (int i = 0; i < mappedGames; i++) {
+			long date = dates.get(i);
+
+			if (last == null || date < start || date >= end) {
+				YearMonth month = YearMonth.from(Instant.ofEpochMilli(date).atZone(zone));
+
+				start = month.atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+				end = month.plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+				last = stats.get(month);
+
+				if (last == null) {
+					last = new MonthStats(month);
+					stats.put(month, last);
+				}
+			}
+
+			last.games++;
+			if (won.get(i) != 0) last.wins++;
+		}
+
+		List<MonthStats> result = new ArrayList<MonthStats>(stats.values());
+
+		Collections.sort(result, new Comparator<MonthStats>() {
+			@Override
+			public int compare(MonthStats a, MonthStats b) {
+				return a.month.compareTo(b.month);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Writes the buffered games and closes the store.
+	 *
+	 * @throws IOException if the buffered games couldn't be written
+	 */
+	public synchronized void close() throws IOException {
+		if (closed) return;
+
+		try {
+			flush();
+		} finally {
+			closed = true;
+			Arrays.fill(mapped, null);
+			closeFiles();
+		}
+	}
+
+	/**
+	 * Flushes, then forgets the mapped columns if games have been written since they were mapped, 
+	 * so each is mapped again the next time a query needs it.
+	 */
+	private void map() throws IOException {
+		if (closed) throw new IOException("Statistics closed");
+
+		flush();
+		if (mappedGames == written) return;
+
+		Arrays.fill(mapped, null);
+		mappedGames = written;
+	}
+
+	/**
+	 * Returns the column, mapping it if it hasn't been since games were last written.
+	 */
+	private ByteBuffer column(Column c) throws IOException {
+		ByteBuffer column = mapped[c.ordinal()];
+		if (column != null) return column;
+
+		long length = (long) mappedGames * c.size;
+
+		//an empty store has nothing past the header to map
+		column = length == 0 ? ByteBuffer.allocate(0) : files[c.ordinal()].map(FileChannel.MapMode.READ_ONLY, HEADER, length);
+		column.order(ByteOrder.LITTLE_ENDIAN);
+
+		mapped[c.ordinal()] = column;
+		return column;
+	}
+
+	private IntBuffer ints(Column c) throws IOException {
+		return column(c).asIntBuffer();
+	}
+
+	private LongBuffer longs(Column c) throws IOException {
+		return column(c).asLongBuffer();
+	}
+
+	private void closeFiles() {
+		for (FileChannel file : files) {
+			try {
+				if (file != null) file.close();
+			} catch (IOException e) {
+				//nothing more can be done with it
+			}
+		}
+	}
+}
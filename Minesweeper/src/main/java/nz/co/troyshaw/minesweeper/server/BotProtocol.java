@@ -0,0 +1,330 @@
+package nz.co.troyshaw.minesweeper.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+
+/**
+ * Plays games for a bot over a pair of streams, such as a process's stdin and stdout, in a line based text protocol. <p>
+ *
+ * Commands are a letter and numbers separated by spaces, one per line:
+ * <ul>
+ * <li><code>N width height mines [seed]</code> starts a new game, replacing any current one</li>
+ * <li><code>R x y</code> reveals a square</li>
+ * <li><code>C x y</code> reveals around a satisfied number (chords)</li>
+ * <li><code>F x y</code> toggles a flag, as a right click does</li>
+ * <li><code>U</code> undoes the last move</li>
+ * </ul>
+ *
+ * Each command is answered with what changed because of it, one event per line, then a line of <code>.</code>.
+ * Events are the game's own listener events: <code>n width height mines seed</code> for a new game,
+ * <code>r x y count</code> revealed, <code>f x y</code> flagged, <code>u x y</code> unmarked,
+ * <code>q x y</code> questioned, <code>m x y</code> the mine clicked, <code>b x y</code> another mine shown
+ * when the game is lost, <code>i x y</code> a wrong flag, then <code>W</code> or <code>L</code> when the game is won or lost,
+ * and <code>P</code> when the move that lost is undone. An undone square is sent as it now is, as <code>u x y</code> if unrevealed.
+ * A command that can't be carried out is answered with <code>? reason</code>. <p>
+ *
+ * Commands can be sent without waiting for the answers. Answers are only flushed when there are no more commands
+ * waiting to be read, so a bot that sends many commands at once gets all their answers in one write.
+ */
+public class BotProtocol extends MinesweeperAdapter {
+
+	private final InputStream in;
+	private final OutputStream out;
+
+	private Minesweeper game;
+
+	/**
+	 * Where games are shown to spectators, or null.
+	 */
+	private SpectatorServer.Channel channel;
+
+	/**
+	 * The command line being read, reused for every line.
+	 */
+	private final byte[] line = new byte[256];
+	private int length, pos;
+
+	public BotProtocol(InputStream in, OutputStream out) {
+		this.in = new BufferedInputStream(in, 1 << 16);
+		this.out = new BufferedOutputStream(out, 1 << 16);
+	}
+
+	/**
+	 * Shows every game from now on to spectators on the given channel.
+	 *
+	 * @param channel the channel, or null to stop showing games
+	 */
+	public void setChannel(SpectatorServer.Channel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * Reads and answers commands until the input ends.
+	 *
+	 * @throws IOException if the streams fail
+	 */
+	public void run() throws IOException {
+		try {
+			serve();
+		} catch (WriteFailed e) {
+			throw (IOException) e.getCause();
+		} finally {
+			if (game != null) game.stopTimer();
+		}
+	}
+
+	private void serve() throws IOException {
+		try {
+			while (readLine()) {
+				try {
+					command();
+				} catch (IllegalArgumentException e) {
+					out.write('?');
+					out.write(' ');
+					write(e.getMessage());
+					out.write('\n');
+				}
+
+				out.write('.');
+				out.write('\n');
+
+				//only pay for a write once the bot has nothing more queued
+				if (in.available() == 0) out.flush();
+			}
+		} finally {
+			out.flush();
+		}
+	}
+
+	private void command() {
+		if (length == 0) throw new IllegalArgumentException("empty command");
+
+		pos = 1;
+		byte c = line[0];
+
+		if (c == 'N') {
+			int width = number(), height = number(), mines = number();
+			long seed = more() ? number(Long.MIN_VALUE, Long.MAX_VALUE) : new Random().nextLong();
+
+			if (width <= 0 || height <= 0 || mines < 0 || (long) width * height > Integer.MAX_VALUE || mines >= width * height) {
+				throw new IllegalArgumentException("invalid board");
+			}
+
+			if (game != null) game.stopTimer();
+
+			game = new Minesweeper(width, height, mines, this, seed);
+			game.setTicking(false);
+
+			if (channel != null) channel.show(game);
+
+			out('n', width, height);
+			write(' ');
+			write(mines);
+			write(' ');
+			write(Long.toString(seed));
+			newline();
+			return;
+		}
+
+		if (game == null) throw new IllegalArgumentException("no game, start one with N");
+		
+		if (c == 'U') {
+			if (more()) throw new IllegalArgumentException("too many numbers");
+			if (!game.undo()) throw new IllegalArgumentException("nothing to undo");
+			return;
+		}
+
+		int x = number(), y = number();
+		if (more()) throw new IllegalArgumentException("too many numbers");
+
+		switch (c) {
+		case 'R':
+			game.revealSquare(x, y);
+			break;
+		case 'C':
+			game.revealSurrounding(x, y);
+			break;
+		case 'F':
+			game.toggleSquare(x, y);
+			break;
+		default:
+			throw new IllegalArgumentException("unknown command " + (char) c);
+		}
+	}
+
+	@Override
+	public void squareRevealed(int x, int y, int numMines) {
+		out('r', x, y);
+		write(' ');
+		write(numMines);
+		newline();
+	}
+
+	@Override
+	public void squareFlagged(int x, int y) {
+		event('f', x, y);
+	}
+
+	@Override
+	public void squareUnmarked(int x, int y) {
+		event('u', x, y);
+	}
+
+	@Override
+	public void squareQuestioned(int x, int y) {
+		event('q', x, y);
+	}
+
+	@Override
+	public void mineRevealed(int x, int y) {
+		event('m', x, y);
+	}
+
+	@Override
+	public void squareBomb(int x, int y) {
+		event('b', x, y);
+	}
+
+	@Override
+	public void incorrectFlag(int x, int y) {
+		event('i', x, y);
+	}
+
+	@Override
+	public void gameWon() {
+		write('W');
+		newline();
+	}
+
+	@Override
+	public void gameLost() {
+		write('L');
+		newline();
+	}
+
+	@Override
+	public void gameResumed() {
+		write('P');
+		newline();
+	}
+
+	private void event(char type, int x, int y) {
+		out(type, x, y);
+		newline();
+	}
+
+	private void out(char type, int x, int y) {
+		write(type);
+		write(' ');
+		write(x);
+		write(' ');
+		write(y);
+	}
+
+	private void newline() {
+		write('\n');
+	}
+
+	/**
+	 * Reads the next line into the line buffer, returning false at the end of the input.
+	 */
+	private boolean readLine() throws IOException {
+		length = 0;
+
+		int b;
+		while ((b = in.read()) >= 0) {
+			if (b == '\n') {
+				if (length > 0 && line[length - 1] == '\r') length--;
+				return true;
+			}
+
+			if (length == line.length) throw new IOException("Command too long");
+			line[length++] = (byte) b;
+		}
+
+		return length > 0;
+	}
+
+	private boolean more() {
+		while (pos < length && line[pos] == ' ') pos++;
+		return pos < length;
+	}
+
+	private int number() {
+		return (int) number(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Parses the next number on the line straight from the bytes, which must be within the given range.
+	 */
+	private long number(long min, long max) {
+		if (!more()) throw new IllegalArgumentException("missing number");
+
+		boolean negative = line[pos] == '-';
+		if (negative) pos++;
+
+		//built up negatively, so the most negative long fits
+		long value = 0;
+		int start = pos;
+
+		while (pos < length && line[pos] >= '0' && line[pos] <= '9') {
+			int digit = line[pos++] - '0';
+			if (value < (Long.MIN_VALUE + digit) / 10) throw new IllegalArgumentException("number too big");
+
+			value = value * 10 - digit;
+		}
+
+		if (pos == start || (pos < length && line[pos] != ' ')) throw new IllegalArgumentException("bad number");
+
+		if (!negative) {
+			if (value == Long.MIN_VALUE) throw new IllegalArgumentException("number too big");
+			value = -value;
+		}
+
+		if (value < min || value > max) throw new IllegalArgumentException("number too big");
+		return value;
+	}
+
+	//listener events can't throw IOExceptions, so failed writes are wrapped, then unwrapped by run
+
+	private void write(char c) {
+		try {
+			out.write(c);
+		} catch (IOException e) {
+			throw new WriteFailed(e);
+		}
+	}
+
+	private void write(int n) {
+		if (n < 0) {
+			write(Integer.toString(n));
+			return;
+		}
+
+		//digits from the most significant
+		int divisor = 1;
+		while (n / divisor >= 10) divisor *= 10;
+
+		for (; divisor > 0; divisor /= 10) write((char) ('0' + n / divisor % 10));
+	}
+
+	private void write(String s) {
+		for (int i = 0; i < s.length(); i++) write(s.charAt(i));
+	}
+
+	/**
+	 * A write that failed inside a listener event.
+	 */
+	private static class WriteFailed extends RuntimeException {
+		private WriteFailed(IOException cause) {
+			super(cause);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package nz.co.troyshaw.minesweeper.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import nz.co.troyshaw.minesweeper.solver.BoardAnalyzer;
+
+/**
+ * Serves hints from {@link BoardAnalyzer} over HTTP on localhost, for bots running in other processes. <p>
+ *
+ * <code>POST /hint</code> takes a board as JSON: <code>{"mines": 99, "board": ["..1F", ...], "deadlineMs": 200}</code>,
+ * with a string per row where <code>.</code> is an unknown square, <code>F</code> a flag, and a digit a revealed square.
+ * The deadline is optional. It answers with the squares that must be safe and must be mines as <code>[x, y]</code> pairs,
+ * the least risky square to guess, whether the chances are exact, and a row of chances for every row of the board. <p>
+ *
+ * Requests are read by a couple of threads, then queued to a fixed pool that works out the hints. The queue is bounded:
+ * when it is full a request is turned away straight away with a 503, rather than waiting for longer than it would be
+ * of use. A request still queued at its deadline also gets a 503, and one whose working out passes its deadline gets
+ * a 504. <code>GET /stats</code> shows the latency percentiles in microseconds, and how many requests were turned away.
+ */
+public class HintServer {
+
+	/**
+	 * Bigger requests than this are turned away.
+	 */
+	private static final int MAX_REQUEST = 4 * 1024 * 1024;
+
+	static {
+		//the headers and body are written separately, so with Nagle's algorithm on every response waits on a delayed ACK
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService readers;
+	private final ThreadPoolExecutor solvers;
+
+	private final long defaultDeadline;
+
+	/**
+	 * From the request being read to the response being sent, the time spent queued, and the time spent working out the hints.
+	 */
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram queued = new LatencyHistogram();
+	private final LatencyHistogram solving = new LatencyHistogram();
+
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+	private final AtomicLong timedOut = new AtomicLong();
+
+	/**
+	 * Creates a server on the loopback address. It doesn't accept requests until started.
+	 *
+	 * @param port the port, or 0 for any free port
+	 * @param threads the number of threads working out hints
+	 * @param queueSize the number of requests that can wait for a thread
+	 * @param defaultDeadline the deadline of requests that don't give one, in milliseconds
+	 * @throws IOException if the port can't be bound
+	 */
+	public HintServer(int port, int threads, int queueSize, long defaultDeadline) throws IOException {
+		this.defaultDeadline = TimeUnit.MILLISECONDS.toNanos(defaultDeadline);
+
+		readers = Executors.newFixedThreadPool(2, threadFactory("hint-reader-"));
+		solvers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+				threadFactory("hint-solver-"), new ThreadPoolExecutor.AbortPolicy());
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(readers);
+
+		server.createContext("/hint", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				hint(exchange);
+			}
+		});
+
+		server.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, stats());
+			}
+		});
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waits up to the given time for those being handled, then stops the threads.
+	 *
+	 * @param seconds the longest to wait
+	 */
+	public void stop(int seconds) {
+		server.stop(seconds);
+		readers.shutdown();
+		solvers.shutdown();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Reads a hint request and queues it, or turns it away if the queue is full. Runs on a reader thread.
+	 */
+	private void hint(final HttpExchange exchange) throws IOException {
+		final long received = System.nanoTime();
+
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, error("Use POST"));
+			return;
+		}
+
+		final byte[] body = readBody(exchange.getRequestBody());
+
+		if (body == null) {
+			respond(exchange, 413, error("Request too big"));
+			return;
+		}
+
+		try {
+			solvers.execute(new Runnable() {
+				@Override
+				public void run() {
+					solve(exchange, body, received);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			respond(exchange, 503, error("Too many requests queued"));
+		}
+	}
+
+	/**
+	 * Works out the hints for a queued request and sends them. Runs on a solver thread.
+	 */
+	private void solve(HttpExchange exchange, byte[] body, long received) {
+		long started = System.nanoTime();
+		queued.record(started - received);
+
+		int status;
+		String response;
+
+		try {
+			Map<?, ?> request = asObject(Json.parse(new String(body, StandardCharsets.UTF_8)));
+
+			Object deadlineMs = request.get("deadlineMs");
+			long deadline = received + (deadlineMs == null ? defaultDeadline : TimeUnit.MILLISECONDS.toNanos(asNumber(deadlineMs).longValue()));
+
+			if (started - deadline > 0) {
+				expired.incrementAndGet();
+				respond(exchange, 503, error("Deadline passed while queued"));
+				return;
+			}
+
+			List<?> rows = asList(request.get("board"));
+			int mines = asNumber(request.get("mines")).intValue();
+
+			if (rows.isEmpty()) throw new IllegalArgumentException("Board is empty");
+
+			int height = rows.size();
+			int width = asString(rows.get(0)).length();
+			int[] cells = new int[width * height];
+
+			for (int j = 0; j < height; j++) {
+				String row = asString(rows.get(j));
+				if (row.length() != width) throw new IllegalArgumentException("Rows are different lengths");
+
+				for (int i = 0; i < width; i++) cells[j * width + i] = cell(row.charAt(i));
+			}
+
+			BoardAnalyzer.Result result = BoardAnalyzer.analyze(width, height, mines, cells, deadline);
+			solving.record(System.nanoTime() - started);
+
+			status = 200;
+			response = toJson(result, width, height);
+		} catch (TimeoutException e) {
+			timedOut.incrementAndGet();
+			status = 504;
+			response = error("Deadline passed while working out hints");
+		} catch (IllegalArgumentException e) {
+			status = 400;
+			response = error(e.getMessage());
+		} catch (Throwable e) {
+			//even an error such as running out of memory gets an answer, so the client isn't left waiting
+			status = 500;
+			response = error(e.toString());
+		}
+
+		respond(exchange, status, response);
+		latency.record(System.nanoTime() - received);
+	}
+
+	private static int cell(char c) {
+		if (c == '.' || c == '?') return BoardAnalyzer.UNKNOWN;
+		if (c == 'F' || c == 'f') return BoardAnalyzer.FLAG;
+		if (c >= '0' && c <= '8') return c - '0';
+
+		throw new IllegalArgumentException("Invalid square " + c);
+	}
+
+	private static String toJson(BoardAnalyzer.Result result, int width, int height) {
+		StringBuilder b = new StringBuilder(64 + width * height * 7);
+
+		b.append("{\"safe\":");
+		appendSquares(b, result.getSafe(), width);
+		b.append(",\"mines\":");
+		appendSquares(b, result.getMines(), width);
+
+		int guess = result.getGuess();
+		b.append(",\"guess\":");
+		if (guess < 0) b.append("null");
+		else b.append('[').append(guess % width).append(',').append(guess / width).append(']');
+
+		b.append(",\"exact\":").append(result.isExact());
+		b.append(",\"probabilities\":[");
+
+		for (int j = 0; j < height; j++) {
+			if (j > 0) b.append(',');
+			b.append('[');
+
+			for (int i = 0; i < width; i++) {
+				if (i > 0) b.append(',');
+				appendChance(b, result.getProbability(i, j));
+			}
+
+			b.append(']');
+		}
+
+		return b.append("]}").toString();
+	}
+
+	private static void appendSquares(StringBuilder b, int[] squares, int width) {
+		b.append('[');
+
+		for (int k = 0; k < squares.length; k++) {
+			if (k > 0) b.append(',');
+			b.append('[').append(squares[k] % width).append(',').append(squares[k] / width).append(']');
+		}
+
+		b.append(']');
+	}
+
+	/**
+	 * Appends a chance to 4 decimal places, without the cost of formatting a double.
+	 */
+	private static void appendChance(StringBuilder b, double p) {
+		long tenThousandths = Math.round(p * 10000);
+
+		if (tenThousandths <= 0) {
+			b.append('0');
+		} else if (tenThousandths >= 10000) {
+			b.append('1');
+		} else {
+			b.append("0.");
+			for (long digit = 1000; digit > tenThousandths; digit /= 10) b.append('0');
+			b.append(tenThousandths);
+		}
+	}
+
+	private String stats() {
+		return "{\"latency\":" + latency.toJson()
+				+ ",\"queued\":" + queued.toJson()
+				+ ",\"solving\":" + solving.toJson()
+				+ ",\"rejected\":" + rejected.get()
+				+ ",\"expired\":" + expired.get()
+				+ ",\"timedOut\":" + timedOut.get()
+				+ ",\"queueLength\":" + solvers.getQueue().size() + "}";
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + Json.quote(String.valueOf(message)) + "}";
+	}
+
+	/**
+	 * Sends the response and finishes the exchange. Any error is the client having gone, so is ignored.
+	 */
+	private static void respond(HttpExchange exchange, int status, String json) {
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+		try {
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, bytes.length);
+
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		} catch (IOException e) {
+			//the client has gone
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Reads the whole request body, or returns null if it is too big.
+	 */
+	private static byte[] readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+
+		try {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+				if (out.size() > MAX_REQUEST) return null;
+			}
+		} finally {
+			in.close();
+		}
+
+		return out.toByteArray();
+	}
+
+	private static Map<?, ?> asObject(Object o) {
+		if (!(o instanceof Map)) throw new IllegalArgumentException("Expected an object");
+		return (Map<?, ?>) o;
+	}
+
+	private static List<?> asList(Object o) {
+		if (!(o instanceof List)) throw new IllegalArgumentException("Expected board to be an array of rows");
+		return (List<?>) o;
+	}
+
+	private static Number asNumber(Object o) {
+		if (!(o instanceof Number)) throw new IllegalArgumentException("Expected a number");
+		return (Number) o;
+	}
+
+	private static String asString(Object o) {
+		if (!(o instanceof String)) throw new IllegalArgumentException("Expected rows to be strings");
+		return (String) o;
+	}
+
+	private static ThreadFactory threadFactory(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
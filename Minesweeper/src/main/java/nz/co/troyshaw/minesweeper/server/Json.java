@@ -0,0 +1,223 @@
+package nz.co.troyshaw.minesweeper.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the servers' requests. <p>
+ *
+ * Objects are read as maps, arrays as lists, strings as strings, numbers as doubles, and true, false and null as themselves.
+ * Values are read recursively, so objects and arrays can only be nested {@link #MAX_DEPTH} deep.
+ */
+public class Json {
+
+	/**
+	 * How deep objects and arrays can be nested, well within the stack of any thread.
+	 */
+	public static final int MAX_DEPTH = 64;
+
+	private final String text;
+	private int pos, depth;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Reads a single JSON value.
+	 *
+	 * @param text the JSON
+	 * @return the value
+	 * @throws IllegalArgumentException if the text isn't valid JSON, or is nested too deeply
+	 */
+	public static Object parse(String text) {
+		Json json = new Json(text);
+
+		Object value = json.value();
+		json.skipSpace();
+
+		if (json.pos != text.length()) throw json.error("Unexpected text after value");
+		return value;
+	}
+
+	/**
+	 * Returns the text as a JSON string, quoted and escaped.
+	 *
+	 * @param s the text
+	 * @return the JSON string
+	 */
+	public static String quote(String s) {
+		StringBuilder b = new StringBuilder(s.length() + 2).append('"');
+
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+
+			if (c == '"' || c == '\\') b.append('\\').append(c);
+			else if (c < 0x20) b.append(String.format("\\u%04x", (int) c));
+			else b.append(c);
+		}
+
+		return b.append('"').toString();
+	}
+
+	private Object value() {
+		skipSpace();
+		if (pos == text.length()) throw error("Unexpected end");
+
+		char c = text.charAt(pos);
+
+		switch (c) {
+		case '{':
+		case '[':
+			if (++depth > MAX_DEPTH) throw error("Nested more than " + MAX_DEPTH + " deep");
+
+			Object nested = c == '{' ? object() : array();
+			depth--;
+			return nested;
+		case '"':
+			return string();
+		case 't':
+			return word("true", Boolean.TRUE);
+		case 'f':
+			return word("false", Boolean.FALSE);
+		case 'n':
+			return word("null", null);
+		default:
+			if (c == '-' || (c >= '0' && c <= '9')) return number();
+			throw error("Unexpected " + c);
+		}
+	}
+
+	private Map<String, Object> object() {
+		Map<String, Object> map = new LinkedHashMap<String, Object>();
+		pos++;
+
+		skipSpace();
+		if (peek() == '}') {
+			pos++;
+			return map;
+		}
+
+		while (true) {
+			skipSpace();
+			if (peek() != '"') throw error("Expected a name");
+
+			String name = string();
+
+			skipSpace();
+			expect(':');
+
+			map.put(name, value());
+
+			skipSpace();
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect('}');
+				return map;
+			}
+		}
+	}
+
+	private List<Object> array() {
+		List<Object> list = new ArrayList<Object>();
+		pos++;
+
+		skipSpace();
+		if (peek() == ']') {
+			pos++;
+			return list;
+		}
+
+		while (true) {
+			list.add(value());
+
+			skipSpace();
+			if (peek() == ',') {
+				pos++;
+			} else {
+				expect(']');
+				return list;
+			}
+		}
+	}
+
+	private String string() {
+		StringBuilder b = new StringBuilder();
+		pos++;
+
+		while (true) {
+			if (pos >= text.length()) throw error("Unterminated string");
+
+			char c = text.charAt(pos++);
+
+			if (c == '"') return b.toString();
+
+			if (c != '\\') {
+				b.append(c);
+				continue;
+			}
+
+			if (pos >= text.length()) throw error("Unterminated string");
+			char e = text.charAt(pos++);
+
+			switch (e) {
+			case 'b': b.append('\b'); break;
+			case 'f': b.append('\f'); break;
+			case 'n': b.append('\n'); break;
+			case 'r': b.append('\r'); break;
+			case 't': b.append('\t'); break;
+			case 'u':
+				if (pos + 4 > text.length()) throw error("Bad escape");
+				try {
+					b.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+				} catch (NumberFormatException ex) {
+					throw error("Bad escape");
+				}
+				pos += 4;
+				break;
+			default:
+				b.append(e);
+			}
+		}
+	}
+
+	private Double number() {
+		int start = pos;
+
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) pos++;
+
+		try {
+			return Double.valueOf(text.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw error("Bad number");
+		}
+	}
+
+	private Object word(String word, Object value) {
+		if (!text.startsWith(word, pos)) throw error("Unexpected text");
+
+		pos += word.length();
+		return value;
+	}
+
+	private void skipSpace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) pos++;
+	}
+
+	private char peek() {
+		if (pos >= text.length()) throw error("Unexpected end");
+		return text.charAt(pos);
+	}
+
+	private void expect(char c) {
+		if (peek() != c) throw error("Expected " + c);
+		pos++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + pos);
+	}
+}
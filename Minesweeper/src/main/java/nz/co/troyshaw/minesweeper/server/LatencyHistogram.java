@@ -0,0 +1,110 @@
+package nz.co.troyshaw.minesweeper.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies into buckets, so percentiles can be read at any time without keeping every latency. <p>
+ *
+ * Buckets double in width every 16 buckets, so every latency is counted to within about 6%, from a microsecond
+ * up to over an hour. Recording is a single atomic increment, so any number of threads can record at once.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Buckets per doubling.
+	 */
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BITS = 4;
+
+	/**
+	 * Enough doublings of a microsecond for over an hour.
+	 */
+	private static final int DOUBLINGS = 32;
+
+	private final AtomicLongArray counts = new AtomicLongArray(DOUBLINGS * SUB_BUCKETS);
+
+	/**
+	 * Counts a latency.
+	 *
+	 * @param nanos the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+	}
+
+	/**
+	 * Returns the number of latencies recorded.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++) count += counts.get(i);
+
+		return count;
+	}
+
+	/**
+	 * Returns the latency that the given fraction of latencies were at or under, to within a bucket.
+	 *
+	 * @param fraction the fraction, from 0 to 1
+	 * @return the upper edge of the bucket holding that latency, in microseconds, or 0 if nothing was recorded
+	 */
+	public long getPercentile(double fraction) {
+		long[] snapshot = new long[counts.length()];
+		long total = 0;
+
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+
+		if (total == 0) return 0;
+
+		long rank = (long) Math.ceil(fraction * total);
+		long seen = 0;
+
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank && snapshot[i] > 0) return upperEdge(i);
+		}
+
+		return upperEdge(snapshot.length - 1);
+	}
+
+	/**
+	 * Returns the percentiles and count as a JSON object.
+	 *
+	 * @return the JSON
+	 */
+	public String toJson() {
+		return "{\"count\":" + getCount()
+				+ ",\"p50\":" + getPercentile(0.5)
+				+ ",\"p90\":" + getPercentile(0.9)
+				+ ",\"p99\":" + getPercentile(0.99)
+				+ ",\"p999\":" + getPercentile(0.999)
+				+ ",\"max\":" + getPercentile(1) + "}";
+	}
+
+	/**
+	 * Values under 16 have a bucket each, then each doubling is split into 16 equal buckets.
+	 */
+	private static int bucket(long micros) {
+		if (micros < SUB_BUCKETS) return (int) micros;
+
+		//how far to shift so the top 5 bits are left, which is 16 to 31
+		int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+		long bucket = (long) shift * SUB_BUCKETS + (micros >>> shift);
+
+		return (int) Math.min(bucket, DOUBLINGS * SUB_BUCKETS - 1);
+	}
+
+	private static long upperEdge(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lower = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+
+		return lower + (1L << shift) - 1;
+	}
+}
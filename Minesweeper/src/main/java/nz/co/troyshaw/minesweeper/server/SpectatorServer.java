@@ -0,0 +1,714 @@
+package nz.co.troyshaw.minesweeper.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nz.co.troyshaw.minesweeper.game.GameEvent;
+import nz.co.troyshaw.minesweeper.game.GameEventPublisher;
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.Square;
+
+/**
+ * Streams live games to any number of viewers over TCP on localhost, all from one thread. <p>
+ *
+ * Games are shown on named channels. A viewer connects and sends the name of a channel and a newline, and is sent
+ * frames from then on, or disconnected if there is no such channel. Every frame is a type byte, then the length of
+ * the rest of the frame and the frame's sequence number as big-endian ints, then the body:
+ * <ul>
+ * <li><code>K</code> a keyframe, the whole board: width, height and mines as ints, the game state as a byte
+ * (0 playing, 1 won, 2 lost), then every square in 4 bits, two to a byte, row by row, the first in the high bits</li>
+ * <li><code>D</code> a delta, the squares changed by one move: each is a varint (7 bits a byte, low bits first) of
+ * <code>index &lt;&lt; 4 | square</code>, where index is y * width + x. A square of 15 is a change of game state,
+ * with the state in place of the index.</li>
+ * <li><code>E</code> the channel has closed, and the connection is closed after it</li>
+ * </ul>
+ * Squares are 0 to 8 for a revealed number, 9 unrevealed, 10 flagged, 11 questioned, 12 the mine clicked,
+ * 13 another mine shown once lost, and 14 a wrong flag. A viewer is sent a keyframe first, then the deltas after it,
+ * and another keyframe whenever a new game is shown. A keyframe a viewer is skipped to has the sequence number of
+ * the last frame it includes, so the sequence numbers of the frames after it always follow on. <p>
+ *
+ * Each frame is encoded once into a direct buffer, and every viewer is sent a view of that same buffer. A viewer that
+ * falls too far behind is skipped ahead: once it has finished the frame it is part way through, it is sent a keyframe
+ * of the board as it is now, and carries on from there. So a slow viewer costs only itself.
+ */
+public class SpectatorServer {
+
+	/**
+	 * How many frames a viewer can fall behind before it is skipped to a keyframe.
+	 */
+	private static final int MAX_LAG = 1024;
+
+	/**
+	 * Frames are cut from direct buffers of this size, so there isn't a direct allocation per frame.
+	 */
+	private static final int SLAB = 64 * 1024;
+
+	/**
+	 * The most frames written to a viewer with a single write.
+	 */
+	private static final int GATHER = 16;
+
+	private static final int HEADER = 9;
+	private static final int MAX_NAME = 64;
+
+	/**
+	 * The game events buffered for a channel. Channels block rather than drop, so they never have to guess the board.
+	 * Handling an event is only an array write, so this only fills if the machine is badly overloaded.
+	 */
+	private static final int EVENT_BUFFER = 4096;
+
+	//square codes
+	private static final byte UNREVEALED = 9;
+	private static final byte FLAGGED = 10;
+	private static final byte QUESTIONED = 11;
+	private static final byte MINE_CLICKED = 12;
+	private static final byte BOMB = 13;
+	private static final byte WRONG_FLAG = 14;
+	private static final byte STATE = 15;
+
+	private final Selector selector;
+	private final ServerSocketChannel server;
+
+	private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<String, Channel>();
+
+	/**
+	 * Channels with new frames that the selector thread hasn't looked at yet.
+	 */
+	private final Queue<Channel> updated = new ConcurrentLinkedQueue<Channel>();
+
+	/**
+	 * Only used by the selector thread.
+	 */
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(256);
+
+	private final Thread thread;
+	private volatile boolean running;
+	private volatile int viewerCount;
+
+	/**
+	 * Creates a server on the loopback address. It doesn't accept viewers until started.
+	 *
+	 * @param port the port, or 0 for any free port
+	 * @throws IOException if the port can't be bound
+	 */
+	public SpectatorServer(int port) throws IOException {
+		selector = Selector.open();
+
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		thread = new Thread("spectator") {
+			@Override
+			public void run() {
+				loop();
+			}
+		};
+		thread.setDaemon(true);
+	}
+
+	public void start() {
+		running = true;
+		thread.start();
+	}
+
+	/**
+	 * Disconnects every viewer and stops the server.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the server thread to finish
+	 */
+	public void stop() throws InterruptedException {
+		running = false;
+		selector.wakeup();
+		thread.join();
+	}
+
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	public int getViewerCount() {
+		return viewerCount;
+	}
+
+	/**
+	 * Returns the channel with the given name, creating it if there isn't one yet.
+	 *
+	 * @param name the name viewers ask for, up to 64 ASCII characters
+	 * @return the channel
+	 */
+	public Channel getChannel(String name) {
+		if (name.length() > MAX_NAME) throw new IllegalArgumentException("Channel name too long");
+
+		Channel channel = channels.get(name);
+		if (channel != null) return channel;
+
+		channel = new Channel(name);
+		Channel existing = channels.putIfAbsent(name, channel);
+
+		return existing == null ? channel : existing;
+	}
+
+	private void loop() {
+		try {
+			while (running) {
+				selector.select();
+
+				Channel channel;
+				while ((channel = updated.poll()) != null) {
+					channel.queued.set(false);
+					wake(channel);
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException e) {
+							//out of sockets, those waiting are accepted as others close
+						}
+						continue;
+					}
+
+					Viewer viewer = (Viewer) key.attachment();
+
+					try {
+						if (key.isReadable()) viewer.read();
+						if (key.isValid() && key.isWritable()) viewer.pump();
+					} catch (IOException e) {
+						//the viewer has gone
+						viewer.close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			//the selector failed, so nothing more can be done
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof Viewer) ((Viewer) key.attachment()).close();
+			}
+
+			try {
+				server.close();
+				selector.close();
+			} catch (IOException e) {
+				//closing anyway
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel socket;
+
+		while ((socket = server.accept()) != null) {
+			socket.configureBlocking(false);
+			socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			Viewer viewer = new Viewer(socket);
+			viewer.key = socket.register(selector, SelectionKey.OP_READ, viewer);
+			viewerCount++;
+		}
+	}
+
+	/**
+	 * Sends new frames to the viewers of a channel that are waiting for them. Viewers still writing an earlier frame
+	 * carry on when their socket is writable, but any that have fallen too far behind let go of the frames they
+	 * haven't started, so a stuck viewer doesn't hold on to an ever growing chain of frames.
+	 */
+	private void wake(Channel channel) {
+		List<Viewer> viewers = channel.viewers;
+
+		//backwards, as viewers that fail are removed
+		for (int i = viewers.size() - 1; i >= 0; i--) {
+			Viewer viewer = viewers.get(i);
+
+			try {
+				if (viewer.count == 0) viewer.pump();
+				else if (viewer.lagging()) viewer.skip();
+			} catch (IOException e) {
+				viewer.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the code of a square as it is shown, for a game in the given state.
+	 */
+	private static byte code(Square square, int state) {
+		if (square.isRevealed()) return square.isMine() ? MINE_CLICKED : (byte) square.numMines();
+
+		//won games show every mine flagged, lost ones show every mine and wrong flag
+		if (state == 1 && square.isMine()) return FLAGGED;
+		if (state == 2 && square.isMine() && !square.isFlagged()) return BOMB;
+		if (state == 2 && square.isFlagged() && !square.isMine()) return WRONG_FLAG;
+
+		if (square.isFlagged()) return FLAGGED;
+		return square.isQuestioned() ? QUESTIONED : UNREVEALED;
+	}
+
+	/**
+	 * An encoded frame in a channel's chain of frames. Frames are only ever added to the end of the chain,
+	 * and each viewer holds on to the last frame it has taken, so frames every viewer has passed are collected.
+	 */
+	private static final class Frame {
+		final ByteBuffer data;
+		final int seq;
+		final boolean end;
+
+		volatile Frame next;
+
+		Frame(ByteBuffer data, int seq, boolean end) {
+			this.data = data;
+			this.seq = seq;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * A stream of frames showing one game at a time.
+	 */
+	public class Channel {
+
+		private final String name;
+
+		/**
+		 * Only used by the selector thread.
+		 */
+		private final List<Viewer> viewers = new ArrayList<Viewer>();
+		private final AtomicBoolean queued = new AtomicBoolean();
+
+		//everything below is guarded by the channel's lock
+
+		/**
+		 * The board as the viewers know it, a square code per square.
+		 */
+		private byte[] squares = new byte[0];
+		private int width, height, mines, state;
+
+		/**
+		 * The varints of the move so far.
+		 */
+		private byte[] delta = new byte[256];
+		private int deltaSize;
+
+		/**
+		 * The last frame of the chain. Volatile so the selector thread can see how far behind a viewer is without locking.
+		 */
+		private volatile Frame tail = new Frame(null, 0, false);
+
+		/**
+		 * The last keyframe made, and the frame it was made at, so viewers skipped at the same time share one.
+		 */
+		private ByteBuffer keyframe;
+		private Frame keyframeAt;
+
+		private ByteBuffer slab;
+
+		/**
+		 * Events from games shown before the current one are ignored.
+		 */
+		private int generation;
+		private Flow.Subscription subscription;
+		private boolean closed;
+
+		private Channel(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Shows a game on this channel, in place of any game shown before. Viewers are sent a keyframe of the game as it is,
+		 * then a delta for each move. Must be called on the game's thread, as the board is read straight away.
+		 *
+		 * @param game the game to show
+		 */
+		public synchronized void show(Minesweeper game) {
+			if (closed) throw new IllegalStateException("Channel closed");
+
+			if (subscription != null) subscription.cancel();
+			subscription = null;
+
+			final int showing = ++generation;
+
+			game.getEvents().subscribe(new Flow.Subscriber<GameEvent>() {
+				@Override
+				public void onSubscribe(Flow.Subscription s) {
+					if (!accept(showing, s)) s.cancel();
+					else s.request(Long.MAX_VALUE);
+				}
+
+				@Override
+				public void onNext(GameEvent event) {
+					apply(showing, event);
+				}
+
+				@Override
+				public void onError(Throwable t) {}
+
+				@Override
+				public void onComplete() {}
+			}, EVENT_BUFFER, GameEventPublisher.Overflow.BLOCK);
+
+			//events already fired may be applied again after this, which is harmless as each sets a square outright
+			width = game.getWidth();
+			height = game.getHeight();
+			mines = game.getNumMines();
+			state = game.hasWon() ? 1 : game.hasDied() ? 2 : 0;
+			squares = new byte[width * height];
+
+			for (int j = 0; j < height; j++) {
+				for (int i = 0; i < width; i++) squares[j * width + i] = code(game.getSquare(i, j), state);
+			}
+
+			deltaSize = 0;
+
+			keyframe = encodeKeyframe();
+			append(keyframe, 'K');
+			keyframeAt = tail;
+		}
+
+		/**
+		 * Stops showing the game. Viewers are sent an end frame and disconnected.
+		 */
+		public void close() {
+			synchronized (this) {
+				if (closed) return;
+
+				if (subscription != null) subscription.cancel();
+				subscription = null;
+
+				flush();
+				closed = true;
+				append(frame('E', 0), 'E');
+			}
+
+			channels.remove(name, this);
+		}
+
+		private synchronized boolean accept(int showing, Flow.Subscription s) {
+			if (showing != generation || closed) return false;
+
+			subscription = s;
+			return true;
+		}
+
+		private synchronized void apply(int showing, GameEvent event) {
+			if (showing != generation || closed) return;
+
+			int index = event.getY() * width + event.getX();
+
+			switch (event.getType()) {
+			case REVEALED: set(index, (byte) event.getValue()); break;
+			case FLAGGED: set(index, FLAGGED); break;
+			case QUESTIONED: set(index, QUESTIONED); break;
+			case UNMARKED: set(index, UNREVEALED); break;
+			case MINE_REVEALED: set(index, MINE_CLICKED); break;
+			case BOMB: set(index, BOMB); break;
+			case INCORRECT_FLAG: set(index, WRONG_FLAG); break;
+			case WON: setState(1); flush(); break;
+			case LOST: setState(2); flush(); break;
+			case RESUMED: setState(0); break;
+			case MOVE_FINISHED: flush(); break;
+			case FLAGS_CHANGED: flush(); break;
+			default: break;
+			}
+		}
+
+		private void set(int index, byte code) {
+			if (squares[index] == code) return;
+
+			squares[index] = code;
+			varint((long) index << 4 | code);
+		}
+
+		private void setState(int state) {
+			this.state = state;
+			varint((long) state << 4 | STATE);
+		}
+
+		private void varint(long value) {
+			if (deltaSize + 10 > delta.length) {
+				byte[] bigger = new byte[delta.length * 2];
+				System.arraycopy(delta, 0, bigger, 0, deltaSize);
+				delta = bigger;
+			}
+
+			while ((value & ~0x7FL) != 0) {
+				delta[deltaSize++] = (byte) (value & 0x7F | 0x80);
+				value >>>= 7;
+			}
+
+			delta[deltaSize++] = (byte) value;
+		}
+
+		/**
+		 * Ends the move so far as a delta frame, if it changed anything.
+		 */
+		private void flush() {
+			if (deltaSize == 0) return;
+
+			ByteBuffer frame = frame('D', deltaSize);
+
+			ByteBuffer body = frame.duplicate();
+			body.position(HEADER);
+			body.put(delta, 0, deltaSize);
+
+			deltaSize = 0;
+			append(frame, 'D');
+		}
+
+		private ByteBuffer encodeKeyframe() {
+			int packed = (squares.length + 1) / 2;
+			ByteBuffer frame = frame('K', 13 + packed);
+
+			frame.putInt(HEADER, width).putInt(HEADER + 4, height).putInt(HEADER + 8, mines).put(HEADER + 12, (byte) state);
+
+			for (int i = 0; i < squares.length; i += 2) {
+				int low = i + 1 < squares.length ? squares[i + 1] : 0;
+				frame.put(HEADER + 13 + i / 2, (byte) (squares[i] << 4 | low));
+			}
+
+			return frame;
+		}
+
+		/**
+		 * Allocates a frame with its header filled in, for the next sequence number. The body is written with absolute puts.
+		 */
+		private ByteBuffer frame(char type, int bodySize) {
+			int size = HEADER + bodySize;
+			ByteBuffer frame;
+
+			if (size > SLAB / 4) {
+				frame = ByteBuffer.allocateDirect(size);
+			} else {
+				if (slab == null || slab.remaining() < size) slab = ByteBuffer.allocateDirect(SLAB);
+
+				frame = slab.slice();
+				frame.limit(size);
+				slab.position(slab.position() + size);
+			}
+
+			frame.put(0, (byte) type).putInt(1, bodySize + 4).putInt(5, tail.seq + 1);
+			return frame;
+		}
+
+		private void append(ByteBuffer data, char type) {
+			Frame frame = new Frame(data, tail.seq + 1, type == 'E');
+
+			tail.next = frame;
+			tail = frame;
+
+			if (queued.compareAndSet(false, true)) {
+				updated.add(this);
+				selector.wakeup();
+			}
+		}
+
+		/**
+		 * Gives the viewer a keyframe of the board as it is now, and sets it to carry on from the end of the chain.
+		 */
+		private synchronized void skipTo(Viewer viewer) {
+			if (keyframeAt != tail) {
+				keyframe = encodeKeyframe();
+				keyframeAt = tail;
+
+				//numbered as the last frame it includes, so the frame after it follows on
+				keyframe.putInt(5, tail.end ? tail.seq - 1 : tail.seq);
+			}
+
+			viewer.last = keyframeAt;
+			viewer.add(keyframe.duplicate());
+
+			if (keyframeAt.end) {
+				viewer.add(keyframeAt.data.duplicate());
+				viewer.closing = true;
+			}
+		}
+	}
+
+	private class Viewer {
+
+		private final SocketChannel socket;
+		private SelectionKey key;
+
+		private Channel channel;
+		private final byte[] name = new byte[MAX_NAME];
+		private int nameLength;
+
+		/**
+		 * The last frame taken from the chain, and the views of frames being written.
+		 */
+		private Frame last;
+		private final ByteBuffer[] pending = new ByteBuffer[GATHER];
+		private int start, count;
+
+		/**
+		 * True when the viewer should be sent a keyframe once the frame it is part way through is finished.
+		 */
+		private boolean skipping;
+		private boolean closing, closed;
+
+		private Viewer(SocketChannel socket) {
+			this.socket = socket;
+		}
+
+		private void read() throws IOException {
+			readBuffer.clear();
+
+			int read = socket.read(readBuffer);
+			if (read < 0) {
+				close();
+				return;
+			}
+
+			//anything sent after the channel name is ignored
+			if (channel != null) return;
+
+			for (int i = 0; i < read; i++) {
+				byte b = readBuffer.get(i);
+
+				if (b == '\n') {
+					join(new String(name, 0, nameLength, StandardCharsets.US_ASCII).trim());
+					return;
+				}
+
+				if (nameLength == MAX_NAME) {
+					close();
+					return;
+				}
+
+				name[nameLength++] = b;
+			}
+		}
+
+		private void join(String channelName) throws IOException {
+			Channel joining = channels.get(channelName);
+
+			if (joining == null) {
+				close();
+				return;
+			}
+
+			channel = joining;
+			channel.viewers.add(this);
+
+			skipping = true;
+			pump();
+		}
+
+		/**
+		 * Writes as much as the socket will take, then waits for the socket to be writable or for more frames.
+		 */
+		private void pump() throws IOException {
+			while (!closed) {
+				fill();
+
+				if (count == 0) {
+					if (closing) close();
+					else interest(SelectionKey.OP_READ);
+					return;
+				}
+
+				socket.write(pending, start, count);
+
+				while (count > 0 && !pending[start].hasRemaining()) {
+					pending[start++] = null;
+					count--;
+				}
+
+				if (count > 0) {
+					interest(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Takes as many frames as fit from the chain, or a keyframe if the viewer is being skipped.
+		 */
+		private void fill() {
+			if (count == 0) start = 0;
+
+			while (!closing && start + count < GATHER) {
+				if (skipping || lagging()) {
+					//a frame part way through has to be finished first, and any others taken with it may as well be
+					if (count > 0) return;
+
+					skipping = false;
+					channel.skipTo(this);
+					continue;
+				}
+
+				Frame next = last.next;
+				if (next == null) return;
+
+				last = next;
+				add(next.data.duplicate());
+
+				if (next.end) closing = true;
+			}
+		}
+
+		private void add(ByteBuffer frame) {
+			pending[start + count++] = frame;
+		}
+
+		private boolean lagging() {
+			return last != null && channel.tail.seq - last.seq > MAX_LAG;
+		}
+
+		/**
+		 * Lets go of the frames not yet taken, to be sent a keyframe once those already taken are written.
+		 */
+		private void skip() {
+			skipping = true;
+			last = null;
+		}
+
+		private void interest(int ops) {
+			if (key.interestOps() != ops) key.interestOps(ops);
+		}
+
+		private void close() {
+			if (closed) return;
+			closed = true;
+
+			if (channel != null) channel.viewers.remove(this);
+			key.cancel();
+			viewerCount--;
+
+			try {
+				socket.close();
+			} catch (IOException e) {
+				//closing anyway
+			}
+		}
+	}
+}
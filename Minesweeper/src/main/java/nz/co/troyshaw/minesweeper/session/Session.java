@@ -0,0 +1,84 @@
+package nz.co.troyshaw.minesweeper.session;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+
+/**
+ * A single game and the mailbox of work waiting to be done on it. <p>
+ *
+ * Work for a session is queued to its mailbox, and the mailbox is drained by one pool thread at a time,
+ * so the game is only ever touched by one thread at once without any locking. Everything but the mailbox
+ * and the fields marked volatile is only touched while draining.
+ */
+class Session implements Runnable {
+
+	/**
+	 * How many tasks are run before the thread is given to other sessions.
+	 */
+	private static final int BATCH = 64;
+
+	final String id;
+
+	private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	private final Executor executor;
+
+	/**
+	 * The game while it is live, or null once it has been compacted or before it has been read back from disk.
+	 */
+	Minesweeper game;
+
+	/**
+	 * The game saved to an array while it is compacted, otherwise null.
+	 */
+	byte[] compacted;
+
+	/**
+	 * True once the session has been passivated or removed. Work that reaches a session after then is
+	 * sent back to the manager, to go to the session read back from disk, if there is one.
+	 */
+	boolean gone;
+
+	/**
+	 * When the session was last given work, from {@link System#nanoTime()}.
+	 */
+	volatile long lastUsed = System.nanoTime();
+
+	/**
+	 * True while the manager has idle work queued for this session, so it isn't queued twice.
+	 */
+	volatile boolean idling;
+
+	Session(String id, Executor executor) {
+		this.id = id;
+		this.executor = executor;
+	}
+
+	/**
+	 * Queues work for this session, and schedules the mailbox to be drained if it isn't already.
+	 */
+	void post(Runnable work) {
+		mailbox.add(work);
+
+		if (scheduled.compareAndSet(false, true)) executor.execute(this);
+	}
+
+	@Override
+	public void run() {
+		for (int i = 0; i < BATCH; i++) {
+			Runnable work = mailbox.poll();
+			if (work == null) break;
+
+			work.run();
+		}
+
+		scheduled.set(false);
+
+		//work posted after the last poll, but before scheduled was cleared, would otherwise be stranded
+		if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) executor.execute(this);
+	}
+}
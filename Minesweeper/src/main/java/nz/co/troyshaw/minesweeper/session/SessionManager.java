@@ -0,0 +1,442 @@
+package nz.co.troyshaw.minesweeper.session;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+import nz.co.troyshaw.minesweeper.game.MinesweeperListener;
+import nz.co.troyshaw.minesweeper.game.SavedGame;
+
+/**
+ * Hosts many games at once, each in a session with its own ID, such as for serving many players or bots. <p>
+ *
+ * Work is given to a session as a {@link Task}, which is queued to the session's mailbox. A small pool of threads
+ * drains the mailboxes, one thread per session at a time, so each game only ever sees one thread at once and
+ * tasks for the same session run in the order they were given. <p>
+ *
+ * Sessions no one is playing are made smaller in two steps. After a short idle time the game is compacted:
+ * it is saved to an array of 4 bits per square (see {@link SavedGame}), which for an expert board is under
+ * 300 bytes rather than around 20KB. After a longer idle time the session is passivated: it is written to
+ * a file and dropped from memory altogether. Either way the game is brought back the next time it is given
+ * a task. A game's clock is paused while it is compacted or passivated, as it is when the game window is minimised.
+ */
+public class SessionManager {
+
+	/**
+	 * Work to do on the game of a session. Tasks are run on a pool thread, and should not block.
+	 */
+	public interface Task<T> {
+
+		/**
+		 * Does the work. This is the only thread using the game while it runs.
+		 *
+		 * @param game the session's game
+		 * @return the result of the work
+		 * @throws Exception if the work failed, which fails the task's future
+		 */
+		T run(Minesweeper game) throws Exception;
+	}
+
+	/**
+	 * Session games have nothing watching them.
+	 */
+	private static final MinesweeperListener LISTENER = new MinesweeperAdapter();
+
+	/**
+	 * IDs are UUIDs, and are checked before being used in file names.
+	 */
+	private static final Pattern ID = Pattern.compile("[0-9a-f-]{36}");
+
+	private static final String SUFFIX = ".game";
+
+	/**
+	 * Drops the session it is run on, once its game has been read back from disk if need be.
+	 */
+	private static final Task<Void> REMOVE = new Task<Void>() {
+		@Override
+		public Void run(Minesweeper game) {
+			return null;
+		}
+	};
+
+	/**
+	 * How often sessions are checked for being idle, in milliseconds.
+	 */
+	private static final long SWEEP_INTERVAL = 1000;
+
+	private final File directory;
+	private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+	private final ExecutorService workers;
+	private final ScheduledExecutorService sweeper;
+
+	private volatile long compactAfter = TimeUnit.SECONDS.toNanos(30);
+	private volatile long passivateAfter = TimeUnit.MINUTES.toNanos(10);
+
+	private final AtomicInteger live = new AtomicInteger();
+	private final AtomicInteger compacted = new AtomicInteger();
+
+	/**
+	 * Creates a manager that passivates sessions to the given directory.
+	 *
+	 * @param directory where passivated sessions are kept, created if needed
+	 * @param threads the number of threads that run tasks
+	 * @throws IOException if the directory can't be created
+	 */
+	public SessionManager(File directory, int threads) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+
+		this.directory = directory;
+
+		workers = Executors.newFixedThreadPool(threads, threadFactory("session-"));
+		sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory("session-sweeper-"));
+
+		sweeper.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sweep();
+			}
+		}, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Sets how long sessions must be idle for before they are compacted, then passivated.
+	 *
+	 * @param compactAfter the idle time before compacting
+	 * @param passivateAfter the idle time before passivating
+	 * @param unit the unit of both times
+	 */
+	public void setIdleTimes(long compactAfter, long passivateAfter, TimeUnit unit) {
+		this.compactAfter = unit.toNanos(compactAfter);
+		this.passivateAfter = unit.toNanos(passivateAfter);
+	}
+
+	/**
+	 * Starts a session with a new game whose mines are placed with a random seed.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param mines the number of mines
+	 * @return the ID of the new session
+	 */
+	public String create(int width, int height, int mines) {
+		return create(width, height, mines, UUID.randomUUID().getLeastSignificantBits());
+	}
+
+	/**
+	 * Starts a session with a new game whose mines are placed with the given seed.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param mines the number of mines
+	 * @param seed the seed used to place the mines
+	 * @return the ID of the new session
+	 */
+	public String create(int width, int height, int mines, long seed) {
+		Minesweeper game = new Minesweeper(width, height, mines, LISTENER, seed);
+		game.setTicking(false);
+
+		Session session = new Session(UUID.randomUUID().toString(), workers);
+		session.game = game;
+
+		live.incrementAndGet();
+		sessions.put(session.id, session);
+
+		return session.id;
+	}
+
+	/**
+	 * Queues a task to run on the game of the given session.
+	 *
+	 * @param id the session ID
+	 * @param task the work to do
+	 * @return the result of the task, which fails with a {@link NoSuchElementException} if there is no such session
+	 */
+	public <T> CompletableFuture<T> submit(String id, Task<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<T>();
+
+		if (!ID.matcher(id).matches()) {
+			result.completeExceptionally(new NoSuchElementException("No session " + id));
+		} else {
+			post(id, task, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Ends a session, deleting it from disk if it was passivated.
+	 *
+	 * @param id the session ID
+	 * @return completes once the session is gone, failing with a {@link NoSuchElementException} if there is no such session
+	 */
+	public CompletableFuture<Void> remove(String id) {
+		return submit(id, REMOVE);
+	}
+
+	/**
+	 * Returns the number of sessions in memory, live or compacted. Passivated sessions aren't counted.
+	 *
+	 * @return the number of sessions in memory
+	 */
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * Returns the number of sessions whose game is live, rather than compacted or passivated.
+	 *
+	 * @return the number of live games
+	 */
+	public int getLiveCount() {
+		return live.get();
+	}
+
+	/**
+	 * Returns the number of sessions whose game is compacted in memory.
+	 *
+	 * @return the number of compacted games
+	 */
+	public int getCompactedCount() {
+		return compacted.get();
+	}
+
+	/**
+	 * Passivates every session to disk, so they can be carried on by a manager using the same directory,
+	 * then stops the manager's threads.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for sessions to be written
+	 */
+	public void close() throws InterruptedException {
+		sweeper.shutdownNow();
+
+		List<Session> open = new ArrayList<Session>(sessions.values());
+		final CountDownLatch done = new CountDownLatch(open.size());
+
+		for (final Session session : open) {
+			session.post(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (!session.gone) passivate(session);
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+
+		done.await();
+
+		workers.shutdown();
+		workers.awaitTermination(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Queues the task to the session with the given ID, bringing the session back from disk if it isn't in memory.
+	 */
+	private <T> void post(final String id, final Task<T> task, final CompletableFuture<T> result) {
+		Session session = sessions.get(id);
+
+		if (session == null) {
+			//an empty session, which reads the game back from disk when it runs its first task
+			Session empty = new Session(id, workers);
+			session = sessions.putIfAbsent(id, empty);
+			if (session == null) session = empty;
+		}
+
+		final Session target = session;
+		target.lastUsed = System.nanoTime();
+
+		target.post(new Runnable() {
+			@Override
+			public void run() {
+				if (target.gone) {
+					//passivated or removed while this was waiting, so start over
+					post(id, task, result);
+					return;
+				}
+
+				try {
+					Minesweeper game = activate(target);
+
+					if (game == null) {
+						result.completeExceptionally(new NoSuchElementException("No session " + id));
+					} else {
+						T value = task.run(game);
+						if (task == REMOVE) drop(target);
+
+						result.complete(value);
+					}
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Makes the session's game live, reading it back from its array or from disk as needed.
+	 * Returns null, and drops the session, if it doesn't exist on disk either.
+	 */
+	private Minesweeper activate(Session session) throws IOException {
+		if (session.game != null) return session.game;
+
+		if (session.compacted == null) {
+			File file = fileOf(session.id);
+
+			if (!file.isFile()) {
+				drop(session);
+				return null;
+			}
+
+			session.compacted = Files.readAllBytes(file.toPath());
+			compacted.incrementAndGet();
+
+			//the session is in memory again, and will be written again if passivated again
+			Files.delete(file.toPath());
+		}
+
+		Minesweeper game = SavedGame.fromBytes(session.compacted, LISTENER);
+		game.setTicking(false);
+
+		session.game = game;
+		session.compacted = null;
+
+		compacted.decrementAndGet();
+		live.incrementAndGet();
+
+		return game;
+	}
+
+	/**
+	 * Saves the session's game to an array and lets the live game go.
+	 */
+	private void compact(Session session) throws IOException {
+		if (session.game == null) return;
+
+		Minesweeper game = session.game;
+		game.pauseTimer();
+
+		session.compacted = SavedGame.toBytes(game);
+		session.game = null;
+
+		game.stopTimer();
+
+		live.decrementAndGet();
+		compacted.incrementAndGet();
+	}
+
+	/**
+	 * Writes the session to disk and drops it from memory. A session that can't be written is left in memory.
+	 */
+	private void passivate(Session session) {
+		try {
+			compact(session);
+			if (session.compacted == null) return;
+
+			Path target = fileOf(session.id).toPath();
+			Path temp = Files.createTempFile(directory.toPath(), "session", ".tmp");
+
+			try {
+				Files.write(temp, session.compacted);
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		drop(session);
+	}
+
+	/**
+	 * Removes the session from memory. Must be run from the session's mailbox.
+	 */
+	private void drop(Session session) {
+		if (session.game != null) {
+			session.game.stopTimer();
+			live.decrementAndGet();
+		}
+		if (session.compacted != null) compacted.decrementAndGet();
+
+		session.game = null;
+		session.compacted = null;
+		session.gone = true;
+
+		sessions.remove(session.id, session);
+	}
+
+	/**
+	 * Queues idle work for every session that has been idle long enough to be compacted or passivated.
+	 */
+	private void sweep() {
+		long now = System.nanoTime();
+
+		for (final Session session : sessions.values()) {
+			long idle = now - session.lastUsed;
+			if (session.idling || idle < compactAfter) continue;
+
+			final boolean passivating = idle >= passivateAfter;
+
+			session.idling = true;
+			session.post(new Runnable() {
+				@Override
+				public void run() {
+					session.idling = false;
+
+					//used again since the sweep, or already done
+					if (session.gone || System.nanoTime() - session.lastUsed < compactAfter) return;
+
+					if (passivating) {
+						passivate(session);
+					} else {
+						try {
+							compact(session);
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				}
+			});
+		}
+	}
+
+	private File fileOf(String id) {
+		return new File(directory, id + SUFFIX);
+	}
+
+	private static ThreadFactory threadFactory(final String prefix) {
+		return new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, prefix + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		};
+	}
+}
@@ -0,0 +1,313 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits a simulation into ranges of games and hands them out to {@link Worker}s over TCP, 
+ * merging their results into one report. <p>
+ * 
+ * Workers can be started by the coordinator as local processes, or started separately and pointed at its port.
+ * A range is only counted once a worker has sent back all of its results, so if a worker dies, disconnects,
+ * or hangs for longer than the timeout, the range it was playing goes back in the queue for another worker,
+ * and nothing else is lost.
+ * Games are seeded by their index as in {@link Simulation}, so the wins are the same however the games are split.
+ */
+public class Coordinator {
+
+	/**
+	 * How many games are handed out at a time.
+	 */
+	private static final int RANGE = 1024;
+
+	/**
+	 * How often to check the workers are still alive while waiting for results, in milliseconds.
+	 */
+	private static final long CHECK_DELAY = 1000;
+
+	/**
+	 * How long a worker has to send back the results of a range before it is given up on, in milliseconds.
+	 */
+	public static final int DEFAULT_TIMEOUT = 5 * 60 * 1000;
+
+	private final int width, height, numMines, games;
+	private final long seed;
+
+	private final ServerSocket server;
+
+	private volatile int timeout = DEFAULT_TIMEOUT;
+
+	private final List<Process> processes = new ArrayList<Process>();
+
+	//everything below is guarded by lock
+	private final Object lock = new Object();
+
+	/**
+	 * The ranges not yet handed out, each {first, count}.
+	 */
+	private final Deque<int[]> pending = new ArrayDeque<int[]>();
+
+	private final long[] latencies;
+	private int wins, completed, connections;
+
+	/**
+	 * Creates a coordinator listening on the loopback address.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines the number of mines
+	 * @param games the number of games to play
+	 * @param seed the seed every game's seed is derived from
+	 * @param port the port to listen on, or 0 for any free port
+	 * @throws IOException if the port can't be listened on
+	 */
+	public Coordinator(int width, int height, int numMines, int games, long seed, int port) throws IOException {
+		this(width, height, numMines, games, seed, new ServerSocket(port, 50, InetAddress.getLoopbackAddress()));
+	}
+
+	/**
+	 * Creates a coordinator listening on the given socket, such as one bound to a public address for remote workers.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines the number of mines
+	 * @param games the number of games to play
+	 * @param seed the seed every game's seed is derived from
+	 * @param server the bound socket to accept workers on
+	 */
+	public Coordinator(int width, int height, int numMines, int games, long seed, ServerSocket server) {
+		this.width = width;
+		this.height = height;
+		this.numMines = numMines;
+		this.games = games;
+		this.seed = seed;
+		this.server = server;
+
+		latencies = new long[games];
+
+		for (int first = 0; first < games; first += RANGE) {
+			pending.add(new int[] {first, Math.min(RANGE, games - first)});
+		}
+	}
+
+	/**
+	 * @return the port workers should connect to
+	 */
+	public int getPort() {
+		return server.getLocalPort();
+	}
+
+	/**
+	 * Sets how long a worker has to send back the results of a range before its connection is closed and the
+	 * range handed to another worker. It must be longer than a range takes to play.
+	 *
+	 * @param timeout the timeout in milliseconds, or 0 to wait forever
+	 */
+	public void setTimeout(int timeout) {
+		if (timeout < 0) throw new IllegalArgumentException("Negative timeout: " + timeout);
+
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Starts worker processes on this machine, using the same java and classpath as this process.
+	 * Their output goes to this process's output.
+	 *
+	 * @param count the number of processes to start
+	 * @param threads the number of threads each should play on
+	 * @param jvmOptions options to start each with, such as heap size
+	 * @throws IOException if a process can't be started
+	 */
+	public void startWorkers(int count, int threads, List<String> jvmOptions) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+		for (int i = 0; i < count; i++) {
+			List<String> command = new ArrayList<String>();
+			command.add(java);
+			command.addAll(jvmOptions);
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add("nz.co.troyshaw.minesweeper.main.SimulationWorker");
+			command.add(InetAddress.getLoopbackAddress().getHostAddress());
+			command.add(String.valueOf(getPort()));
+			command.add(String.valueOf(threads));
+
+			Process process = new ProcessBuilder(command).inheritIO().start();
+
+			synchronized (lock) {
+				processes.add(process);
+			}
+		}
+	}
+
+	/**
+	 * Hands out games until every one has been played, then stops the workers.
+	 *
+	 * @return the merged report of every game
+	 * @throws IOException if every worker this coordinator started has died with games still unplayed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public SimulationReport run() throws IOException, InterruptedException {
+		long start = System.nanoTime();
+
+		Thread acceptor = new Thread("coordinator-accept") {
+			@Override
+			public void run() {
+				accept();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		try {
+			synchronized (lock) {
+				while (completed < games) {
+					lock.wait(CHECK_DELAY);
+
+					if (completed < games && connections == 0 && !processes.isEmpty() && !anyAlive()) {
+						throw new IOException("Every worker died with " + (games - completed) + " games unplayed");
+					}
+				}
+			}
+		} finally {
+			server.close();
+
+			//workers that are still connected are told they are done, any still starting up are not needed
+			for (Process p : processes) {
+				if (p.waitFor(CHECK_DELAY, TimeUnit.MILLISECONDS)) continue;
+				p.destroy();
+			}
+		}
+
+		return new SimulationReport(wins, System.nanoTime() - start, latencies);
+	}
+
+	private boolean anyAlive() {
+		for (Process p : processes) {
+			if (p.isAlive()) return true;
+		}
+		return false;
+	}
+
+	private void accept() {
+		try {
+			while (true) {
+				final Socket socket = server.accept();
+
+				Thread t = new Thread("coordinator-" + socket.getRemoteSocketAddress()) {
+					@Override
+					public void run() {
+						serve(socket);
+					}
+				};
+				t.setDaemon(true);
+				t.start();
+			}
+		} catch (IOException e) {
+			//closed once every game is played
+		}
+	}
+
+	/**
+	 * Feeds ranges to one worker until there are none left or the worker goes away.
+	 */
+	private void serve(Socket socket) {
+		int[] range = null;
+
+		synchronized (lock) {
+			connections++;
+		}
+
+		try {
+			socket.setTcpNoDelay(true);
+
+			//a worker that hangs without disconnecting would otherwise keep its range forever
+			socket.setSoTimeout(timeout);
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			ByteBuffer hello = Protocol.expect(in, Protocol.HELLO);
+			if (hello.getInt() != Protocol.MAGIC || hello.getInt() != Protocol.VERSION) throw new IOException("Not a compatible worker");
+
+			ByteBuffer job = ByteBuffer.allocate(28);
+
+			while ((range = takeRange()) != null) {
+				job.clear();
+				job.putInt(width).putInt(height).putInt(numMines).putLong(seed).putInt(range[0]).putInt(range[1]).flip();
+				Protocol.write(out, Protocol.JOB, job);
+
+				ByteBuffer results = Protocol.expect(in, Protocol.RESULTS);
+				if (results.getInt() != range[0] || results.getInt() != range[1]) throw new IOException("Results for the wrong range");
+				if (results.remaining() != range[1] * Protocol.RESULT_SIZE) throw new IOException("Results cut short");
+
+				record(range, results);
+				range = null;
+			}
+
+			Protocol.write(out, Protocol.DONE, ByteBuffer.allocate(0));
+		} catch (IOException e) {
+			//the worker crashed, disconnected or timed out, its range is requeued below
+		} finally {
+			synchronized (lock) {
+				connections--;
+
+				if (range != null) {
+					pending.addFirst(range);
+				}
+				lock.notifyAll();
+			}
+
+			try {
+				socket.close();
+			} catch (IOException e) {
+				//nothing more we can do
+			}
+		}
+	}
+
+	/**
+	 * Takes the next range to hand out, waiting while there are none but some are still being played 
+	 * (in case their worker dies).
+	 *
+	 * @return the range, or null once every game has been played
+	 */
+	private int[] takeRange() throws IOException {
+		synchronized (lock) {
+			while (pending.isEmpty() && completed < games) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted waiting for work", e);
+				}
+			}
+
+			return pending.poll();
+		}
+	}
+
+	private void record(int[] range, ByteBuffer results) {
+		synchronized (lock) {
+			for (int i = 0; i < range[1]; i++) {
+				if (results.get() != 0) wins++;
+				latencies[range[0] + i] = results.getLong();
+			}
+
+			completed += range[1];
+			lock.notifyAll();
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+/**
+ * The outcome of a single simulated game.
+ */
+public class GameResult {
+
+	/**
+	 * The column names of {@link #appendCsv(StringBuilder)}.
+	 */
+	public static final String CSV_HEADER = "game,seed,won,guesses,nanos";
+
+	private final int game;
+	private final long seed;
+	private final boolean won;
+	private final int guesses;
+	private final long nanos;
+
+	/**
+	 * @param game the index of the game in its simulation
+	 * @param seed the seed the game was played with
+	 * @param won true if the game was won
+	 * @param guesses the number of times the solver had to guess
+	 * @param nanos how long the game took to play, in nanoseconds
+	 */
+	public GameResult(int game, long seed, boolean won, int guesses, long nanos) {
+		this.game = game;
+		this.seed = seed;
+		this.won = won;
+		this.guesses = guesses;
+		this.nanos = nanos;
+	}
+
+	public int getGame() {
+		return game;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isWon() {
+		return won;
+	}
+
+	public int getGuesses() {
+		return guesses;
+	}
+
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Appends this result as a line of CSV, in the order of {@link #CSV_HEADER}.
+	 *
+	 * @param sb the builder to append to
+	 */
+	public void appendCsv(StringBuilder sb) {
+		sb.append(game).append(',')
+			.append(seed).append(',')
+			.append(won).append(',')
+			.append(guesses).append(',')
+			.append(nanos).append('\n');
+	}
+}
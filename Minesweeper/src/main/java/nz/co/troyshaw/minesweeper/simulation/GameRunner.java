@@ -0,0 +1,135 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+import nz.co.troyshaw.minesweeper.game.Minesweeper;
+import nz.co.troyshaw.minesweeper.game.MinesweeperAdapter;
+import nz.co.troyshaw.minesweeper.game.MoveLog;
+import nz.co.troyshaw.minesweeper.solver.Solver;
+
+/**
+ * Plays games of one size with the solver, guessing whenever it gets stuck. <p>
+ * 
+ * The same game, board and solver are reused for every game played. The only garbage per game is from populating
+ * the board, which uses a few scratch arrays the size of the board and lets them go once the mines are placed, 
+ * so a board kept between games stays small. A runner must only be used by one thread.
+ */
+public class GameRunner {
+
+	private final int width, height;
+
+	/**
+	 * Chooses the guesses.
+	 */
+	private final Random random = new Random();
+
+	private final Minesweeper game;
+	private final Solver solver;
+
+	/**
+	 * Where to write the move logs of lost games, or null to not log them.
+	 */
+	private File logDirectory;
+	private ByteArrayOutputStream logBuffer;
+
+	/**
+	 * Creates a runner for games of the given size.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines the number of mines
+	 */
+	public GameRunner(int width, int height, int numMines) {
+		this.width = width;
+		this.height = height;
+
+		game = new Minesweeper(width, height, numMines, new MinesweeperAdapter(), 0);
+		solver = game.getSolver();
+	}
+
+	/**
+	 * Writes the move log of every lost game to the given directory, as <code>game-[index].mslog</code>, 
+	 * so the loss can be replayed. Moves are logged in memory, so only losses touch the disk.
+	 *
+	 * @param logDirectory the directory, or null to stop logging
+	 */
+	public void setLogDirectory(File logDirectory) {
+		this.logDirectory = logDirectory;
+		
+		if (logDirectory != null && logBuffer == null) logBuffer = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Plays a game through to the end. The first click is in the centre of the board.
+	 * The same seed always plays out the same game.
+	 *
+	 * @param index the index of the game, recorded in the result
+	 * @param seed places the mines and chooses the guesses
+	 * @return the result of the game
+	 * @throws IOException if the game was lost and its log couldn't be written
+	 */
+	public GameResult play(int index, long seed) throws IOException {
+		game.restart(seed);
+		solver.reset();
+
+		//not the same sequence as the board's
+		random.setSeed(~seed);
+
+		if (logDirectory != null) {
+			logBuffer.reset();
+			game.setMoveLog(new MoveLog(logBuffer, game));
+		}
+
+		long start = System.nanoTime();
+		int guesses = 0;
+
+		game.revealSquare(width / 2, height / 2);
+
+		while (true) {
+			solver.solve();
+
+			if (game.isGameFinished() || !solver.guess(random)) break;
+
+			guesses++;
+		}
+
+		long nanos = System.nanoTime() - start;
+
+		game.stopTimer();
+
+		if (logDirectory != null && !game.hasWon()) writeLog(index);
+
+		return new GameResult(index, seed, game.hasWon(), guesses, nanos);
+	}
+
+	private void writeLog(int index) throws IOException {
+		OutputStream out = new FileOutputStream(new File(logDirectory, "game-" + index + ".mslog"));
+
+		try {
+			logBuffer.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Returns the seed of a game, given the seed of the simulation and the game's index. 
+	 * Nearby indexes give unrelated seeds, so every game differs however the games are split between threads.
+	 *
+	 * @param seed the seed of the whole simulation
+	 * @param index the index of the game
+	 * @return the seed of the game
+	 */
+	public static long gameSeed(long seed, long index) {
+		//the 64 bit finaliser from MurmurHash3
+		long z = seed + index * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+		z = (z ^ (z >>> 33)) * 0xC4CEB93FE1A85DD3L;
+		return z ^ (z >>> 33);
+	}
+}
@@ -0,0 +1,83 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The framing of messages between a {@link Coordinator} and its {@link Worker}s. <p>
+ * 
+ * Every message is a frame of a 4 byte length, then a 1 byte type, then length - 1 bytes of payload, 
+ * all big-endian. The payloads are:
+ * <ul>
+ * <li>HELLO, worker to coordinator: int magic, int version</li>
+ * <li>JOB, coordinator to worker: int width, int height, int mines, long seed, int first, int count</li>
+ * <li>RESULTS, worker to coordinator: int first, int count, then for each game byte won, long nanos</li>
+ * <li>DONE, coordinator to worker: empty, there is no more work</li>
+ * </ul>
+ */
+class Protocol {
+
+	static final int MAGIC = 0x4D53494D;
+	static final int VERSION = 1;
+
+	static final byte HELLO = 1, JOB = 2, RESULTS = 3, DONE = 4;
+
+	/**
+	 * Bigger frames than this are taken to mean the stream is corrupt.
+	 */
+	private static final int MAX_FRAME = 64 << 20;
+
+	/**
+	 * The bytes each game takes in a RESULTS payload.
+	 */
+	static final int RESULT_SIZE = 1 + 8;
+
+	/**
+	 * Writes and flushes a frame.
+	 *
+	 * @param out the stream to write to
+	 * @param type the frame type
+	 * @param payload the payload, from position to limit
+	 */
+	static void write(DataOutputStream out, byte type, ByteBuffer payload) throws IOException {
+		out.writeInt(payload.remaining() + 1);
+		out.writeByte(type);
+		out.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+		out.flush();
+	}
+
+	/**
+	 * Reads a frame, returning its payload with the type as the first byte.
+	 *
+	 * @param in the stream to read from
+	 * @return the frame, positioned at the type
+	 * @throws IOException if the stream ends or the frame is malformed
+	 */
+	static ByteBuffer read(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 1 || length > MAX_FRAME) throw new IOException("Bad frame length " + length);
+
+		byte[] frame = new byte[length];
+		in.readFully(frame);
+
+		return ByteBuffer.wrap(frame);
+	}
+
+	/**
+	 * Reads a frame, failing unless it is of the given type.
+	 *
+	 * @param in the stream to read from
+	 * @param type the expected type
+	 * @return the payload, positioned after the type
+	 * @throws IOException if the stream ends, or the frame is malformed or of another type
+	 */
+	static ByteBuffer expect(DataInputStream in, byte type) throws IOException {
+		ByteBuffer frame = read(in);
+		byte actual = frame.get();
+
+		if (actual != type) throw new IOException("Expected frame type " + type + " but got " + actual);
+		return frame;
+	}
+}
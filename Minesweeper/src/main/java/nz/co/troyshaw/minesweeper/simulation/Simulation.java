@@ -0,0 +1,171 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays many games of one size with the solver, spread over a pool of threads. <p>
+ * 
+ * Each thread has its own {@link GameRunner} and takes games a batch at a time from a shared counter, 
+ * so threads that get quick games simply play more of them. Game i is always played with the same seed 
+ * (see {@link GameRunner#gameSeed(long, long)}), so the results don't depend on the number of threads.
+ */
+public class Simulation {
+
+	/**
+	 * How many games a thread takes at once. Results are handed over a batch at a time as well.
+	 */
+	private static final int BATCH = 64;
+
+	/**
+	 * Given the results of games as they finish. 
+	 * Calls are never concurrent, but come from the simulation's threads and in no particular order of game.
+	 */
+	public interface ResultHandler {
+		public void gamesFinished(List<GameResult> results) throws IOException;
+	}
+
+	private final int width, height, numMines, first, games, threads;
+	private final long seed;
+
+	private File logDirectory;
+
+	/**
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines the number of mines
+	 * @param games the number of games to play
+	 * @param threads the number of threads to play on
+	 * @param seed the seed every game's seed is derived from
+	 */
+	public Simulation(int width, int height, int numMines, int games, int threads, long seed) {
+		this(width, height, numMines, 0, games, threads, seed);
+	}
+
+	/**
+	 * Creates a simulation of only some of the games of a larger one, 
+	 * for splitting a simulation between processes. The games are numbered from first.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param numMines the number of mines
+	 * @param first the index of the first game to play
+	 * @param games the number of games to play
+	 * @param threads the number of threads to play on
+	 * @param seed the seed every game's seed is derived from
+	 */
+	public Simulation(int width, int height, int numMines, int first, int games, int threads, long seed) {
+		if (games < 0 || threads < 1) throw new IllegalArgumentException("Need a positive number of threads and games");
+		
+		this.width = width;
+		this.height = height;
+		this.numMines = numMines;
+		this.first = first;
+		this.games = games;
+		this.threads = threads;
+		this.seed = seed;
+	}
+
+	/**
+	 * Writes the move log of every lost game to the given directory (see {@link GameRunner#setLogDirectory(File)}).
+	 *
+	 * @param logDirectory the directory, or null to not log games
+	 */
+	public void setLogDirectory(File logDirectory) {
+		this.logDirectory = logDirectory;
+	}
+
+	/**
+	 * Plays every game, returning once they have all finished.
+	 *
+	 * @param handler given the results as games finish, or null
+	 * @return the totals of the simulation
+	 * @throws IOException if the handler fails. The simulation is stopped
+	 * @throws InterruptedException if interrupted while waiting for the games
+	 */
+	public SimulationReport run(final ResultHandler handler) throws IOException, InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger wins = new AtomicInteger();
+		final long[] latencies = new long[games];
+		final Object handlerLock = new Object();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "simulation-" + count++);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		List<Future<Void>> workers = new ArrayList<Future<Void>>();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < threads; i++) {
+			workers.add(pool.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					GameRunner runner = new GameRunner(width, height, numMines);
+					runner.setLogDirectory(logDirectory);
+					List<GameResult> batch = new ArrayList<GameResult>(BATCH);
+
+					int start;
+					while ((start = next.getAndAdd(BATCH)) < games && !Thread.currentThread().isInterrupted()) {
+						int end = Math.min(games, start + BATCH);
+						int won = 0;
+
+						batch.clear();
+
+						for (int i = start; i < end; i++) {
+							GameResult result = runner.play(first + i, GameRunner.gameSeed(seed, first + i));
+
+							latencies[i] = result.getNanos();
+							if (result.isWon()) won++;
+
+							batch.add(result);
+						}
+
+						wins.addAndGet(won);
+
+						if (handler != null) {
+							synchronized (handlerLock) {
+								handler.gamesFinished(batch);
+							}
+						}
+					}
+					return null;
+				}
+			}));
+		}
+
+		pool.shutdown();
+
+		try {
+			for (Future<Void> worker : workers) {
+				worker.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return new SimulationReport(wins.get(), System.nanoTime() - start, latencies);
+	}
+}
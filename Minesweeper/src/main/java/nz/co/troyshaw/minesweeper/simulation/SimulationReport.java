@@ -0,0 +1,73 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The totals of a finished simulation: how many games were won, how quickly they were played, 
+ * and how long individual games took.
+ */
+public class SimulationReport {
+
+	private final int games, wins;
+	private final long elapsedNanos;
+
+	/**
+	 * How long each game took, sorted.
+	 */
+	private final long[] latencies;
+
+	/**
+	 * @param wins the number of games won
+	 * @param elapsedNanos the wall clock time taken to play every game
+	 * @param latencies how long each game took in nanoseconds, in any order. The array is sorted in place
+	 */
+	public SimulationReport(int wins, long elapsedNanos, long[] latencies) {
+		this.games = latencies.length;
+		this.wins = wins;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = latencies;
+
+		Arrays.sort(latencies);
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	public int getWins() {
+		return wins;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the fraction of games won, from 0 to 1
+	 */
+	public double getWinRate() {
+		return games == 0 ? 0 : (double) wins / games;
+	}
+
+	/**
+	 * @return the number of games played per second of wall clock time, across all threads
+	 */
+	public double getGamesPerSecond() {
+		return elapsedNanos == 0 ? 0 : games * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+	}
+
+	/**
+	 * Returns the time within which the given percentage of games were played.
+	 *
+	 * @param percent the percentile, from 0 to 100
+	 * @return the time in nanoseconds, or 0 if no games were played
+	 */
+	public long getPercentile(double percent) {
+		if (games == 0) return 0;
+
+		//nearest rank
+		int rank = (int) Math.ceil(percent / 100 * games);
+		return latencies[Math.max(0, Math.min(games, rank) - 1)];
+	}
+}
@@ -0,0 +1,202 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Plays a simulation for every combination of a set of board sizes and mine densities. <p>
+ * 
+ * Each cell's seed is split off a master {@link SplittableRandom} in grid order, so the same master seed and grid 
+ * always play the same games and get the same wins, whatever the number of threads. 
+ * Cells are played one after another, each spread over every thread. <p>
+ * 
+ * As each cell finishes it is appended to a checkpoint file and synced to disk. Running the same sweep again 
+ * with the same checkpoint only plays the cells that are missing from it, so an interrupted sweep picks up 
+ * where it stopped.
+ */
+public class Sweep {
+
+	/**
+	 * Told as each cell is finished, either played or read from the checkpoint.
+	 */
+	public interface Progress {
+		public void cellFinished(SweepCell cell, boolean resumed);
+	}
+
+	private final int[][] sizes;
+	private final double[] densities;
+	private final int threads;
+
+	/**
+	 * Every cell, by size then density.
+	 */
+	private final List<SweepCell> cells = new ArrayList<SweepCell>();
+
+	/**
+	 * Creates a sweep.
+	 *
+	 * @param sizes the board sizes, each {width, height}
+	 * @param densities the fractions of squares that are mines
+	 * @param games the number of games to play in each cell
+	 * @param threads the number of threads to play on
+	 * @param seed the master seed
+	 */
+	public Sweep(int[][] sizes, double[] densities, int games, int threads, long seed) {
+		this.sizes = sizes;
+		this.densities = densities;
+		this.threads = threads;
+
+		SplittableRandom master = new SplittableRandom(seed);
+
+		for (int[] size : sizes) {
+			for (double density : densities) {
+				cells.add(new SweepCell(size[0], size[1], density, games, master.split().nextLong()));
+			}
+		}
+	}
+
+	/**
+	 * Plays every cell not already in the checkpoint, appending each to the checkpoint as it finishes.
+	 *
+	 * @param checkpoint the checkpoint file, created if it doesn't exist
+	 * @param progress told as each cell finishes, or null
+	 * @return every cell of the sweep, finished
+	 * @throws IOException if the checkpoint can't be read or written
+	 * @throws InterruptedException if interrupted while playing a cell
+	 */
+	public List<SweepCell> run(File checkpoint, Progress progress) throws IOException, InterruptedException {
+		List<SweepCell> done = readCheckpoint(checkpoint);
+
+		for (int i = 0; i < cells.size(); i++) {
+			for (SweepCell d : done) {
+				if (d.sameAs(cells.get(i))) {
+					cells.set(i, d);
+					if (progress != null) progress.cellFinished(d, true);
+					break;
+				}
+			}
+		}
+
+		FileOutputStream out = openCheckpoint(checkpoint);
+
+		try {
+			for (SweepCell cell : cells) {
+				if (cell.isFinished()) continue;
+
+				Simulation simulation = new Simulation(cell.getWidth(), cell.getHeight(), cell.getMines(), cell.getGames(), threads, cell.getSeed());
+				cell.finish(simulation.run(null));
+
+				out.write((cell.toCsv() + "\n").getBytes(StandardCharsets.UTF_8));
+				out.getChannel().force(false);
+
+				if (progress != null) progress.cellFinished(cell, false);
+			}
+		} finally {
+			out.close();
+		}
+
+		return Collections.unmodifiableList(cells);
+	}
+
+	/**
+	 * Prints the win rate and games per second of every finished cell, as tables of size against density.
+	 *
+	 * @param out the stream to print to
+	 */
+	public void printTables(PrintStream out) {
+		out.println("win rate (%)");
+		printTable(out, false);
+		out.println();
+		out.println("games per second");
+		printTable(out, true);
+	}
+
+	private void printTable(PrintStream out, boolean speed) {
+		out.printf("%-10s", "size");
+		for (double density : densities) out.printf("%10s", density);
+		out.println();
+
+		int cell = 0;
+
+		for (int[] size : sizes) {
+			out.printf("%-10s", size[0] + "x" + size[1]);
+
+			for (int d = 0; d < densities.length; d++) {
+				SweepCell c = cells.get(cell++);
+
+				if (!c.isFinished()) out.printf("%10s", "-");
+				else if (speed) out.printf("%10.0f", c.getGamesPerSecond());
+				else out.printf("%10.2f", c.getWinRate() * 100);
+			}
+			out.println();
+		}
+	}
+
+	/**
+	 * Reads the finished cells from the checkpoint. A last line without its newline was cut short by a crash, 
+	 * even if all its fields are there, so it is ignored and the cell played again.
+	 */
+	private static List<SweepCell> readCheckpoint(File checkpoint) throws IOException {
+		List<SweepCell> done = new ArrayList<SweepCell>();
+
+		if (!checkpoint.exists()) return done;
+
+		String text = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8);
+
+		//only whole lines count
+		for (String line : text.substring(0, text.lastIndexOf('\n') + 1).split("\n")) {
+			if (line.isEmpty() || line.equals(SweepCell.CSV_HEADER)) continue;
+
+			try {
+				done.add(SweepCell.fromCsv(line));
+			} catch (IllegalArgumentException e) {
+				//not a cell, so it will be played again
+			}
+		}
+
+		return done;
+	}
+
+	/**
+	 * Opens the checkpoint for appending, writing the header to a new file, 
+	 * and cutting off any line a crash left unfinished so new cells start on their own line.
+	 */
+	private static FileOutputStream openCheckpoint(File checkpoint) throws IOException {
+		boolean needsHeader = !checkpoint.exists() || checkpoint.length() == 0;
+
+		if (!needsHeader) {
+			RandomAccessFile raf = new RandomAccessFile(checkpoint, "rw");
+			try {
+				//back up to just after the last newline, which is the end of the last whole line
+				long end = raf.length();
+				while (end > 0) {
+					raf.seek(end - 1);
+					if (raf.read() == '\n') break;
+					end--;
+				}
+
+				if (end < raf.length()) raf.setLength(end);
+			} finally {
+				raf.close();
+			}
+
+			//a header cut short leaves nothing
+			needsHeader = checkpoint.length() == 0;
+		}
+
+		FileOutputStream out = new FileOutputStream(checkpoint, true);
+
+		if (needsHeader) out.write((SweepCell.CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+
+		return out;
+	}
+}
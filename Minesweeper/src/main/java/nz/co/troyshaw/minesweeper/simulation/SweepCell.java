@@ -0,0 +1,160 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+/**
+ * One cell of a sweep: a board size and mine density, the seed its games are played with, 
+ * and once played, the results.
+ */
+public class SweepCell {
+
+	/**
+	 * The column names of {@link #toCsv()}.
+	 */
+	public static final String CSV_HEADER = "width,height,density,mines,games,seed,wins,nanos,p50,p90,p99";
+
+	private final int width, height, mines, games;
+	private final double density;
+	private final long seed;
+
+	private boolean finished;
+	private int wins;
+	private long nanos, p50, p90, p99;
+
+	/**
+	 * Creates an unplayed cell.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param density the fraction of squares that are mines
+	 * @param games the number of games to play
+	 * @param seed the seed the cell's games are derived from
+	 */
+	public SweepCell(int width, int height, double density, int games, long seed) {
+		this.width = width;
+		this.height = height;
+		this.density = density;
+		this.games = games;
+		this.seed = seed;
+
+		//always leave room for the first click
+		mines = Math.max(1, Math.min(width * height - 1, (int) Math.round(width * height * density)));
+	}
+
+	/**
+	 * Records the results of playing this cell.
+	 *
+	 * @param report the report of the cell's simulation
+	 */
+	public void finish(SimulationReport report) {
+		finish(report.getWins(), report.getElapsedNanos(), report.getPercentile(50), report.getPercentile(90), report.getPercentile(99));
+	}
+
+	private void finish(int wins, long nanos, long p50, long p90, long p99) {
+		this.wins = wins;
+		this.nanos = nanos;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		finished = true;
+	}
+
+	/**
+	 * Returns true if the given cell is the same experiment as this one: the same board, games and seed.
+	 *
+	 * @param other the other cell
+	 * @return true if they are the same
+	 */
+	public boolean sameAs(SweepCell other) {
+		return width == other.width && height == other.height && mines == other.mines 
+				&& games == other.games && seed == other.seed;
+	}
+
+	/**
+	 * Returns the finished cell as a line of CSV, without the line end, in the order of {@link #CSV_HEADER}.
+	 *
+	 * @return the line
+	 */
+	public String toCsv() {
+		return width + "," + height + "," + density + "," + mines + "," + games + "," + seed + "," 
+				+ wins + "," + nanos + "," + p50 + "," + p90 + "," + p99;
+	}
+
+	/**
+	 * Reads a finished cell back from a line written by {@link #toCsv()}.
+	 *
+	 * @param line the line
+	 * @return the cell
+	 * @throws IllegalArgumentException if the line isn't a complete cell
+	 */
+	public static SweepCell fromCsv(String line) {
+		String[] f = line.split(",");
+		if (f.length != 11) throw new IllegalArgumentException("Not a sweep cell: " + line);
+
+		try {
+			SweepCell cell = new SweepCell(Integer.parseInt(f[0]), Integer.parseInt(f[1]), Double.parseDouble(f[2]), 
+					Integer.parseInt(f[4]), Long.parseLong(f[5]));
+			cell.finish(Integer.parseInt(f[6]), Long.parseLong(f[7]), Long.parseLong(f[8]), Long.parseLong(f[9]), Long.parseLong(f[10]));
+
+			return cell;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a sweep cell: " + line, e);
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public double getDensity() {
+		return density;
+	}
+
+	public int getMines() {
+		return mines;
+	}
+
+	public int getGames() {
+		return games;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public int getWins() {
+		return wins;
+	}
+
+	/**
+	 * @return the fraction of games won, from 0 to 1
+	 */
+	public double getWinRate() {
+		return games == 0 ? 0 : (double) wins / games;
+	}
+
+	/**
+	 * @return the games played per second, across all threads
+	 */
+	public double getGamesPerSecond() {
+		return nanos == 0 ? 0 : games * 1e9 / nanos;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+}
@@ -0,0 +1,99 @@
+package nz.co.troyshaw.minesweeper.simulation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Plays ranges of games for a {@link Coordinator}, usually in a process of its own. <p>
+ * 
+ * The worker connects to the coordinator, then plays each range it is sent and sends back the results, 
+ * until it is told there is no more work.
+ */
+public class Worker {
+
+	private final String host;
+	private final int port, threads;
+
+	/**
+	 * @param host the coordinator's host
+	 * @param port the coordinator's port
+	 * @param threads the number of threads to play each range on
+	 */
+	public Worker(String host, int port, int threads) {
+		this.host = host;
+		this.port = port;
+		this.threads = threads;
+	}
+
+	/**
+	 * Connects to the coordinator and plays games until there are no more.
+	 *
+	 * @throws IOException if the connection fails
+	 * @throws InterruptedException if interrupted while playing
+	 */
+	public void run() throws IOException, InterruptedException {
+		Socket socket = new Socket(host, port);
+
+		try {
+			socket.setTcpNoDelay(true);
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			ByteBuffer hello = ByteBuffer.allocate(8);
+			hello.putInt(Protocol.MAGIC).putInt(Protocol.VERSION).flip();
+			Protocol.write(out, Protocol.HELLO, hello);
+
+			while (true) {
+				ByteBuffer frame = Protocol.read(in);
+				byte type = frame.get();
+
+				if (type == Protocol.DONE) return;
+				if (type != Protocol.JOB) throw new IOException("Unexpected frame type " + type);
+
+				Protocol.write(out, Protocol.RESULTS, play(frame));
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Plays the range of a job, returning the RESULTS payload.
+	 */
+	private ByteBuffer play(ByteBuffer job) throws IOException, InterruptedException {
+		int width = job.getInt();
+		int height = job.getInt();
+		int mines = job.getInt();
+		long seed = job.getLong();
+		final int first = job.getInt();
+		int count = job.getInt();
+
+		final ByteBuffer results = ByteBuffer.allocate(8 + count * Protocol.RESULT_SIZE);
+		results.putInt(first).putInt(count);
+
+		final int base = results.position();
+
+		Simulation simulation = new Simulation(width, height, mines, first, count, threads, seed);
+		simulation.run(new Simulation.ResultHandler() {
+			@Override
+			public void gamesFinished(List<GameResult> batch) {
+				for (GameResult r : batch) {
+					int at = base + (r.getGame() - first) * Protocol.RESULT_SIZE;
+
+					results.put(at, (byte) (r.isWon() ? 1 : 0));
+					results.putLong(at + 1, r.getNanos());
+				}
+			}
+		});
+
+		results.position(0);
+		return results;
+	}
+}
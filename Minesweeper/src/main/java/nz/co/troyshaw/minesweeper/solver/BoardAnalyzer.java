@@ -0,0 +1,674 @@
+package nz.co.troyshaw.minesweeper.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Works out what can be known about a board from what a player can see: which squares must be safe,
+ * which must be mines, and the chance each other square is a mine. Unlike {@link Solver} this doesn't need
+ * the game, only the numbers showing, so it can answer for boards from anywhere. <p>
+ *
+ * First each number is checked on its own, as the solver does, until nothing more follows. Then the unknown
+ * squares next to numbers are split into groups that share no numbers, and every arrangement of mines in each
+ * group that fits its numbers is counted, along with how many mines it uses. The squares touching no numbers
+ * share the mines left over, so an arrangement leaving r mines for the i untouched squares counts C(i, r) times.
+ * Weighing the arrangements that way gives the exact chance for every square. A group with too many
+ * arrangements to count is instead treated as if it touched no numbers, and the result is marked as not exact. <p>
+ *
+ * Flags are taken to be correct.
+ */
+public class BoardAnalyzer {
+
+	/**
+	 * A square that hasn't been revealed or flagged.
+	 */
+	public static final int UNKNOWN = -1;
+
+	/**
+	 * A flagged square.
+	 */
+	public static final int FLAG = -2;
+
+	/**
+	 * How many steps counting the arrangements of one group can take before the group is given up on.
+	 */
+	private static final int MAX_STEPS = 1 << 20;
+
+	/**
+	 * Groups bigger than this are given up on straight away.
+	 */
+	private static final int MAX_GROUP = 1000;
+
+	/**
+	 * How many steps are taken between checks of the deadline.
+	 */
+	private static final int DEADLINE_CHECK = 4096;
+
+	//what is known about a square
+	private static final byte UNDECIDED = 0, MINE = 1, SAFE = 2;
+
+	/**
+	 * What was worked out about a board.
+	 */
+	public static class Result {
+		private final int width;
+		private final double[] probabilities;
+		private final int[] safe, mines;
+		private final int guess;
+		private final boolean exact;
+
+		private Result(int width, double[] probabilities, int[] safe, int[] mines, int guess, boolean exact) {
+			this.width = width;
+			this.probabilities = probabilities;
+			this.safe = safe;
+			this.mines = mines;
+			this.guess = guess;
+			this.exact = exact;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * Returns the chance the given square is a mine. Revealed squares are 0, and flagged squares 1.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @return the chance from 0 to 1
+		 */
+		public double getProbability(int x, int y) {
+			return probabilities[y * width + x];
+		}
+
+		/**
+		 * @return the indices of the unknown squares that must be safe, in index order
+		 */
+		public int[] getSafe() {
+			return safe;
+		}
+
+		/**
+		 * @return the indices of the unknown squares that must be mines, in index order
+		 */
+		public int[] getMines() {
+			return mines;
+		}
+
+		/**
+		 * @return the index of the unknown square least likely to be a mine, or -1 if there are no unknown squares
+		 */
+		public int getGuess() {
+			return guess;
+		}
+
+		/**
+		 * @return false if some groups had too many arrangements to count, so some chances are estimates
+		 */
+		public boolean isExact() {
+			return exact;
+		}
+	}
+
+	private final int width, height;
+	private final int[] cells;
+	private final byte[] known;
+	private final long deadline;
+
+	/**
+	 * The index of each number within the group being set up, or -1. Put back to all -1 after each group.
+	 */
+	private final int[] numberIndex;
+
+	private long steps;
+
+	private BoardAnalyzer(int width, int height, int[] cells, long deadline) {
+		this.width = width;
+		this.height = height;
+		this.cells = cells;
+		this.known = new byte[cells.length];
+		this.deadline = deadline;
+
+		numberIndex = new int[cells.length];
+		Arrays.fill(numberIndex, -1);
+	}
+
+	/**
+	 * Works out what can be known about the given board.
+	 *
+	 * @param width the width of the board
+	 * @param height the height of the board
+	 * @param mines the number of mines on the board
+	 * @param cells each square in index order (along each row from the top left): its number if revealed, otherwise {@link #UNKNOWN} or {@link #FLAG}
+	 * @param deadline when to give up, from {@link System#nanoTime()}
+	 * @return the result
+	 * @throws IllegalArgumentException if no placement of the mines fits the board
+	 * @throws TimeoutException if the deadline passed
+	 */
+	public static Result analyze(int width, int height, int mines, int[] cells, long deadline) throws TimeoutException {
+		if (width <= 0 || height <= 0 || cells.length != width * height) throw new IllegalArgumentException("Board is the wrong size");
+
+		for (int c : cells) {
+			if (c < FLAG || c > 8) throw new IllegalArgumentException("Invalid square " + c);
+		}
+
+		return new BoardAnalyzer(width, height, cells, deadline).analyze(mines);
+	}
+
+	private Result analyze(int mines) throws TimeoutException {
+		int n = cells.length;
+
+		for (int i = 0; i < n; i++) {
+			if (cells[i] == FLAG) known[i] = MINE;
+			else if (cells[i] >= 0) known[i] = SAFE;
+		}
+
+		propagate();
+
+		//the unknown squares next to numbers, and those touching none
+		int[] var = new int[n];
+		Arrays.fill(var, -1);
+
+		List<Integer> frontier = new ArrayList<Integer>();
+		int knownMines = 0, interior = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (known[i] == MINE) knownMines++;
+			if (known[i] != UNDECIDED) continue;
+
+			if (touchesNumber(i)) {
+				var[i] = frontier.size();
+				frontier.add(i);
+			} else {
+				interior++;
+			}
+		}
+
+		int left = mines - knownMines;
+		if (left < 0) throw new IllegalArgumentException("More mines are known than the board has");
+
+		List<Group> groups = new ArrayList<Group>();
+		boolean exact = true;
+
+		for (int[] members : split(frontier, var)) {
+			Group g = new Group(members, var);
+
+			if (g.count()) {
+				groups.add(g);
+			} else {
+				//too many arrangements, so its squares are left to share the leftover mines
+				exact = false;
+				interior += members.length;
+				for (int cell : members) var[cell] = -1;
+			}
+		}
+
+		double[] probabilities = weigh(groups, interior, left);
+
+		return result(probabilities, exact);
+	}
+
+	/**
+	 * Decides every square that follows from a single number, until nothing more does.
+	 */
+	private void propagate() throws TimeoutException {
+		int n = cells.length;
+		int[] queue = new int[n];
+		boolean[] queued = new boolean[n];
+		int head = 0, size = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (cells[i] >= 0) {
+				queue[size++] = i;
+				queued[i] = true;
+			}
+		}
+
+		while (size > 0) {
+			int cell = queue[head];
+			head = (head + 1) % n;
+			size--;
+			queued[cell] = false;
+
+			if (++steps % DEADLINE_CHECK == 0) checkDeadline();
+
+			int x = cell % width, y = cell / width;
+			int mines = 0, undecided = 0;
+
+			for (int i = x - 1; i <= x + 1; i++) {
+				for (int j = y - 1; j <= y + 1; j++) {
+					if (!exists(i, j)) continue;
+
+					int k = j * width + i;
+					if (known[k] == MINE) mines++;
+					else if (known[k] == UNDECIDED) undecided++;
+				}
+			}
+
+			if (mines > cells[cell] || mines + undecided < cells[cell]) throw new IllegalArgumentException("No placement of mines fits the board");
+			if (undecided == 0) continue;
+
+			byte decided;
+			if (mines == cells[cell]) decided = SAFE;
+			else if (mines + undecided == cells[cell]) decided = MINE;
+			else continue;
+
+			for (int i = x - 1; i <= x + 1; i++) {
+				for (int j = y - 1; j <= y + 1; j++) {
+					if (!exists(i, j) || known[j * width + i] != UNDECIDED) continue;
+
+					known[j * width + i] = decided;
+
+					//the numbers around a newly decided square may now decide more
+					for (int a = i - 1; a <= i + 1; a++) {
+						for (int b = j - 1; b <= j + 1; b++) {
+							int k = b * width + a;
+							if (!exists(a, b) || cells[k] < 0 || queued[k]) continue;
+
+							queue[(head + size++) % n] = k;
+							queued[k] = true;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Splits the frontier into groups of squares that share no numbers.
+	 */
+	private List<int[]> split(List<Integer> frontier, int[] var) {
+		List<int[]> groups = new ArrayList<int[]>();
+		boolean[] seen = new boolean[frontier.size()];
+		int[] stack = new int[frontier.size()];
+
+		for (int start = 0; start < frontier.size(); start++) {
+			if (seen[start]) continue;
+
+			List<Integer> members = new ArrayList<Integer>();
+			int size = 0;
+			stack[size++] = start;
+			seen[start] = true;
+
+			while (size > 0) {
+				int cell = frontier.get(stack[--size]);
+				members.add(cell);
+
+				int x = cell % width, y = cell / width;
+
+				//squares two apart can share a number between them
+				for (int i = x - 2; i <= x + 2; i++) {
+					for (int j = y - 2; j <= y + 2; j++) {
+						if (!exists(i, j)) continue;
+
+						int v = var[j * width + i];
+						if (v < 0 || seen[v] || !shareNumber(cell, j * width + i)) continue;
+
+						seen[v] = true;
+						stack[size++] = v;
+					}
+				}
+			}
+
+			int[] group = new int[members.size()];
+			for (int i = 0; i < group.length; i++) group[i] = members.get(i);
+			groups.add(group);
+		}
+
+		return groups;
+	}
+
+	/**
+	 * The arrangements of mines in one group that fit its numbers.
+	 */
+	private class Group {
+		private final int[] members;
+
+		/**
+		 * The numbers touching the group: the mines each still needs, and the group squares around it.
+		 */
+		private final int[] needed;
+		private final int[] free;
+
+		/**
+		 * For each member, in order, the numbers it touches.
+		 */
+		private final int[][] constraints;
+
+		/**
+		 * The number of arrangements using k mines, and of those how many have a mine on each member.
+		 * Both are divided by the same amount to stay in range.
+		 */
+		private double[] counts;
+		private double[][] mineCounts;
+
+		private final boolean[] assigned;
+		private int placed;
+		private long groupSteps;
+
+		private Group(int[] members, int[] var) {
+			this.members = members;
+
+			List<Integer> numbers = new ArrayList<Integer>();
+			int[] index = numberIndex;
+
+			constraints = new int[members.length][];
+
+			for (int m = 0; m < members.length; m++) {
+				int x = members[m] % width, y = members[m] / width;
+				List<Integer> touching = new ArrayList<Integer>();
+
+				for (int i = x - 1; i <= x + 1; i++) {
+					for (int j = y - 1; j <= y + 1; j++) {
+						int k = j * width + i;
+						if (!exists(i, j) || cells[k] < 0) continue;
+
+						if (index[k] < 0) {
+							index[k] = numbers.size();
+							numbers.add(k);
+						}
+						touching.add(index[k]);
+					}
+				}
+
+				constraints[m] = new int[touching.size()];
+				for (int t = 0; t < touching.size(); t++) constraints[m][t] = touching.get(t);
+			}
+
+			needed = new int[numbers.size()];
+			free = new int[numbers.size()];
+
+			for (int c = 0; c < needed.length; c++) {
+				int cell = numbers.get(c);
+				index[cell] = -1;
+				int x = cell % width, y = cell / width;
+
+				needed[c] = cells[cell];
+
+				for (int i = x - 1; i <= x + 1; i++) {
+					for (int j = y - 1; j <= y + 1; j++) {
+						if (!exists(i, j)) continue;
+
+						int k = j * width + i;
+						if (known[k] == MINE) needed[c]--;
+						else if (known[k] == UNDECIDED && var[k] >= 0) free[c]++;
+					}
+				}
+			}
+
+			assigned = new boolean[members.length];
+		}
+
+		/**
+		 * Counts every arrangement, returning false if there were too many.
+		 */
+		private boolean count() throws TimeoutException {
+			if (members.length > MAX_GROUP) return false;
+
+			counts = new double[members.length + 1];
+			mineCounts = new double[members.length][members.length + 1];
+
+			if (!search(0)) return false;
+
+			double max = 0;
+			for (double c : counts) max = Math.max(max, c);
+
+			if (max == 0) throw new IllegalArgumentException("No placement of mines fits the board");
+
+			for (int k = 0; k < counts.length; k++) {
+				counts[k] /= max;
+				for (int m = 0; m < members.length; m++) mineCounts[m][k] /= max;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Tries both ways for the given member and every member after it, returning false if out of steps.
+		 */
+		private boolean search(int m) throws TimeoutException {
+			if (++groupSteps > MAX_STEPS) return false;
+			if (++steps % DEADLINE_CHECK == 0) checkDeadline();
+
+			if (m == members.length) {
+				counts[placed]++;
+				for (int i = 0; i < members.length; i++) {
+					if (assigned[i]) mineCounts[i][placed]++;
+				}
+				return true;
+			}
+
+			for (int mine = 0; mine <= 1; mine++) {
+				boolean fits = true;
+
+				for (int c : constraints[m]) {
+					free[c]--;
+					needed[c] -= mine;
+					if (needed[c] < 0 || needed[c] > free[c]) fits = false;
+				}
+
+				assigned[m] = mine == 1;
+				placed += mine;
+
+				boolean finished = !fits || search(m + 1);
+
+				placed -= mine;
+				assigned[m] = false;
+
+				for (int c : constraints[m]) {
+					free[c]++;
+					needed[c] += mine;
+				}
+
+				if (!finished) return false;
+			}
+
+			return true;
+		}
+	}
+
+	/**
+	 * Weighs every group's arrangements by the ways the leftover mines fit the untouched squares,
+	 * and returns the chance of a mine on every square.
+	 */
+	private double[] weigh(List<Group> groups, int interior, int left) {
+		int n = cells.length;
+		double[] probabilities = new double[n];
+
+		//the arrangements of all groups together, by mines used
+		double[] all = {1};
+		for (Group g : groups) all = convolve(all, g.counts);
+
+		double[] ways = binomials(interior, left, all.length - 1);
+
+		double total = 0, interiorMines = 0;
+
+		//whether every arrangement leaves the untouched squares no mines, or a mine on every one
+		boolean interiorSafe = true, interiorFull = true;
+
+		for (int k = 0; k < all.length; k++) {
+			total += all[k] * ways[k];
+			interiorMines += all[k] * ways[k] * (left - k);
+
+			if (all[k] * ways[k] == 0) continue;
+			if (left - k != 0) interiorSafe = false;
+			if (left - k != interior) interiorFull = false;
+		}
+
+		if (total == 0) throw new IllegalArgumentException("No placement of mines fits the board");
+
+		for (Group g : groups) {
+			//every other group together, so this group's mines can be weighed against the rest
+			double[] others = {1};
+			for (Group o : groups) {
+				if (o != g) others = convolve(others, o.counts);
+			}
+
+			//the weight of this group using k mines, and of the group as a whole
+			double[] weight = new double[g.counts.length];
+			double groupTotal = 0;
+
+			for (int k = 0; k < weight.length; k++) {
+				for (int r = 0; r < others.length && k + r < ways.length; r++) weight[k] += others[r] * ways[k + r];
+				groupTotal += g.counts[k] * weight[k];
+			}
+
+			for (int m = 0; m < g.members.length; m++) {
+				double p = 0;
+				boolean always = true, never = true;
+
+				for (int k = 0; k < weight.length; k++) {
+					if (weight[k] == 0 || g.counts[k] == 0) continue;
+
+					p += g.mineCounts[m][k] * weight[k];
+					if (g.mineCounts[m][k] != 0) never = false;
+					if (g.mineCounts[m][k] != g.counts[k]) always = false;
+				}
+
+				int cell = g.members[m];
+
+				if (never) known[cell] = SAFE;
+				else if (always) known[cell] = MINE;
+
+				probabilities[cell] = never ? 0 : always ? 1 : p / groupTotal;
+			}
+		}
+
+		//exactly 0 or 1 when the mine count decides them, rather than whatever the division rounds to
+		double interiorChance = interior == 0 || interiorSafe ? 0 : interiorFull ? 1 : interiorMines / total / interior;
+
+		boolean[] grouped = new boolean[n];
+		for (Group g : groups) {
+			for (int cell : g.members) grouped[cell] = true;
+		}
+
+		//group squares are done, the rest were decided by a single number or share the leftover mines
+		for (int i = 0; i < n; i++) {
+			if (grouped[i]) continue;
+
+			if (known[i] == MINE) probabilities[i] = 1;
+			else if (known[i] == SAFE) probabilities[i] = 0;
+			else probabilities[i] = interiorChance;
+		}
+
+		return probabilities;
+	}
+
+	/**
+	 * Gathers the result. When every chance is exact, a square with no chance of being a mine, or no chance of not
+	 * being one, is as certain as one decided by the numbers, such as when the mine count alone decides it.
+	 */
+	private Result result(double[] probabilities, boolean exact) {
+		int n = cells.length;
+		int safeCount = 0, mineCount = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (cells[i] != UNKNOWN) continue;
+
+			if (exact && probabilities[i] == 0) known[i] = SAFE;
+			else if (exact && probabilities[i] == 1) known[i] = MINE;
+
+			if (known[i] == SAFE) safeCount++;
+			else if (known[i] == MINE) mineCount++;
+		}
+
+		int[] safe = new int[safeCount], mines = new int[mineCount];
+		int guess = -1;
+		safeCount = 0;
+		mineCount = 0;
+
+		for (int i = 0; i < n; i++) {
+			if (cells[i] != UNKNOWN) continue;
+
+			if (known[i] == SAFE) safe[safeCount++] = i;
+			else if (known[i] == MINE) mines[mineCount++] = i;
+
+			if (known[i] != MINE && (guess < 0 || probabilities[i] < probabilities[guess])) guess = i;
+		}
+
+		return new Result(width, probabilities, safe, mines, guess, exact);
+	}
+
+	/**
+	 * Returns C(interior, left - k) for k from 0 to maxK, each divided by the largest so they stay in range.
+	 */
+	private static double[] binomials(int interior, int left, int maxK) {
+		double[] logs = new double[maxK + 1];
+		double max = Double.NEGATIVE_INFINITY;
+
+		for (int k = 0; k <= maxK; k++) {
+			int r = left - k;
+			logs[k] = r < 0 || r > interior ? Double.NEGATIVE_INFINITY : logChoose(interior, r);
+			max = Math.max(max, logs[k]);
+		}
+
+		double[] ways = new double[maxK + 1];
+		if (max == Double.NEGATIVE_INFINITY) return ways;
+
+		for (int k = 0; k <= maxK; k++) ways[k] = Math.exp(logs[k] - max);
+
+		return ways;
+	}
+
+	private static double logChoose(int n, int r) {
+		r = Math.min(r, n - r);
+
+		double log = 0;
+		for (int i = 1; i <= r; i++) log += Math.log((double) (n - r + i) / i);
+
+		return log;
+	}
+
+	private static double[] convolve(double[] a, double[] b) {
+		double[] c = new double[a.length + b.length - 1];
+
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] == 0) continue;
+			for (int j = 0; j < b.length; j++) c[i + j] += a[i] * b[j];
+		}
+
+		//keep the largest at 1, since only the ratios within each array matter
+		double max = 0;
+		for (double v : c) max = Math.max(max, v);
+		if (max > 0) for (int i = 0; i < c.length; i++) c[i] /= max;
+
+		return c;
+	}
+
+	private boolean touchesNumber(int cell) {
+		int x = cell % width, y = cell / width;
+
+		for (int i = x - 1; i <= x + 1; i++) {
+			for (int j = y - 1; j <= y + 1; j++) {
+				if (exists(i, j) && cells[j * width + i] >= 0) return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns true if a revealed number touches both squares.
+	 */
+	private boolean shareNumber(int a, int b) {
+		int ax = a % width, ay = a / width, bx = b % width, by = b / width;
+
+		for (int i = Math.max(ax, bx) - 1; i <= Math.min(ax, bx) + 1; i++) {
+			for (int j = Math.max(ay, by) - 1; j <= Math.min(ay, by) + 1; j++) {
+				if (exists(i, j) && cells[j * width + i] >= 0) return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean exists(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	private void checkDeadline() throws TimeoutException {
+		if (System.nanoTime() - deadline > 0) throw new TimeoutException("Deadline passed");
+	}
+}
@@ -1,6 +1,9 @@
 package nz.co.troyshaw.minesweeper.solver;
 
+import java.util.Random;
+
 import nz.co.troyshaw.minesweeper.game.Board;
+import nz.co.troyshaw.minesweeper.game.IndexedIntSet;
 import nz.co.troyshaw.minesweeper.game.Minesweeper;
 import nz.co.troyshaw.minesweeper.game.MinesweeperListener;
 import nz.co.troyshaw.minesweeper.game.Square;
@@ -8,6 +11,9 @@ import nz.co.troyshaw.minesweeper.game.Square;
 
 public class Solver {
 
+	/**
+	 * The pause in milliseconds between moves when the solver is being watched.
+	 */
 	public static int sleep = 100;
 
 	private Board board;
@@ -15,7 +21,10 @@ public class Solver {
 	private MinesweeperListener listener;
 	private Minesweeper game;
 
-	private boolean solving, changed;
+	/**
+	 * The position in the board's frontier the next step continues scanning from.
+	 */
+	private int next;
 
 	public Solver(Board board, MinesweeperListener listener, Minesweeper game) {
 		this.board = board;
@@ -25,150 +34,139 @@ public class Solver {
 	}
 
 	/**
-	 * Solves the board as much as possible
+	 * Starts the next scan from the beginning of the frontier. This must be called when the game is restarted, 
+	 * so that how a game is solved doesn't depend on where the previous game's scan stopped.
 	 */
-	public void solve() {
-		if (solving || !board.isPopulated() || game.isGameFinished()) return;
-
-		solving = true;
-
-		//solve
-		new Thread() {
-			@Override
-			public void run() {
-				changed = false;
-
-				for (int i = 0; i < squares.length; i++) {
-					for (int j = 0; j < squares[i].length; j++) {
-						Square s = squares[i][j];
-
-
-						if (!s.isMine() && s.isRevealed() && board.hasClickableSurround(i, j) && board.isSatisfied(i, j)) {
-							//click satisfied flagged squares first
-
-							setChanged();
-							game.revealSurrounding(i, j);
-							listener.moveFinished();
-							try {
-								sleep(sleep);
-							} catch (InterruptedException e) {
-								//empty
-							}
-						} else if (!s.isMine() && s.isRevealed()) {
-							//flag squares which we know must be mines
-							//first we count how many empty squares we have, y
-							//then count how many flags, z
-							//if p.numMines = y + z, then flag empty squares
-
-							int flags = 0, empty = 0;
-
-							//first count
-							for (int x = i - 1; x <= i + 1; x++) {
-								for (int y = j - 1; y <= j + 1; y++) {
-									if (!board.positionExists(x, y) || (x == i && y == j)) continue;
-
-									Square s2 = squares[x][y];
-
-									if (s2.isFlagged()) flags++;
-									else if (!s2.isRevealed()) empty++;
-								}
-							}
-
-							if (flags + empty == s.numMines() && s.numMines() != 0) {
-								//we found stuff to flag
-
-
-								for (int x = i - 1; x <= i + 1; x++) {
-									for (int y = j - 1; y <= j + 1; y++) {
-										if (!board.positionExists(x, y) || (x == i && y == j)) continue;
-
-										Square s2 = squares[x][y];
-
-										if (!s2.isFlagged() && !s2.isRevealed()) {
-											setChanged();
-											game.setFlagged(x, y);
-											listener.moveFinished();
-										}
-									}
-								}
-							}
-						}
-						
-//						//we do adjacent 2 square check now
-//						if (!s.isMine() && s.isRevealed()) {
-//							//can only have 2 adjacent squares
-//							List<Square> adj = board.getClickableSurround(i, j);
-//							
-//							//must be size 2
-//							if (adj.size() == 2) {
-//								//must be adjacent vertically or horizontally
-//								int i1 = adj.get(0).getX();
-//								int i2 = adj.get(1).getX();
-//								int j1 = adj.get(0).getY();
-//								int j2 = adj.get(1).getY();
-//								
-//								if ((i1 == i2 && Math.abs(j1 - j2) == 1) || (j1 == j2 && Math.abs(i1 - i2) == 1)) {
-//									//must need only 1 mine
-//									if (board.minesNeeded(i, j) == 1) {
-//										
-//									}
-////								}
-//							}
-//						}
-						
-					}		
-				}
-
-				//if we changed anything, we call again to recheck
-				solving = false;
-				if (changed) solve();
-			}
-		}.start();
+	public void reset() {
+		next = 0;
+	}
 
+	/**
+	 * Solves the board as much as possible. <p>
+	 * Moves are made on the calling thread, which must be the only thread changing the game.
+	 */
+	public void solve() {
+		while (step()) {
+			//keep going
+		}
 	}
 
 	/**
-	 * Does a double-press on squares which have as many adjacent flags as mines.
+	 * Makes the next move that can be logically deduced. <p>
+	 * Only the numbers on the board's frontier are scanned, since no other square can give a move, 
+	 * and each step carries on from where the last one stopped. 
+	 * If a full lap of the frontier finds nothing to do, the board is as solved as it can be. <p>
+	 * Moves are made on the calling thread, which must be the only thread changing the game.
 	 *
-	 * @return
+	 * @return true if a move was made, false if nothing more can be deduced
 	 */
-	@SuppressWarnings("unused")
-	private boolean clickSatisfied(int i, int j) {
-		Square s = squares[i][j];
+	public boolean step() {
+		if (!board.isPopulated() || game.isGameFinished()) return false;
 
+		IndexedIntSet frontier = board.getFrontierNumbers();
+		int size = frontier.size(), width = board.getWidth();
 
-		if (!s.isMine() && s.isRevealed() && board.hasClickableSurround(i, j) && board.isSatisfied(i, j)) {
-			//click satisfied flagged squares first
+		for (int scanned = 0; scanned < size; scanned++) {
+			//the frontier changes with every move, so wrap at its size now
+			if (next >= size) next = 0;
 
-			setChanged();
-			game.revealSurrounding(i, j);
-			listener.moveFinished();
+			int cell = frontier.get(next++);
+			if (solveSquare(cell % width, cell / width)) return true;
 		}
-		
+
 		return false;
 	}
 
-	private void setChanged() {
-		changed = true;
-	}
+	/**
+	 * Reveals a random square that is neither revealed nor flagged. 
+	 * This is for when the solver is stuck and the only way forward is to guess. <p>
+	 * Moves are made on the calling thread, which must be the only thread changing the game.
+	 *
+	 * @param random chooses the square
+	 * @return true if a square was revealed, false if the game is over or there is nothing left to reveal
+	 */
+	public boolean guess(Random random) {
+		if (!board.isPopulated() || game.isGameFinished()) return false;
+
+		IndexedIntSet unknowns = board.getUnknowns();
+		if (unknowns.isEmpty()) return false;
 
-	public boolean isSolving() {
-		return solving;
+		int cell = unknowns.get(random.nextInt(unknowns.size()));
+		game.revealSquare(cell % board.getWidth(), cell / board.getWidth());
+		return true;
 	}
 
-	@SuppressWarnings("unused")
-	private class InternalSolver extends Thread {
+	/**
+	 * Makes any moves that can be deduced from the given square alone.
+	 *
+	 * @return true if a move was made
+	 */
+	private boolean solveSquare(int i, int j) {
+		Square s = squares[i][j];
+
+		if (!s.isMine() && s.isRevealed() && board.hasClickableSurround(i, j) && board.isSatisfied(i, j)) {
+			//click satisfied flagged squares first
+			game.revealSurrounding(i, j);
+			return true;
+		} else if (!s.isMine() && s.isRevealed()) {
+			//flag squares which we know must be mines
+			//first we count how many empty squares we have, y
+			//then count how many flags, z
+			//if p.numMines = y + z, then flag empty squares
+
+			int flags = 0, empty = 0;
+
+			//first count
+			for (int x = i - 1; x <= i + 1; x++) {
+				for (int y = j - 1; y <= j + 1; y++) {
+					if (!board.positionExists(x, y) || (x == i && y == j)) continue;
+
+					Square s2 = squares[x][y];
+
+					if (s2.isFlagged()) flags++;
+					else if (!s2.isRevealed()) empty++;
+				}
+			}
 
-		@Override
-		public void run() {
-			boolean changed = false;
+			if (flags + empty == s.numMines() && s.numMines() != 0 && empty != 0) {
+				//we found stuff to flag
+				for (int x = i - 1; x <= i + 1; x++) {
+					for (int y = j - 1; y <= j + 1; y++) {
+						if (!board.positionExists(x, y) || (x == i && y == j)) continue;
 
-			for (int i = 0; i < squares.length; i++) {
-				for (int j = 0; j < squares[i].length; j++) {
+						Square s2 = squares[x][y];
 
+						if (!s2.isFlagged() && !s2.isRevealed()) game.setFlagged(x, y);
+					}
 				}
 
+				listener.moveFinished();
+				return true;
 			}
 		}
+
+//		//we do adjacent 2 square check now
+//		if (!s.isMine() && s.isRevealed()) {
+//			//can only have 2 adjacent squares
+//			List<Square> adj = board.getClickableSurround(i, j);
+//			
+//			//must be size 2
+//			if (adj.size() == 2) {
+//				//must be adjacent vertically or horizontally
+//				int i1 = adj.get(0).getX();
+//				int i2 = adj.get(1).getX();
+//				int j1 = adj.get(0).getY();
+//				int j2 = adj.get(1).getY();
+//				
+//				if ((i1 == i2 && Math.abs(j1 - j2) == 1) || (j1 == j2 && Math.abs(i1 - i2) == 1)) {
+//					//must need only 1 mine
+//					if (board.minesNeeded(i, j) == 1) {
+//						
+//					}
+//				}
+//			}
+//		}
+
+		return false;
 	}
 }